@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opends.messages.Message;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.api.plugin.PluginType;
+import org.opends.server.types.AuthenticationInfo;
+import org.opends.server.types.DN;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.SearchScope;
+import org.opends.server.types.operation.PluginOperation;
+import org.opends.server.types.operation.PostResponseSearchOperation;
+import org.opends.server.types.operation.PreParseAddOperation;
+import org.opends.server.types.operation.PreParseDeleteOperation;
+import org.opends.server.types.operation.PreParseModifyOperation;
+import org.opends.server.types.operation.PreParseSearchOperation;
+
+/**
+ * Internal plugin that rejects requests with a busy result before they use a
+ * worker thread for long. Each client, identified by its bind DN or else its
+ * address, gets a token bucket that limits its searches, adds, modifies and
+ * deletes per second. Subtree and one-level searches additionally share a
+ * limited number of concurrent slots so that they cannot occupy all worker
+ * threads; binds and base-object searches are never limited.
+ * <br/>
+ * A slot is freed when the search response has been sent. Searches that are
+ * abandoned or cancelled never get to that point, so when no slot is free the
+ * slots of searches that are no longer in progress on their connection are
+ * freed first.
+ */
+class AdmissionControlPlugin extends InternalDirectoryServerPlugin {
+
+    /**
+     * Number of client buckets kept; the least recently used are dropped.
+     */
+    static final int MAX_CLIENTS = 10000;
+
+    private final int rateLimit;
+
+    private final int burst;
+
+    private final int maxScans;
+
+    private final Map<String, TokenBucket> buckets = new LinkedHashMap<String, TokenBucket>(16,
+            0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+            return size() > MAX_CLIENTS;
+        }
+    };
+
+    /**
+     * Connection of each search holding a slot, keyed by connection id and
+     * message id.
+     */
+    private final Map<String, ClientConnection> scans = new HashMap<String, ClientConnection>();
+
+    private final AtomicLong admitted = new AtomicLong();
+
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    private final AtomicLong scanLimited = new AtomicLong();
+
+    /**
+     * @param componentDN DN used to identify the plugin in logs
+     * @param rateLimit   requests per second allowed per client, 0 for no limit
+     * @param burst       requests a client may send at once above the rate
+     * @param maxScans    concurrent subtree and one-level searches, 0 for no
+     *                    limit
+     */
+    AdmissionControlPlugin(DN componentDN, int rateLimit, int burst, int maxScans) {
+        super(componentDN, EnumSet.of(PluginType.PRE_PARSE_SEARCH, PluginType.PRE_PARSE_ADD,
+                PluginType.PRE_PARSE_MODIFY, PluginType.PRE_PARSE_DELETE,
+                PluginType.POST_RESPONSE_SEARCH), false);
+        this.rateLimit = rateLimit;
+        this.burst = Math.max(1, burst);
+        this.maxScans = maxScans;
+    }
+
+    @Override
+    public PluginResult.PreParse doPreParse(PreParseSearchOperation searchOperation) {
+        if (!tryAcquire(getClientKey(searchOperation), System.nanoTime())) {
+            return reject(rateLimited, "Request rate limit exceeded");
+        }
+        if (searchOperation.getScope() != SearchScope.BASE_OBJECT && !tryStartScan(
+                searchOperation.getConnectionID(), searchOperation.getMessageID(),
+                searchOperation.getClientConnection())) {
+            return reject(scanLimited, "Too many concurrent subtree searches");
+        }
+        admitted.incrementAndGet();
+        return PluginResult.PreParse.continueOperationProcessing();
+    }
+
+    @Override
+    public PluginResult.PostResponse doPostResponse(PostResponseSearchOperation searchOperation) {
+        endScan(searchOperation.getConnectionID(), searchOperation.getMessageID());
+        return PluginResult.PostResponse.continueOperationProcessing();
+    }
+
+    @Override
+    public PluginResult.PreParse doPreParse(PreParseAddOperation addOperation) {
+        return checkRate(addOperation);
+    }
+
+    @Override
+    public PluginResult.PreParse doPreParse(PreParseModifyOperation modifyOperation) {
+        return checkRate(modifyOperation);
+    }
+
+    @Override
+    public PluginResult.PreParse doPreParse(PreParseDeleteOperation deleteOperation) {
+        return checkRate(deleteOperation);
+    }
+
+    /**
+     * @return counters of admitted and rejected requests and the number of
+     * subtree searches currently running
+     */
+    Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+        statistics.put("admitted", admitted.get());
+        statistics.put("rejectedRateLimit", rateLimited.get());
+        statistics.put("rejectedScanLimit", scanLimited.get());
+        synchronized (scans) {
+            statistics.put("activeScans", (long) scans.size());
+        }
+        return statistics;
+    }
+
+    /**
+     * Takes a token from the bucket of a client.
+     *
+     * @param clientKey identifies the client
+     * @param nowNanos  current value of {@link System#nanoTime()}
+     * @return true if the client has not exceeded its rate
+     */
+    boolean tryAcquire(String clientKey, long nowNanos) {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        TokenBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.get(clientKey);
+            if (bucket == null) {
+                bucket = new TokenBucket(burst, nowNanos);
+                buckets.put(clientKey, bucket);
+            }
+        }
+        return bucket.tryAcquire(rateLimit, burst, nowNanos);
+    }
+
+    /**
+     * Takes one of the subtree search slots for a search. If all slots are
+     * taken, the slots of searches that are no longer in progress are freed
+     * first.
+     *
+     * @param connectionID id of the connection of the search
+     * @param messageID    message id of the search
+     * @param connection   connection of the search
+     * @return true if a slot was free
+     */
+    boolean tryStartScan(long connectionID, int messageID, ClientConnection connection) {
+        if (maxScans <= 0) {
+            return true;
+        }
+        synchronized (scans) {
+            if (scans.size() >= maxScans) {
+                releaseFinishedScans();
+            }
+            if (scans.size() >= maxScans) {
+                return false;
+            }
+            scans.put(getScanKey(connectionID, messageID), connection);
+            return true;
+        }
+    }
+
+    /**
+     * Frees the subtree search slot of a search, if it has one.
+     *
+     * @param connectionID id of the connection of the search
+     * @param messageID    message id of the search
+     */
+    void endScan(long connectionID, int messageID) {
+        if (maxScans <= 0) {
+            return;
+        }
+        synchronized (scans) {
+            scans.remove(getScanKey(connectionID, messageID));
+        }
+    }
+
+    /**
+     * @param connection connection of a search
+     * @param messageID  message id of the search
+     * @return true if the search is still in progress on its connection. The
+     * connection drops abandoned and cancelled operations, as well as all of
+     * its operations when it is closed.
+     */
+    boolean isInProgress(ClientConnection connection, int messageID) {
+        return connection.getOperationInProgress(messageID) != null;
+    }
+
+    private void releaseFinishedScans() {
+        Iterator<Map.Entry<String, ClientConnection>> iterator = scans.entrySet()
+                .iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ClientConnection> scan = iterator.next();
+            int messageID = Integer.parseInt(scan.getKey()
+                    .substring(scan.getKey()
+                            .indexOf(' ') + 1));
+            if (!isInProgress(scan.getValue(), messageID)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private String getScanKey(long connectionID, int messageID) {
+        return connectionID + " " + messageID;
+    }
+
+    private PluginResult.PreParse checkRate(PluginOperation operation) {
+        if (!tryAcquire(getClientKey(operation), System.nanoTime())) {
+            return reject(rateLimited, "Request rate limit exceeded");
+        }
+        admitted.incrementAndGet();
+        return PluginResult.PreParse.continueOperationProcessing();
+    }
+
+    private PluginResult.PreParse reject(AtomicLong counter, String message) {
+        counter.incrementAndGet();
+        return PluginResult.PreParse.stopProcessing(ResultCode.BUSY, Message.raw(message));
+    }
+
+    private String getClientKey(PluginOperation operation) {
+        ClientConnection connection = operation.getClientConnection();
+        AuthenticationInfo authInfo = connection.getAuthenticationInfo();
+        if (authInfo != null && authInfo.isAuthenticated()
+                && authInfo.getAuthenticationDN() != null) {
+            return "dn:" + authInfo.getAuthenticationDN()
+                    .toNormalizedString();
+        }
+        return "ip:" + connection.getClientAddress();
+    }
+
+    /**
+     * Tokens of one client, refilled continuously at the configured rate up
+     * to the burst size.
+     */
+    static class TokenBucket {
+
+        private double tokens;
+
+        private long lastRefill;
+
+        TokenBucket(int burst, long nowNanos) {
+            this.tokens = burst;
+            this.lastRefill = nowNanos;
+        }
+
+        synchronized boolean tryAcquire(int rate, int burst, long nowNanos) {
+            double elapsedSeconds = (nowNanos - lastRefill) / (double) TimeUnit.SECONDS.toNanos(
+                    1);
+            tokens = Math.min(burst, tokens + elapsedSeconds * rate);
+            lastRefill = nowNanos;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Describes an additional local database backend that is created next to the
+ * default userRoot backend. Every backend gets its own base DN and its own
+ * Berkeley DB JE environment (log files, cache, cleaner and checkpointer), so
+ * writes to one backend do not contend with writes to another.
+ * <br/>
+ * Definitions are written in the metatype as
+ * <code>backendId|baseDN[|cachePercent[|dbDirectory]]</code>, for example
+ * <code>tenantA|dc=tenanta,dc=com|5|/data2/ldap</code>.
+ * <br/>
+ * The database caches of all backends together are limited to
+ * {@value #MAX_TOTAL_CACHE_PERCENT} percent of the heap. Backends without a
+ * cache percentage share the userRoot percentage with userRoot.
+ */
+class BackendDefinition {
+
+    private static final String SEPARATOR = "|";
+
+    private static final String TEMPLATE_BACKEND_ID = "userRoot";
+
+    private static final String TEMPLATE_BASE_DN = "dc=example,dc=com";
+
+    static final int MAX_TOTAL_CACHE_PERCENT = 50;
+
+    private String backendId;
+
+    private String baseDN;
+
+    private String cachePercent;
+
+    private String dbDirectory;
+
+    private BackendDefinition(String backendId, String baseDN, String cachePercent,
+            String dbDirectory) {
+        this.backendId = backendId;
+        this.baseDN = baseDN;
+        this.cachePercent = cachePercent;
+        this.dbDirectory = dbDirectory;
+    }
+
+    /**
+     * Parses a backend definition from its metatype form.
+     *
+     * @param definition definition in the form
+     *                   <code>backendId|baseDN[|cachePercent[|dbDirectory]]</code>
+     * @return the parsed definition
+     * @throws LDAPException if the definition is missing the backend id or base
+     *                       DN, has an invalid cache percentage or its base DN
+     *                       overlaps the userRoot base DN
+     */
+    static BackendDefinition parse(String definition) throws LDAPException {
+        String[] parts = StringUtils.splitPreserveAllTokens(definition, SEPARATOR);
+        if (parts.length < 2 || parts.length > 4 || StringUtils.isBlank(parts[0])
+                || StringUtils.isBlank(parts[1])) {
+            throw new LDAPException("Invalid backend definition '" + definition
+                    + "', expected backendId" + SEPARATOR + "baseDN[" + SEPARATOR
+                    + "cachePercent[" + SEPARATOR + "dbDirectory]]");
+        }
+        String backendId = parts[0].trim();
+        if (TEMPLATE_BACKEND_ID.equalsIgnoreCase(backendId)) {
+            throw new LDAPException(
+                    "Backend id " + backendId + " is reserved for the default backend.");
+        }
+        String cachePercent = null;
+        if (parts.length > 2 && StringUtils.isNotBlank(parts[2])) {
+            cachePercent = parts[2].trim();
+            if (!StringUtils.isNumeric(cachePercent) || Integer.parseInt(cachePercent) < 1
+                    || Integer.parseInt(cachePercent) > MAX_TOTAL_CACHE_PERCENT) {
+                throw new LDAPException("Invalid cache percentage '" + cachePercent
+                        + "' for backend " + backendId + ", expected a value from 1 to "
+                        + MAX_TOTAL_CACHE_PERCENT + ".");
+            }
+        }
+        String dbDirectory = null;
+        if (parts.length > 3 && StringUtils.isNotBlank(parts[3])) {
+            dbDirectory = parts[3].trim();
+        }
+        String baseDN = parts[1].trim();
+        if (overlaps(baseDN, TEMPLATE_BASE_DN)) {
+            throw new LDAPException("Base DN " + baseDN + " of backend " + backendId
+                    + " overlaps the base DN " + TEMPLATE_BASE_DN + " of the default backend.");
+        }
+        return new BackendDefinition(backendId, baseDN, cachePercent, dbDirectory);
+    }
+
+    /**
+     * Parses a backend definition from its metatype form and checks it against
+     * the backends that are already defined.
+     *
+     * @param definition definition in the form
+     *                   <code>backendId|baseDN[|cachePercent[|dbDirectory]]</code>
+     * @param backends   backends that are already defined
+     * @return the parsed definition
+     * @throws LDAPException if the definition is invalid, or has the same
+     *                       backend id as or a base DN overlapping that of one
+     *                       of the given backends
+     */
+    static BackendDefinition parse(String definition, Collection<BackendDefinition> backends)
+            throws LDAPException {
+        BackendDefinition backend = parse(definition);
+        for (BackendDefinition other : backends) {
+            if (other.backendId.equalsIgnoreCase(backend.backendId)) {
+                throw new LDAPException(
+                        "Backend id " + backend.backendId + " is defined more than once.");
+            }
+            if (overlaps(backend.baseDN, other.baseDN)) {
+                throw new LDAPException("Base DN " + backend.baseDN + " of backend "
+                        + backend.backendId + " overlaps the base DN " + other.baseDN
+                        + " of backend " + other.backendId + ".");
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Two base DNs overlap if they are the same or one is below the other, in
+     * which case entries could belong to either backend.
+     */
+    static boolean overlaps(String baseDN, String otherBaseDN) {
+        String dn = normalize(baseDN);
+        String otherDN = normalize(otherBaseDN);
+        return dn.equals(otherDN) || dn.endsWith("," + otherDN) || otherDN.endsWith("," + dn);
+    }
+
+    private static String normalize(String dn) {
+        return dn.trim()
+                .replaceAll("\\s*([,=+])\\s*", "$1")
+                .toLowerCase();
+    }
+
+    /**
+     * Works out the database cache percentage of the userRoot backend and of
+     * every additional backend. Backends without a cache percentage split the
+     * userRoot percentage evenly with userRoot. If the total is still above
+     * {@value #MAX_TOTAL_CACHE_PERCENT} percent, every percentage is scaled
+     * down to fit, keeping at least 1 percent per backend.
+     *
+     * @param userRootPercent cache percentage of userRoot in config.ldif
+     * @param backends        the additional backends
+     * @return the cache percentages, the userRoot percentage first followed
+     * by one per backend in the same order
+     */
+    static List<Integer> allocateCachePercent(int userRootPercent,
+            List<BackendDefinition> backends) {
+        int shared = 1;
+        for (BackendDefinition backend : backends) {
+            if (backend.cachePercent == null) {
+                shared++;
+            }
+        }
+        int sharedPercent = Math.max(1, userRootPercent / shared);
+
+        List<Integer> percentages = new ArrayList<Integer>();
+        percentages.add(sharedPercent);
+        int total = sharedPercent;
+        for (BackendDefinition backend : backends) {
+            int percent = backend.cachePercent == null ? sharedPercent : Integer.parseInt(
+                    backend.cachePercent);
+            percentages.add(percent);
+            total += percent;
+        }
+
+        if (total > MAX_TOTAL_CACHE_PERCENT) {
+            for (int i = 0; i < percentages.size(); i++) {
+                percentages.set(i, Math.max(1,
+                        percentages.get(i) * MAX_TOTAL_CACHE_PERCENT / total));
+            }
+        }
+        return percentages;
+    }
+
+    String getBackendId() {
+        return backendId;
+    }
+
+    String getBaseDN() {
+        return baseDN;
+    }
+
+    /**
+     * @return the JE cache percentage, or null to share the userRoot percentage
+     */
+    String getCachePercent() {
+        return cachePercent;
+    }
+
+    /**
+     * @return the parent directory of the JE environment, or null to use the
+     * same directory as userRoot
+     */
+    String getDbDirectory() {
+        return dbDirectory;
+    }
+
+    /**
+     * Creates the configuration entries for this backend from the userRoot
+     * backend entries. Indexes and tuning are inherited from userRoot, while
+     * the backend id, base DN, cache share and database directory are
+     * replaced.
+     *
+     * @param userRootConfig     the userRoot backend entry and all of its child
+     *                           entries from config.ldif
+     * @param actualCachePercent cache percentage worked out by
+     *                           {@link #allocateCachePercent(int, List)}
+     * @return the configuration entries for this backend
+     */
+    String createConfig(String userRootConfig, int actualCachePercent) {
+        String backendConfig = userRootConfig.replace(
+                "ds-cfg-backend-id=" + TEMPLATE_BACKEND_ID + ",",
+                "ds-cfg-backend-id=" + backendId + ",");
+        backendConfig = backendConfig.replaceAll("(?m)^ds-cfg-backend-id: .*$",
+                Matcher.quoteReplacement("ds-cfg-backend-id: " + backendId));
+        backendConfig = backendConfig.replaceAll("(?m)^ds-cfg-base-dn: .*$",
+                Matcher.quoteReplacement("ds-cfg-base-dn: " + baseDN));
+        backendConfig = backendConfig.replaceAll("(?m)^ds-cfg-db-cache-percent: .*$",
+                "ds-cfg-db-cache-percent: " + actualCachePercent);
+        if (dbDirectory != null) {
+            backendConfig = backendConfig.replaceAll("(?m)^ds-cfg-db-directory: .*$",
+                    Matcher.quoteReplacement("ds-cfg-db-directory: " + dbDirectory));
+        }
+        return backendConfig;
+    }
+
+    @Override
+    public String toString() {
+        return backendId + SEPARATOR + baseDN + SEPARATOR + StringUtils.defaultString(
+                cachePercent) + SEPARATOR + StringUtils.defaultString(dbDirectory);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof BackendDefinition && toString().equals(obj.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
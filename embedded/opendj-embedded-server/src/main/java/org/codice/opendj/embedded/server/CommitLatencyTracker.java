@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.api.plugin.PluginType;
+import org.opends.server.types.DN;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.operation.PostResponseAddOperation;
+import org.opends.server.types.operation.PostResponseDeleteOperation;
+import org.opends.server.types.operation.PostResponseModifyDNOperation;
+import org.opends.server.types.operation.PostResponseModifyOperation;
+import org.opends.server.types.operation.PostResponseOperation;
+
+/**
+ * Internal plugin that measures how long successful adds, modifies, deletes
+ * and renames take until they are acknowledged, which includes waiting for
+ * the commit to be durable. Latencies are counted in buckets whose bounds
+ * double, so percentiles are reported as the upper bound of their bucket.
+ */
+class CommitLatencyTracker extends InternalDirectoryServerPlugin {
+
+    /**
+     * Number of buckets; the last one holds every latency of about 16
+     * seconds or more.
+     */
+    static final int BUCKETS = 25;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * @param componentDN DN used to identify the plugin in logs
+     */
+    CommitLatencyTracker(DN componentDN) {
+        super(componentDN, EnumSet.of(PluginType.POST_RESPONSE_ADD,
+                PluginType.POST_RESPONSE_MODIFY, PluginType.POST_RESPONSE_DELETE,
+                PluginType.POST_RESPONSE_MODIFY_DN), false);
+    }
+
+    @Override
+    public PluginResult.PostResponse doPostResponse(PostResponseAddOperation addOperation) {
+        return track(addOperation);
+    }
+
+    @Override
+    public PluginResult.PostResponse doPostResponse(
+            PostResponseModifyOperation modifyOperation) {
+        return track(modifyOperation);
+    }
+
+    @Override
+    public PluginResult.PostResponse doPostResponse(
+            PostResponseDeleteOperation deleteOperation) {
+        return track(deleteOperation);
+    }
+
+    @Override
+    public PluginResult.PostResponse doPostResponse(
+            PostResponseModifyDNOperation modifyDNOperation) {
+        return track(modifyDNOperation);
+    }
+
+    /**
+     * Counts one write.
+     *
+     * @param latencyMicros time the write took in microseconds
+     */
+    void record(long latencyMicros) {
+        long micros = Math.max(0, latencyMicros);
+        // bucket i holds latencies below 2^i microseconds
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * @return number of writes and their average, median, 99th percentile
+     * and maximum latency in microseconds
+     */
+    Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+        long writes = count.get();
+        statistics.put("commitCount", writes);
+        statistics.put("commitLatencyAverageMicros", writes == 0 ? 0 : totalMicros.get() / writes);
+        statistics.put("commitLatencyP50Micros", getPercentile(50));
+        statistics.put("commitLatencyP99Micros", getPercentile(99));
+        statistics.put("commitLatencyMaxMicros", maxMicros.get());
+        return statistics;
+    }
+
+    /**
+     * @param percent percentile to compute
+     * @return upper bound in microseconds of the bucket holding the
+     * percentile, or 0 if nothing was counted
+     */
+    long getPercentile(int percent) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long needed = (long) Math.ceil(total * percent / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= needed && seen > 0) {
+                return i == BUCKETS - 1 ? maxMicros.get() : 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    private PluginResult.PostResponse track(PostResponseOperation operation) {
+        if (operation.getResultCode() == ResultCode.SUCCESS) {
+            long nanos = operation.getProcessingNanoTime();
+            // nanosecond times are only kept with a nanosecond etime resolution
+            record(nanos >= 0 ? TimeUnit.NANOSECONDS.toMicros(nanos) :
+                    TimeUnit.MILLISECONDS.toMicros(operation.getProcessingTime()));
+        }
+        return PluginResult.PostResponse.continueOperationProcessing();
+    }
+}
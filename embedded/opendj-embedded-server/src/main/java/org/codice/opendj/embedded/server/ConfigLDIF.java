@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helper methods to change entries of the server configuration file before
+ * it is written out.
+ */
+final class ConfigLDIF {
+
+    private ConfigLDIF() {
+    }
+
+    /**
+     * Sets an attribute of a configuration entry to a single value. Existing
+     * values of the attribute are replaced; if the entry does not have the
+     * attribute yet it is added at the end of the entry.
+     *
+     * @param configStr String containing the entire configuration file
+     * @param dn        DN of the entry to change, as written in the file
+     * @param attribute name of the attribute
+     * @param value     new value of the attribute
+     * @return The configuration file as a string with the attribute set, or
+     * unchanged if the entry does not exist.
+     */
+    static String setAttribute(String configStr, String dn, String attribute, String value) {
+        Matcher entryMatcher = findEntry(configStr, dn);
+        if (!entryMatcher.find()) {
+            return configStr;
+        }
+        StringBuilder newEntry = new StringBuilder();
+        boolean replaced = false;
+        boolean skipping = false;
+        for (String line : entryMatcher.group()
+                .split("\\r?\\n")) {
+            if (skipping && line.startsWith(" ")) {
+                // continuation of a replaced value
+                continue;
+            }
+            skipping = line.regionMatches(true, 0, attribute + ":", 0, attribute.length() + 1);
+            if (!skipping) {
+                newEntry.append(line)
+                        .append('\n');
+            } else if (!replaced) {
+                newEntry.append(attribute)
+                        .append(": ")
+                        .append(value)
+                        .append('\n');
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            newEntry.append(attribute)
+                    .append(": ")
+                    .append(value)
+                    .append('\n');
+        }
+        return configStr.substring(0, entryMatcher.start()) + newEntry + configStr.substring(
+                entryMatcher.end());
+    }
+
+    /**
+     * Adds a value to a multi-valued attribute of a configuration entry unless
+     * the entry has that value already. The value is added at the end of the
+     * entry.
+     *
+     * @param configStr String containing the entire configuration file
+     * @param dn        DN of the entry to change, as written in the file
+     * @param attribute name of the attribute
+     * @param value     value to add
+     * @return The configuration file as a string with the value added, or
+     * unchanged if the entry does not exist.
+     */
+    static String addValue(String configStr, String dn, String attribute, String value) {
+        Matcher entryMatcher = findEntry(configStr, dn);
+        if (!entryMatcher.find()) {
+            return configStr;
+        }
+        String entry = entryMatcher.group();
+        if (Pattern.compile("(?mi)^" + Pattern.quote(attribute) + ": " + Pattern.quote(value)
+                + "\\s*$")
+                .matcher(entry)
+                .find()) {
+            return configStr;
+        }
+        String newEntry = (entry.endsWith("\n") ? entry : entry + "\n") + attribute + ": " + value
+                + "\n";
+        return configStr.substring(0, entryMatcher.start()) + newEntry + configStr.substring(
+                entryMatcher.end());
+    }
+
+    /**
+     * Enables or disables a configuration entry.
+     *
+     * @param configStr String containing the entire configuration file
+     * @param dn        DN of the entry to change, as written in the file
+     * @param enabled   new value of ds-cfg-enabled
+     * @return The configuration file as a string with the entry changed.
+     */
+    static String setEnabled(String configStr, String dn, boolean enabled) {
+        return setAttribute(configStr, dn, "ds-cfg-enabled", Boolean.toString(enabled));
+    }
+
+    /**
+     * Retrieves the first value of an attribute of a configuration entry.
+     *
+     * @param configStr String containing the entire configuration file
+     * @param dn        DN of the entry, as written in the file
+     * @param attribute name of the attribute
+     * @return the value of the attribute, or null if the entry or the
+     * attribute does not exist
+     */
+    static String getAttribute(String configStr, String dn, String attribute) {
+        Matcher entryMatcher = findEntry(configStr, dn);
+        if (!entryMatcher.find()) {
+            return null;
+        }
+        Matcher valueMatcher = Pattern.compile(
+                "(?mi)^" + Pattern.quote(attribute) + ": (.*?)\\s*$")
+                .matcher(entryMatcher.group());
+        return valueMatcher.find() ? valueMatcher.group(1) : null;
+    }
+
+    /**
+     * @param configStr String containing the entire configuration file
+     * @param dn        DN of an entry, as written in the file
+     * @return true if the configuration file contains the entry
+     */
+    static boolean hasEntry(String configStr, String dn) {
+        return findEntry(configStr, dn).find();
+    }
+
+    private static Matcher findEntry(String configStr, String dn) {
+        return Pattern.compile("(?mi)^dn: " + Pattern.quote(dn) + "\\r?\\n(?:.+(?:\\r?\\n|$))*")
+                .matcher(configStr);
+    }
+}
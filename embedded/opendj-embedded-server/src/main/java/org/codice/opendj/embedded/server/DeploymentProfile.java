@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sets of configuration changes that fit the server to the resources of the
+ * machine it is deployed on.
+ */
+public enum DeploymentProfile {
+
+    /**
+     * The stock configuration.
+     */
+    STANDARD,
+
+    /**
+     * Low memory configuration for nodes with a small heap. Disables the
+     * backends, connection handlers and plugins that are not needed to serve
+     * directory data, uses small fixed thread counts and caches and only
+     * installs the required schema files.
+     */
+    SMALL;
+
+    private static final String USER_ROOT_DN = "ds-cfg-backend-id=userRoot,cn=Backends,cn=config";
+
+    private static final List<String> SMALL_DISABLED_ENTRIES = Arrays.asList(
+            "ds-cfg-backend-id=backup,cn=Backends,cn=config",
+            "cn=JMX Connection Handler,cn=Connection Handlers,cn=config",
+            "cn=LDIF Connection Handler,cn=Connection Handlers,cn=config",
+            "cn=JMX Alert Handler,cn=Alert Handlers,cn=config",
+            "cn=Profiler,cn=Plugins,cn=config");
+
+    private static final List<String> REPLICATION_PLUGINS = Arrays.asList(
+            "cn=Change Number Control,cn=Plugins,cn=config",
+            "cn=Fractional Replication LDIF Import,cn=Plugins,cn=config");
+
+    private static final List<String> SMALL_EXCLUDED_SCHEMA_FILES = Arrays.asList(
+            "03-rfc2713.ldif", "03-rfc2714.ldif", "03-rfc2739.ldif", "03-rfc2926.ldif",
+            "03-rfc3712.ldif", "03-uddiv3.ldif", "04-rfc2307bis.ldif", "05-rfc4876.ldif",
+            "05-solaris.ldif", "06-compat.ldif");
+
+    private static final String REQUEST_HANDLERS_VARIABLE = "request.handlers";
+
+    private static final String SMALL_REQUEST_HANDLERS = "1";
+
+    /**
+     * Looks up a profile by name, ignoring case.
+     *
+     * @param name name of the profile
+     * @return the matching profile
+     * @throws LDAPException if there is no profile with that name
+     */
+    static DeploymentProfile fromName(String name) throws LDAPException {
+        for (DeploymentProfile profile : values()) {
+            if (profile.name()
+                    .equalsIgnoreCase(name.trim())) {
+                return profile;
+            }
+        }
+        throw new LDAPException("Unknown profile " + name + ", expected one of " + Arrays.asList(
+                values()));
+    }
+
+    /**
+     * @return names of the stock schema files that are not installed with this
+     * profile
+     */
+    List<String> getExcludedSchemaFiles() {
+        return this == SMALL ? SMALL_EXCLUDED_SCHEMA_FILES : Collections.<String>emptyList();
+    }
+
+    /**
+     * @param fileName name of a stock schema file
+     * @return true if any profile does not install the file, in which case a
+     * missing copy of it was left out on purpose
+     */
+    static boolean isOptionalSchemaFile(String fileName) {
+        for (DeploymentProfile profile : values()) {
+            if (profile.getExcludedSchemaFiles()
+                    .contains(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the value this profile uses for a server setting that was left
+     * at its stock default. Settings that were changed from the stock default
+     * take precedence over the profile.
+     *
+     * @param variable metatype property id of the setting, for example
+     *                 request.handlers
+     * @return the profile value, or null if the profile does not change the
+     * setting
+     */
+    String getSettingDefault(String variable) {
+        if (this == SMALL && REQUEST_HANDLERS_VARIABLE.equals(variable)) {
+            return SMALL_REQUEST_HANDLERS;
+        }
+        return null;
+    }
+
+    /**
+     * Applies this profile to the given configuration file. Should be called
+     * before the additional backends are added so that they inherit the
+     * database settings of the userRoot backend. Server settings are not
+     * changed here, see {@link #getSettingDefault(String)}.
+     *
+     * @param configStr          String containing the entire configuration file
+     * @param replicationEnabled true if replication is configured, in which case
+     *                           the plugins it relies on are kept
+     * @return The configuration file as a string with the profile applied.
+     */
+    String applyTo(String configStr, boolean replicationEnabled) {
+        if (this != SMALL) {
+            return configStr;
+        }
+        for (String dn : SMALL_DISABLED_ENTRIES) {
+            configStr = ConfigLDIF.setEnabled(configStr, dn, false);
+        }
+        if (!replicationEnabled) {
+            for (String dn : REPLICATION_PLUGINS) {
+                configStr = ConfigLDIF.setEnabled(configStr, dn, false);
+            }
+        }
+
+        configStr = ConfigLDIF.setAttribute(configStr, USER_ROOT_DN, "ds-cfg-db-cache-percent",
+                "5");
+        configStr = ConfigLDIF.setAttribute(configStr, USER_ROOT_DN,
+                "ds-cfg-db-evictor-max-threads", "2");
+        configStr = ConfigLDIF.setAttribute(configStr, USER_ROOT_DN,
+                "ds-cfg-db-evictor-core-threads", "1");
+        configStr = ConfigLDIF.setAttribute(configStr, USER_ROOT_DN,
+                "ds-cfg-db-num-cleaner-threads", "1");
+
+        return ConfigLDIF.setAttribute(configStr, "cn=Work Queue,cn=config",
+                "ds-cfg-num-worker-threads", "4");
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.Arrays;
+
+/**
+ * How the local database backends make committed writes durable before the
+ * operation is acknowledged.
+ */
+public enum DurabilityMode {
+
+    /**
+     * Writes are handed to the operating system on commit but not synced to
+     * disk. A crash of the machine can lose the most recent writes. This is
+     * the stock configuration.
+     */
+    WRITE_NO_SYNC,
+
+    /**
+     * Commits are written like in {@link #WRITE_NO_SYNC}, but the response is
+     * held back until a flusher thread synced the log. The flusher syncs once
+     * per group commit window or once the group commit size of writes is
+     * waiting, so a burst of concurrent writes costs one fsync per group
+     * rather than one per operation. Every acknowledged write is on disk.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Every commit is synced to disk by JE before it is acknowledged;
+     * concurrent commits only share a sync when they happen to overlap.
+     */
+    SYNC;
+
+    private static final String USER_ROOT_DN = "ds-cfg-backend-id=userRoot,cn=Backends,cn=config";
+
+    /**
+     * Looks up a mode by name, ignoring case and accepting '-' for '_'.
+     *
+     * @param name name of the mode, for example group-commit
+     * @return the matching mode
+     * @throws LDAPException if there is no mode with that name
+     */
+    static DurabilityMode fromName(String name) throws LDAPException {
+        String modeName = name.trim()
+                .replace('-', '_');
+        for (DurabilityMode mode : values()) {
+            if (mode.name()
+                    .equalsIgnoreCase(modeName)) {
+                return mode;
+            }
+        }
+        throw new LDAPException(
+                "Unknown durability mode " + name + ", expected one of " + Arrays.asList(
+                        values()));
+    }
+
+    /**
+     * Applies this mode to the userRoot backend of the given configuration
+     * file. Should be called before the additional backends are added so
+     * that they inherit it. Only the transaction sync attributes of the
+     * backend are set, the group commit mode is completed by a plugin that
+     * syncs the written commits.
+     *
+     * @param configStr String containing the entire configuration file
+     * @return The configuration file as a string with the mode applied.
+     */
+    String applyTo(String configStr) {
+        configStr = ConfigLDIF.setAttribute(configStr, USER_ROOT_DN, "ds-cfg-db-txn-no-sync",
+                "false");
+        return ConfigLDIF.setAttribute(configStr, USER_ROOT_DN, "ds-cfg-db-txn-write-no-sync",
+                Boolean.toString(this != SYNC));
+    }
+
+    /**
+     * @return the name used in the configuration, for example group-commit
+     */
+    @Override
+    public String toString() {
+        return name().toLowerCase()
+                .replace('_', '-');
+    }
+}
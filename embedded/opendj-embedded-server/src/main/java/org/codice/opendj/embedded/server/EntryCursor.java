@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.util.LDIFException;
+import org.opends.server.util.LDIFReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the entries of an LDIF export one at a time. The export runs in its
+ * own thread and writes to a pipe, so it only runs ahead of the reader by the
+ * size of the pipe and waits while the reader is busy. Closing the cursor
+ * stops the export.
+ */
+public class EntryCursor implements Closeable {
+
+    static final int PIPE_SIZE = 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntryCursor.class);
+
+    private final PipedInputStream pipeInput;
+
+    private final LDIFImportConfig ldifConfig;
+
+    private final LDIFReader reader;
+
+    private final Thread exportThread;
+
+    private volatile LDAPException exportError;
+
+    private volatile boolean closed;
+
+    /**
+     * Writes the LDIF that the cursor reads.
+     */
+    interface Export {
+
+        /**
+         * @param ldifStream stream to write the LDIF to
+         * @throws LDAPException if the export failed
+         */
+        void writeTo(OutputStream ldifStream) throws LDAPException;
+    }
+
+    /**
+     * Starts the export and opens the cursor on its output.
+     *
+     * @param export     export to run
+     * @param threadName name of the export thread
+     * @throws LDAPException if the pipe could not be created
+     */
+    EntryCursor(final Export export, String threadName) throws LDAPException {
+        final PipedOutputStream pipeOutput;
+        try {
+            pipeInput = new PipedInputStream(PIPE_SIZE);
+            pipeOutput = new PipedOutputStream(pipeInput);
+            ldifConfig = new LDIFImportConfig(pipeInput);
+            ldifConfig.setValidateSchema(false);
+            reader = new LDIFReader(ldifConfig);
+        } catch (IOException ioe) {
+            throw new LDAPException("Could not open entry cursor.", ioe);
+        }
+        exportThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    export.writeTo(pipeOutput);
+                } catch (LDAPException le) {
+                    exportError = le;
+                } finally {
+                    IOUtils.closeQuietly(pipeOutput);
+                }
+            }
+        }, threadName);
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
+    /**
+     * Reads the next entry, waiting for the export if necessary.
+     *
+     * @return the next entry, or null if all entries were read
+     * @throws LDAPException if the export failed or the cursor is closed
+     */
+    public Entry next() throws LDAPException {
+        if (closed) {
+            throw new LDAPException("Entry cursor is closed.");
+        }
+        try {
+            Entry entry = reader.readEntry();
+            if (entry == null) {
+                awaitExport();
+                if (exportError != null) {
+                    throw new LDAPException("Export failed before all entries were read.",
+                            exportError);
+                }
+            }
+            return entry;
+        } catch (IOException ioe) {
+            awaitExport();
+            throw new LDAPException("Could not read exported entries.",
+                    exportError != null ? exportError : ioe);
+        } catch (LDIFException le) {
+            throw new LDAPException("Exported entry is not valid LDIF.", le);
+        }
+    }
+
+    /**
+     * Stops the export if it is still running.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // the export fails on its next write
+        IOUtils.closeQuietly(pipeInput);
+        reader.close();
+        ldifConfig.close();
+        awaitExport();
+    }
+
+    private void awaitExport() {
+        try {
+            exportThread.join();
+        } catch (InterruptedException ie) {
+            LOGGER.debug("Interrupted while waiting for export to stop.", ie);
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+}
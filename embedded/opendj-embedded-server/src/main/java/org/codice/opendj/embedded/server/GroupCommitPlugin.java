@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.opends.messages.Message;
+import org.opends.server.api.Backend;
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.api.plugin.PluginType;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.DN;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.operation.PostOperationAddOperation;
+import org.opends.server.types.operation.PostOperationDeleteOperation;
+import org.opends.server.types.operation.PostOperationModifyDNOperation;
+import org.opends.server.types.operation.PostOperationModifyOperation;
+import org.opends.server.types.operation.PostOperationOperation;
+
+/**
+ * Internal plugin that holds back the response to a successful add, modify,
+ * delete or rename of an entry in a local database backend until a
+ * {@link GroupCommitter} synced the commit. The backends commit without
+ * syncing, so concurrent writes share one sync. Internal operations are
+ * included since their callers expect the write to be durable as well.
+ */
+class GroupCommitPlugin extends InternalDirectoryServerPlugin {
+
+    private final GroupCommitter committer;
+
+    private final Set<String> backendIds;
+
+    /**
+     * @param componentDN DN used to identify the plugin in logs
+     * @param committer   committer that syncs the writes
+     * @param backendIds  ids of the backends whose writes are synced by the
+     *                    committer
+     */
+    GroupCommitPlugin(DN componentDN, GroupCommitter committer, Set<String> backendIds) {
+        super(componentDN, EnumSet.of(PluginType.POST_OPERATION_ADD,
+                PluginType.POST_OPERATION_MODIFY, PluginType.POST_OPERATION_DELETE,
+                PluginType.POST_OPERATION_MODIFY_DN), true);
+        this.committer = committer;
+        this.backendIds = new HashSet<String>(backendIds);
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(PostOperationAddOperation addOperation) {
+        return awaitDurable(addOperation, addOperation.getResultCode() == ResultCode.SUCCESS ?
+                addOperation.getEntryToAdd()
+                        .getDN() : null);
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(
+            PostOperationModifyOperation modifyOperation) {
+        return awaitDurable(modifyOperation,
+                modifyOperation.getResultCode() == ResultCode.SUCCESS ?
+                        modifyOperation.getCurrentEntry()
+                                .getDN() : null);
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(
+            PostOperationDeleteOperation deleteOperation) {
+        return awaitDurable(deleteOperation,
+                deleteOperation.getResultCode() == ResultCode.SUCCESS ?
+                        deleteOperation.getEntryToDelete()
+                                .getDN() : null);
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(
+            PostOperationModifyDNOperation modifyDNOperation) {
+        return awaitDurable(modifyDNOperation,
+                modifyDNOperation.getResultCode() == ResultCode.SUCCESS ?
+                        modifyDNOperation.getOriginalEntry()
+                                .getDN() : null);
+    }
+
+    private PluginResult.PostOperation awaitDurable(PostOperationOperation operation,
+            DN entryDN) {
+        if (entryDN == null) {
+            return PluginResult.PostOperation.continueOperationProcessing();
+        }
+        Backend backend = DirectoryServer.getBackend(entryDN);
+        if (backend == null || !backendIds.contains(backend.getBackendID())) {
+            return PluginResult.PostOperation.continueOperationProcessing();
+        }
+        try {
+            committer.awaitDurable();
+        } catch (IOException ioe) {
+            return PluginResult.PostOperation.stopProcessing(ResultCode.OTHER,
+                    Message.raw("The change was committed but could not be synced to disk: %s",
+                            ioe.getMessage()));
+        } catch (InterruptedException ie) {
+            Thread.currentThread()
+                    .interrupt();
+            return PluginResult.PostOperation.stopProcessing(ResultCode.OTHER,
+                    Message.raw("The change was committed but not yet synced to disk."));
+        }
+        return PluginResult.PostOperation.continueOperationProcessing();
+    }
+}
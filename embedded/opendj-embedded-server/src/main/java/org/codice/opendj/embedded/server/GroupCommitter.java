@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes concurrent writes durable with a shared sync. Writers that committed
+ * without syncing call {@link #awaitDurable()}, which adds them to the
+ * current group and blocks. A flusher thread syncs the group once the first
+ * writer has waited for the commit window or once the group reached its
+ * size, whichever comes first, and only then releases the writers. Writers
+ * that arrive during a sync or find the group full join the next group.
+ */
+class GroupCommitter {
+
+    /**
+     * Syncs everything committed so far to disk.
+     */
+    interface Syncer {
+
+        /**
+         * @throws IOException if the data could not be synced
+         */
+        void sync() throws IOException;
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final long windowNanos;
+
+    private final int groupSize;
+
+    private final Syncer syncer;
+
+    private final Object lock = new Object();
+
+    private Group current = new Group();
+
+    private Thread flusher;
+
+    private boolean stopped = true;
+
+    private long syncs;
+
+    private long writes;
+
+    private long largestGroup;
+
+    /**
+     * @param windowMillis longest time in milliseconds a write waits for
+     *                     others to join its group, 0 syncs every group as
+     *                     soon as the previous sync is done
+     * @param groupSize    number of waiting writes after which the group is
+     *                     synced without waiting for the rest of the window
+     * @param syncer       syncs the committed writes
+     */
+    GroupCommitter(int windowMillis, int groupSize, Syncer syncer) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.groupSize = Math.max(1, groupSize);
+        this.syncer = syncer;
+    }
+
+    /**
+     * Starts the flusher thread.
+     */
+    void start() {
+        synchronized (lock) {
+            if (!stopped) {
+                return;
+            }
+            stopped = false;
+            flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, "Embedded Group Commit Flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Stops the flusher thread once the waiting writes are synced. Writes
+     * that arrive afterwards fail.
+     */
+    void stop() {
+        Thread thread;
+        synchronized (lock) {
+            stopped = true;
+            thread = flusher;
+            flusher = null;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread()
+                        .interrupt();
+            }
+        }
+    }
+
+    /**
+     * Blocks until the writes committed by the calling thread are synced.
+     *
+     * @throws IOException          if the sync failed or the committer is
+     *                              stopped
+     * @throws InterruptedException if the thread was interrupted while
+     *                              waiting, the write may still be synced
+     */
+    void awaitDurable() throws IOException, InterruptedException {
+        Group group;
+        synchronized (lock) {
+            // a full group is synced as it is, later writes join the next one
+            while (!stopped && current.size >= groupSize) {
+                lock.wait();
+            }
+            if (stopped) {
+                throw new IOException("Group commit is stopped.");
+            }
+            group = current;
+            if (group.size == 0) {
+                group.started = System.nanoTime();
+            }
+            group.size++;
+            lock.notifyAll();
+            while (!group.done) {
+                lock.wait();
+            }
+        }
+        if (group.failure != null) {
+            throw new IOException("Could not sync the commit group.", group.failure);
+        }
+    }
+
+    /**
+     * @return number of syncs and of writes they made durable, and the size
+     * of the largest group
+     */
+    Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+        synchronized (lock) {
+            statistics.put("groupCommitSyncs", syncs);
+            statistics.put("groupCommitWrites", writes);
+            statistics.put("groupCommitLargestGroup", largestGroup);
+        }
+        return statistics;
+    }
+
+    private void flush() {
+        while (true) {
+            Group group;
+            synchronized (lock) {
+                try {
+                    while (!isReady(current)) {
+                        if (current.size == 0) {
+                            lock.wait();
+                        } else {
+                            long waitNanos = current.started + windowNanos - System.nanoTime();
+                            TimeUnit.NANOSECONDS.timedWait(lock, waitNanos);
+                        }
+                    }
+                } catch (InterruptedException ie) {
+                    stopped = true;
+                }
+                if (current.size == 0) {
+                    return;
+                }
+                group = current;
+                current = new Group();
+                lock.notifyAll();
+            }
+            IOException failure = null;
+            try {
+                syncer.sync();
+            } catch (IOException ioe) {
+                LOGGER.warn("Could not sync a group of {} commits.", group.size, ioe);
+                failure = ioe;
+            }
+            synchronized (lock) {
+                group.failure = failure;
+                group.done = true;
+                syncs++;
+                writes += group.size;
+                largestGroup = Math.max(largestGroup, group.size);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isReady(Group group) {
+        if (stopped) {
+            return true;
+        }
+        return group.size >= groupSize || group.size > 0
+                && System.nanoTime() - group.started >= windowNanos;
+    }
+
+    /**
+     * Writes that are synced together.
+     */
+    private static class Group {
+
+        private int size;
+
+        private long started;
+
+        private boolean done;
+
+        private IOException failure;
+    }
+}
@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+import org.apache.commons.lang.StringUtils;
+import org.codice.opendj.embedded.server.health.DirectoryHealth;
+import org.codice.opendj.embedded.server.health.HealthState;
+import org.codice.opendj.embedded.server.health.ProbeStatus;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchOperation;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.types.SearchScope;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a set of cheap requests against the server and keeps the latency and
+ * outcome of the most recent runs of each. The server is degraded when a
+ * probe fails more often than the success threshold allows or its average
+ * latency is above the latency threshold. State changes are published
+ * through the properties of the registered {@link DirectoryHealth} service.
+ */
+class HealthProber implements DirectoryHealth, Runnable {
+
+    /**
+     * Number of runs per probe that the statistics are computed from.
+     */
+    static final int WINDOW_SIZE = 20;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HealthProber.class);
+
+    private final Map<String, Probe> probes = new LinkedHashMap<String, Probe>();
+
+    private final long latencyThresholdMillis;
+
+    private final double successThreshold;
+
+    private final Map<String, Deque<long[]>> samples = new HashMap<String, Deque<long[]>>();
+
+    private final Map<String, String> lastErrors = new HashMap<String, String>();
+
+    private volatile HealthState state = HealthState.HEALTHY;
+
+    private ServiceRegistration registration;
+
+    /**
+     * @param probes                 probes to run, keyed by name
+     * @param latencyThresholdMillis highest acceptable average latency
+     * @param successThreshold       lowest acceptable success rate, in percent
+     */
+    HealthProber(Map<String, Probe> probes, long latencyThresholdMillis,
+            double successThreshold) {
+        this.probes.putAll(probes);
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        this.successThreshold = successThreshold;
+        for (String name : probes.keySet()) {
+            samples.put(name, new ArrayDeque<long[]>());
+        }
+    }
+
+    /**
+     * Runs every probe once and updates the state.
+     */
+    @Override
+    public void run() {
+        for (Map.Entry<String, Probe> probe : probes.entrySet()) {
+            long start = System.nanoTime();
+            String error = null;
+            try {
+                probe.getValue()
+                        .probe();
+            } catch (LDAPException le) {
+                error = le.getMessage();
+                LOGGER.debug("Health probe {} failed.", probe.getKey(), le);
+            }
+            record(probe.getKey(), System.nanoTime() - start, error);
+        }
+        updateState();
+    }
+
+    /**
+     * Adds the result of one probe run, dropping the oldest result once
+     * {@link #WINDOW_SIZE} results are kept.
+     *
+     * @param name         name of the probe
+     * @param latencyNanos time the probe took
+     * @param error        failure message, or null if the probe succeeded
+     */
+    synchronized void record(String name, long latencyNanos, String error) {
+        Deque<long[]> probeSamples = samples.get(name);
+        if (probeSamples.size() == WINDOW_SIZE) {
+            probeSamples.removeFirst();
+        }
+        probeSamples.addLast(new long[] {latencyNanos, error == null ? 1 : 0});
+        if (error != null) {
+            lastErrors.put(name, error);
+        }
+    }
+
+    @Override
+    public HealthState getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized List<ProbeStatus> getProbeStatuses() {
+        List<ProbeStatus> statuses = new ArrayList<ProbeStatus>();
+        for (String name : probes.keySet()) {
+            Deque<long[]> probeSamples = samples.get(name);
+            int successes = 0;
+            long totalLatency = 0;
+            long maxLatency = 0;
+            for (long[] sample : probeSamples) {
+                if (sample[1] == 1) {
+                    successes++;
+                    totalLatency += sample[0];
+                    maxLatency = Math.max(maxLatency, sample[0]);
+                }
+            }
+            double successRate = probeSamples.isEmpty() ? 100 :
+                    successes * 100.0 / probeSamples.size();
+            long averageLatency = successes == 0 ? 0 : totalLatency / successes;
+            statuses.add(new ProbeStatus(name, probeSamples.size(), successRate,
+                    TimeUnit.NANOSECONDS.toMillis(averageLatency),
+                    TimeUnit.NANOSECONDS.toMillis(maxLatency), lastErrors.get(name)));
+        }
+        return statuses;
+    }
+
+    /**
+     * Computes the state from the current probe statuses and publishes it if
+     * it changed.
+     */
+    void updateState() {
+        HealthState newState = HealthState.HEALTHY;
+        for (ProbeStatus status : getProbeStatuses()) {
+            if (status.getSuccessRate() < successThreshold
+                    || status.getAverageLatencyMillis() > latencyThresholdMillis) {
+                LOGGER.debug("Health probe outside of thresholds: {}", status);
+                newState = HealthState.DEGRADED;
+            }
+        }
+        if (newState == state) {
+            return;
+        }
+        state = newState;
+        if (newState == HealthState.DEGRADED) {
+            LOGGER.warn("LDAP server is degraded: {}", getProbeStatuses());
+        } else {
+            LOGGER.info("LDAP server is healthy again.");
+        }
+        synchronized (this) {
+            if (registration != null) {
+                registration.setProperties(getServiceProperties());
+            }
+        }
+    }
+
+    /**
+     * @return the properties to register the service with
+     */
+    Dictionary<String, Object> getServiceProperties() {
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(STATE_PROPERTY, state.name());
+        return properties;
+    }
+
+    /**
+     * @param registration registration of this service, updated when the
+     *                     state changes
+     */
+    synchronized void setRegistration(ServiceRegistration registration) {
+        this.registration = registration;
+    }
+
+    /**
+     * A cheap request that is sent to the server to measure how fast it
+     * answers.
+     */
+    interface Probe {
+
+        /**
+         * Runs the request once.
+         *
+         * @throws LDAPException if the request failed
+         */
+        void probe() throws LDAPException;
+    }
+
+    /**
+     * Creates a probe that connects to a listener, binds and reads the base
+     * entry of each backend. The entries are looked up in the database through
+     * its DN index, so a stalled database shows up in the latency of the
+     * probe.
+     *
+     * @param url           LDAP URL of the listener
+     * @param baseDNs       base DNs of the backends to read
+     * @param bindDN        DN to bind as, anonymous if empty
+     * @param bindPassword  password of the bind DN
+     * @param timeoutMillis connect and read timeout
+     * @return the probe
+     */
+    static Probe listenerProbe(final String url, final List<DN> baseDNs, String bindDN,
+            String bindPassword, long timeoutMillis) {
+        final Hashtable<String, String> env = createEnvironment(url, bindDN, bindPassword,
+                timeoutMillis);
+        return new Probe() {
+            @Override
+            public void probe() throws LDAPException {
+                DirContext context = null;
+                try {
+                    context = new InitialDirContext(env);
+                    SearchControls controls = new SearchControls();
+                    controls.setSearchScope(SearchControls.OBJECT_SCOPE);
+                    controls.setReturningAttributes(new String[] {"1.1"});
+                    for (DN baseDN : baseDNs) {
+                        NamingEnumeration<SearchResult> results = null;
+                        try {
+                            results = context.search(baseDN.toString(), "(objectClass=*)",
+                                    controls);
+                            results.hasMore();
+                        } catch (NameNotFoundException nnfe) {
+                            // an empty backend still answers the request
+                            LOGGER.trace("Probe found no entry at {}.", baseDN, nnfe);
+                        } finally {
+                            closeQuietly(results);
+                        }
+                    }
+                } catch (NamingException ne) {
+                    throw new LDAPException("Probe of " + url + " failed: " + ne.getMessage(),
+                            ne);
+                } finally {
+                    closeQuietly(context);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param url           LDAP URL of the listener
+     * @param bindDN        DN to bind as, anonymous if empty
+     * @param bindPassword  password of the bind DN
+     * @param timeoutMillis connect and read timeout
+     * @return the JNDI environment of a probe connection
+     */
+    static Hashtable<String, String> createEnvironment(String url, String bindDN,
+            String bindPassword, long timeoutMillis) {
+        Hashtable<String, String> env = new Hashtable<String, String>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, url);
+        if (StringUtils.isBlank(bindDN)) {
+            env.put(Context.SECURITY_AUTHENTICATION, "none");
+        } else {
+            env.put(Context.SECURITY_AUTHENTICATION, "simple");
+            env.put(Context.SECURITY_PRINCIPAL, bindDN.trim());
+            env.put(Context.SECURITY_CREDENTIALS, StringUtils.defaultString(bindPassword));
+        }
+        env.put("com.sun.jndi.ldap.connect.timeout", Long.toString(timeoutMillis));
+        env.put("com.sun.jndi.ldap.read.timeout", Long.toString(timeoutMillis));
+        return env;
+    }
+
+    /**
+     * Works out the host name that listener probes connect to. LDAPS clients
+     * verify that the host name they connect to is named in the server
+     * certificate, which usually names the fully qualified host name rather
+     * than localhost.
+     *
+     * @param configuredHost host name from the configuration, may be empty
+     * @return the configured host name, or the fully qualified name of the
+     * local host if none is configured
+     */
+    static String getProbeHost(String configuredHost) {
+        if (StringUtils.isNotBlank(configuredHost)) {
+            return configuredHost.trim();
+        }
+        try {
+            return InetAddress.getLocalHost()
+                    .getCanonicalHostName();
+        } catch (UnknownHostException uhe) {
+            LOGGER.warn("Could not look up the local host name, probing localhost.", uhe);
+            return "localhost";
+        }
+    }
+
+    /**
+     * Creates a probe that reads the base entry of a backend through an
+     * internal connection, bypassing the listeners and the work queue.
+     *
+     * @param baseDN base DN of a backend
+     * @return the probe
+     */
+    static Probe internalProbe(final DN baseDN) {
+        return new Probe() {
+            @Override
+            public void probe() throws LDAPException {
+                try {
+                    InternalSearchOperation searchOperation =
+                            InternalClientConnection.getRootConnection()
+                                    .processSearch(baseDN, SearchScope.BASE_OBJECT,
+                                            SearchFilter.createFilterFromString(
+                                                    "(objectClass=*)"));
+                    // an empty backend still answers the request
+                    if (searchOperation.getResultCode() != ResultCode.SUCCESS
+                            && searchOperation.getResultCode() != ResultCode.NO_SUCH_OBJECT) {
+                        throw new LDAPException(
+                                "Probe of " + baseDN + " failed: " + searchOperation
+                                        .getResultCode() + " "
+                                        + searchOperation.getErrorMessage());
+                    }
+                } catch (DirectoryException de) {
+                    throw new LDAPException("Probe of " + baseDN + " failed.", de);
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(DirContext context) {
+        if (context != null) {
+            try {
+                context.close();
+            } catch (NamingException ne) {
+                LOGGER.debug("Could not close probe connection.", ne);
+            }
+        }
+    }
+
+    private static void closeQuietly(NamingEnumeration<?> results) {
+        if (results != null) {
+            try {
+                results.close();
+            } catch (NamingException ne) {
+                LOGGER.debug("Could not close probe results.", ne);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Describes an attribute index that was added to a local database backend
+ * after installation. Definitions are stored one per line in the form
+ * <code>backendId|attribute|indexType[,indexType]</code> so they can be
+ * re-applied whenever the server configuration is regenerated.
+ */
+public class IndexDefinition {
+
+    /**
+     * Index types supported by the local database backend.
+     */
+    public static final List<String> INDEX_TYPES = Arrays.asList("approximate", "equality",
+            "ordering", "presence", "substring");
+
+    private static final String SEPARATOR = "|";
+
+    private String backendId;
+
+    private String attribute;
+
+    private Set<String> indexTypes;
+
+    /**
+     * Creates a new index definition.
+     *
+     * @param backendId  id of the backend the index belongs to
+     * @param attribute  attribute to index
+     * @param indexTypes one or more of {@link #INDEX_TYPES}
+     * @throws LDAPException if the attribute is empty or an index type is not
+     *                       supported
+     */
+    public IndexDefinition(String backendId, String attribute, Set<String> indexTypes)
+            throws LDAPException {
+        if (StringUtils.isBlank(backendId) || StringUtils.isBlank(attribute)) {
+            throw new LDAPException("Index definitions need a backend id and an attribute.");
+        }
+        if (indexTypes == null || indexTypes.isEmpty()) {
+            throw new LDAPException("No index types given for attribute " + attribute);
+        }
+        this.backendId = backendId.trim();
+        this.attribute = attribute.trim();
+        this.indexTypes = new LinkedHashSet<String>();
+        for (String indexType : indexTypes) {
+            String type = indexType.trim()
+                    .toLowerCase();
+            if (!INDEX_TYPES.contains(type)) {
+                throw new LDAPException(
+                        "Unsupported index type " + indexType + " for attribute " + attribute
+                                + ", expected one of " + INDEX_TYPES);
+            }
+            this.indexTypes.add(type);
+        }
+    }
+
+    /**
+     * Parses an index definition from its stored form.
+     *
+     * @param definition definition in the form
+     *                   <code>backendId|attribute|indexType[,indexType]</code>
+     * @return the parsed definition
+     * @throws LDAPException if the definition is malformed
+     */
+    static IndexDefinition parse(String definition) throws LDAPException {
+        String[] parts = StringUtils.splitPreserveAllTokens(definition, SEPARATOR);
+        if (parts.length != 3) {
+            throw new LDAPException("Invalid index definition '" + definition
+                    + "', expected backendId" + SEPARATOR + "attribute" + SEPARATOR
+                    + "indexType[,indexType]");
+        }
+        return new IndexDefinition(parts[0], parts[1],
+                new LinkedHashSet<String>(Arrays.asList(StringUtils.split(parts[2], ','))));
+    }
+
+    public String getBackendId() {
+        return backendId;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public Set<String> getIndexTypes() {
+        return indexTypes;
+    }
+
+    /**
+     * @return the DN of the configuration entry of this index
+     */
+    String getConfigDN() {
+        return "ds-cfg-attribute=" + attribute + ",cn=Index,ds-cfg-backend-id=" + backendId
+                + ",cn=Backends,cn=config";
+    }
+
+    /**
+     * @return the configuration entry of this index as LDIF
+     */
+    String toLDIF() {
+        StringBuilder ldif = new StringBuilder();
+        ldif.append("dn: ")
+                .append(getConfigDN())
+                .append('\n');
+        ldif.append("objectClass: top\n");
+        ldif.append("objectClass: ds-cfg-local-db-index\n");
+        for (String indexType : indexTypes) {
+            ldif.append("ds-cfg-index-type: ")
+                    .append(indexType)
+                    .append('\n');
+        }
+        ldif.append("ds-cfg-attribute: ")
+                .append(attribute)
+                .append('\n');
+        return ldif.toString();
+    }
+
+    /**
+     * Adds this index to the given configuration file. If the attribute
+     * already has an index entry the missing index types are added to it,
+     * otherwise a new index entry is appended.
+     *
+     * @param configStr String containing the entire configuration file
+     * @return The configuration file as a string with the index added to it.
+     */
+    String applyTo(String configStr) {
+        Matcher entryMatcher = Pattern.compile(
+                "(?mi)^dn: " + Pattern.quote(getConfigDN()) + "\\r?\\n((?:.+\\r?\\n?)*)")
+                .matcher(configStr);
+        if (!entryMatcher.find()) {
+            return configStr.trim() + "\n\n" + toLDIF();
+        }
+        String entry = entryMatcher.group();
+        StringBuilder missingTypes = new StringBuilder();
+        for (String indexType : indexTypes) {
+            if (!Pattern.compile("(?mi)^ds-cfg-index-type: " + indexType + "\\s*$")
+                    .matcher(entry)
+                    .find()) {
+                missingTypes.append("ds-cfg-index-type: ")
+                        .append(indexType)
+                        .append('\n');
+            }
+        }
+        if (missingTypes.length() == 0) {
+            return configStr;
+        }
+        String newEntry = entry.endsWith("\n") ? entry + missingTypes : entry + "\n"
+                + StringUtils.substringBeforeLast(missingTypes.toString(), "\n");
+        return configStr.substring(0, entryMatcher.start()) + newEntry + configStr.substring(
+                entryMatcher.end());
+    }
+
+    @Override
+    public String toString() {
+        return backendId + SEPARATOR + attribute + SEPARATOR + StringUtils.join(indexTypes,
+                ",");
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Digests of the bundled files that were installed into the data path, keyed
+ * by their path relative to it. Entries are stored one per line in the form
+ * <code>digest|path</code>. Comparing the digests of a newer bundle with the
+ * manifest and with the installed files shows which files the bundle changed
+ * and which were changed locally.
+ */
+class InstallManifest {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * What to do with one bundled file during an upgrade.
+     */
+    enum Action {
+        /**
+         * The bundled file has not changed since it was installed.
+         */
+        UNCHANGED,
+        /**
+         * The file is not installed yet.
+         */
+        INSTALL,
+        /**
+         * The bundled file changed and the installed file was not modified, so
+         * it can be replaced.
+         */
+        REPLACE,
+        /**
+         * The installed file differs from what was installed, or it is not
+         * known what was installed, so it is kept.
+         */
+        KEEP_MODIFIED
+    }
+
+    private final Map<String, String> digests = new TreeMap<String, String>();
+
+    /**
+     * Parses a manifest from its stored lines. Malformed lines are skipped.
+     *
+     * @param lines lines as written by {@link #toLines()}
+     * @return the parsed manifest
+     */
+    static InstallManifest parse(List<String> lines) {
+        InstallManifest manifest = new InstallManifest();
+        for (String line : lines) {
+            String[] parts = StringUtils.splitPreserveAllTokens(line.trim(), SEPARATOR, 2);
+            if (parts.length == 2 && StringUtils.isNotBlank(parts[0])
+                    && StringUtils.isNotBlank(parts[1])) {
+                manifest.put(parts[1], parts[0]);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @return the stored form of this manifest, one line per file
+     */
+    List<String> toLines() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, String> digest : digests.entrySet()) {
+            lines.add(digest.getValue() + SEPARATOR + digest.getKey());
+        }
+        return lines;
+    }
+
+    /**
+     * @param path path relative to the data path
+     * @return digest of the file as installed, or null if it is not listed
+     */
+    String get(String path) {
+        return digests.get(path);
+    }
+
+    void put(String path, String digest) {
+        digests.put(path, digest);
+    }
+
+    void remove(String path) {
+        digests.remove(path);
+    }
+
+    /**
+     * @return paths of all listed files
+     */
+    Set<String> getPaths() {
+        return digests.keySet();
+    }
+
+    /**
+     * Decides how to upgrade one bundled file.
+     *
+     * @param path          path relative to the data path
+     * @param bundledDigest digest of the file in the bundle
+     * @param localDigest   digest of the installed file, or null if it does
+     *                      not exist
+     * @return the action to take
+     */
+    Action decide(String path, String bundledDigest, String localDigest) {
+        if (localDigest == null) {
+            return Action.INSTALL;
+        }
+        if (localDigest.equals(bundledDigest)) {
+            // also covers files installed before the manifest existed
+            return Action.UNCHANGED;
+        }
+        String installedDigest = digests.get(path);
+        if (bundledDigest.equals(installedDigest)) {
+            // changed locally, but the bundle did not change it
+            return Action.UNCHANGED;
+        }
+        if (localDigest.equals(installedDigest)) {
+            return Action.REPLACE;
+        }
+        return Action.KEEP_MODIFIED;
+    }
+}
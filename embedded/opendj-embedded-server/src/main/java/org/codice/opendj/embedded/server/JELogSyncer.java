@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Syncs the log files of JE environments that commit without syncing. JE
+ * only appends to the log file with the highest number, so only that file
+ * and the ones created since the previous sync have to be synced. Syncing a
+ * file through another channel flushes the data written by JE as well.
+ */
+class JELogSyncer implements GroupCommitter.Syncer {
+
+    private static final String LOG_FILE_SUFFIX = ".jdb";
+
+    private final List<File> directories;
+
+    /**
+     * Name of the last log file synced in each directory.
+     */
+    private final Map<File, String> lastSynced = new HashMap<File, String>();
+
+    /**
+     * @param directories directories of the JE environments
+     */
+    JELogSyncer(List<File> directories) {
+        this.directories = new ArrayList<File>(directories);
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        for (File directory : directories) {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                throw new IOException("Could not list database directory " + directory + ".");
+            }
+            String previous = lastSynced.get(directory);
+            String last = previous;
+            for (File file : files) {
+                String name = file.getName();
+                // log file names are fixed width hex numbers, so they sort by name
+                if (!name.endsWith(LOG_FILE_SUFFIX) || previous != null
+                        && name.compareTo(previous) < 0) {
+                    continue;
+                }
+                force(file);
+                if (last == null || name.compareTo(last) > 0) {
+                    last = name;
+                }
+            }
+            if (last != null && !last.equals(previous)) {
+                // new log files have to be in the directory after a crash too
+                forceDirectory(directory);
+                lastSynced.put(directory, last);
+            }
+        }
+    }
+
+    private void force(File file) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        } catch (NoSuchFileException nsfe) {
+            // removed by the log cleaner, nothing to sync
+            return;
+        }
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void forceDirectory(File directory) {
+        try {
+            FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException ioe) {
+            // not every platform can sync a directory
+        }
+    }
+}
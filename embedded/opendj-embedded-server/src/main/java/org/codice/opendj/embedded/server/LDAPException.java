@@ -10,11 +10,13 @@
  **/
 package org.codice.opendj.embedded.server;
 
+import org.codice.opendj.embedded.server.admin.DirectoryServiceException;
+
 /**
  * General exception class used within the embedded ldap project.
  *
  */
-public class LDAPException extends Exception {
+public class LDAPException extends DirectoryServiceException {
 
     /** The Constant serialVersionUID. */
     private static final long serialVersionUID = 1L;
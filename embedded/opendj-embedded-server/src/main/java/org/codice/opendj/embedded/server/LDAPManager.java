@@ -10,42 +10,108 @@
  **/
 package org.codice.opendj.embedded.server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Base64;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang.StringUtils;
+import org.codice.opendj.embedded.server.admin.DirectoryAdmission;
+import org.codice.opendj.embedded.server.admin.DirectoryExport;
+import org.codice.opendj.embedded.server.admin.DirectoryImports;
+import org.codice.opendj.embedded.server.admin.DirectoryIndexes;
+import org.codice.opendj.embedded.server.admin.DirectoryMembership;
+import org.codice.opendj.embedded.server.admin.DirectoryReplication;
+import org.codice.opendj.embedded.server.admin.DirectoryServiceException;
+import org.codice.opendj.embedded.server.admin.DirectoryStorage;
+import org.codice.opendj.embedded.server.admin.IndexRecommendation;
+import org.codice.opendj.embedded.server.admin.LDIFCursor;
+import org.codice.opendj.embedded.server.admin.LDIFImportRecord;
+import org.codice.opendj.embedded.server.health.DirectoryHealth;
 import org.opends.messages.Message;
 import org.opends.server.api.Backend;
+import org.opends.server.api.EntryCache;
+import org.opends.server.backends.jeb.BackendImpl;
 import org.opends.server.config.ConfigException;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.AddOperation;
 import org.opends.server.core.LockFileManager;
+import org.opends.server.core.ModifyOperation;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchOperation;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeValue;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryEnvironmentConfig;
 import org.opends.server.types.DirectoryException;
+import org.opends.server.types.ExistingFileBehavior;
 import org.opends.server.types.InitializationException;
+import org.opends.server.types.LDIFExportConfig;
 import org.opends.server.types.LDIFImportConfig;
 import org.opends.server.types.LDIFImportResult;
+import org.opends.server.types.Modification;
+import org.opends.server.types.ModificationType;
+import org.opends.server.types.Operation;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.types.SearchResultEntry;
+import org.opends.server.types.SearchScope;
 import org.opends.server.util.EmbeddedUtils;
+import org.opends.server.util.LDIFException;
+import org.opends.server.util.LDIFReader;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,7 +119,9 @@
  * Manages the starting and stopping of an embedded LDAP server. Utilizes OpenDJ
  * as the server software with a Berkeley DB Java Edition backend.
  */
-public class LDAPManager {
+public class LDAPManager
+        implements DirectoryIndexes, DirectoryReplication, DirectoryImports, DirectoryStorage,
+        DirectoryAdmission, DirectoryMembership, DirectoryExport {
 
     private static final int DEFAULT_LDAP_PORT = 1389;
 
@@ -89,6 +157,58 @@ public class LDAPManager {
 
     private static final String BASE_LDIF_STR = "base.ldif";
 
+    private static final String SSL_PROTOCOLS_STR = "ssl.protocols";
+
+    private static final String SSL_CIPHER_SUITES_STR = "ssl.cipher.suites";
+
+    private static final String SSL_SETTINGS_VAR = "ldaps.ssl.settings";
+
+    private static final String BACKENDS_STR = "backends";
+
+    private static final String REPLICATION_PORT_STR = "replication.port";
+
+    private static final String REPLICATION_SERVER_ID_STR = "replication.server.id";
+
+    private static final String REPLICATION_PEERS_STR = "replication.peers";
+
+    private static final String REPLICATION_INIT_FROM_STR = "replication.initialize.from";
+
+    private static final String IMPORT_THREADS_STR = "import.threads";
+
+    private static final String EXPORT_RATE_LIMIT_STR = "export.rate.limit";
+
+    private static final String PROFILE_STR = "profile";
+
+    private static final String HEALTH_INTERVAL_STR = "health.probe.interval";
+
+    private static final String HEALTH_LATENCY_STR = "health.latency.threshold";
+
+    private static final String HEALTH_SUCCESS_STR = "health.success.threshold";
+
+    private static final String HEALTH_HOST_STR = "health.probe.host";
+
+    private static final String HEALTH_BIND_DN_STR = "health.probe.bind.dn";
+
+    private static final String HEALTH_BIND_PASSWORD_STR = "health.probe.bind.password";
+
+    private static final String ADMISSION_RATE_STR = "admission.rate.limit";
+
+    private static final String ADMISSION_BURST_STR = "admission.burst";
+
+    private static final String ADMISSION_SCANS_STR = "admission.max.scans";
+
+    private static final String MEMBERSHIP_INDEX_STR = "membership.index";
+
+    private static final String VLV_INDEXES_STR = "vlv.indexes";
+
+    private static final String DURABILITY_STR = "db.durability";
+
+    private static final String GROUP_COMMIT_WINDOW_STR = "db.group.commit.window";
+
+    private static final String GROUP_COMMIT_SIZE_STR = "db.group.commit.size";
+
+    private static final String VLV_AUTO_CREATE_STR = "vlv.auto.create.threshold";
+
     private static final String DEFAULT_CONFIG_LOC = "/config/config.ldif";
 
     private static final String DEFAULT_ADMIN_BACKEND_LOC = "/config/admin-backend.ldif";
@@ -99,14 +219,237 @@ public class LDAPManager {
 
     private static final String DEFAULT_BUILDINFO_LOC = "/config/buildinfo";
 
+    private static final String INSTALL_MANIFEST_LOC = "/config/embedded-install-manifest";
+
+    /**
+     * Digests of the files installed by the previous bundle release, in the
+     * manifest format. Data paths created before the install manifest existed
+     * are upgraded against it, so it has to be refreshed for every release.
+     */
+    private static final String PREVIOUS_RELEASE_DIGESTS_LOC =
+            "/config/embedded-previous-release-digests";
+
+    /**
+     * Manifest key of the bundled configuration template. The installed
+     * config.ldif is generated from it and changed by the server, so it is
+     * regenerated rather than compared when the template changes.
+     */
+    private static final String CONFIG_TEMPLATE_KEY = "config/config.ldif.template";
+
     private static final String DEFAULT_DB_ID = "userRoot";
 
+    /**
+     * Longest time an import, snapshot or restore waits for running exports
+     * before it gives up.
+     */
+    private static final long BACKEND_OFFLINE_TIMEOUT_SECONDS = 60;
+
+    private static final String DEFAULT_DB_DIR = "db";
+
+    private static final String JE_LOG_FILE_SUFFIX = ".jdb";
+
+    private static final String JE_LOCK_FILE = "je.lck";
+
+    private static final String ACCESS_LOG_LOC = "/logs/access";
+
+    private static final String INDEX_DEFINITIONS_LOC = "/config/embedded-indexes";
+
+    private static final String VLV_INDEX_DEFINITIONS_LOC = "/config/embedded-vlv-indexes";
+
+    /**
+     * Each VLV index slows down writes, so only this many are created
+     * automatically.
+     */
+    private static final int MAX_AUTO_VLV_INDEXES = 10;
+
+    private static final long SEARCH_TRACKER_INTERVAL_SECONDS = 60;
+
+    /**
+     * Interfaces this manager is registered under while the server is running.
+     */
+    private static final String[] ADMIN_SERVICES = {
+            DirectoryIndexes.class.getName(),
+            DirectoryReplication.class.getName(),
+            DirectoryImports.class.getName(),
+            DirectoryStorage.class.getName(),
+            DirectoryAdmission.class.getName(),
+            DirectoryMembership.class.getName(),
+            DirectoryExport.class.getName()};
+
+    private static final String IMPORT_TMP_LOC = "/import-tmp";
+
+    private static final String IMPORT_REJECTS_LOC = "/logs/import-rejects-";
+
+    private static final long IMPORT_PROGRESS_INTERVAL_SECONDS = 10;
+
+    private static final int IMPORT_BUFFER_SIZE = 64 * 1024;
+
+    private static final String IMPORT_HISTORY_LOC = "/config/embedded-ldif-history";
+
+    private static final int MAX_IMPORT_HISTORY = 100;
+
+    /**
+     * Time the backends were last replaced by other means than an LDIF import,
+     * such as a restore. Imports recorded before it no longer describe the
+     * content of the backends.
+     */
+    private static final String IMPORT_INVALIDATED_LOC = "/config/embedded-ldif-invalidated";
+
+    /**
+     * Additional backends that were configured when the last LDIF file was
+     * imported successfully. An unchanged file is imported again once they
+     * change, since it may hold entries for a new backend.
+     */
+    private static final String IMPORT_BACKENDS_LOC = "/config/embedded-ldif-backends";
+
+    private static final String REPLICATION_MONITOR_DN = "cn=monitor";
+
+    private static final String WORK_QUEUE_MONITOR_DN = "cn=Work Queue,cn=monitor";
+
+    private static final String WORK_QUEUE_CONFIG_DN = "cn=Work Queue,cn=config";
+
+    private static final String ADMISSION_PLUGIN_DN =
+            "cn=Embedded Admission Control,cn=Plugins,cn=config";
+
+    private static final String MEMBERSHIP_PLUGIN_DN =
+            "cn=Embedded Membership Index,cn=Plugins,cn=config";
+
+    private static final String COMMIT_LATENCY_PLUGIN_DN =
+            "cn=Embedded Commit Latency Tracker,cn=Plugins,cn=config";
+
+    private static final String GROUP_COMMIT_PLUGIN_DN =
+            "cn=Embedded Group Commit,cn=Plugins,cn=config";
+
+    private static final String SORTED_SEARCH_PLUGIN_DN =
+            "cn=Embedded Sorted Search Tracker,cn=Plugins,cn=config";
+
+    private static final String DB_ENVIRONMENT_MONITOR_DN = "cn=%s Database Environment,cn=monitor";
+
+    private static final String REPLICATION_MONITOR_FILTER =
+            "(|(cn=*replication*)(domain-name=*)(server-id=*)(replication-server-id=*))";
+
+    private static final String DEFAULT_DB_CONFIG_DN =
+            "ds-cfg-backend-id=" + DEFAULT_DB_ID + ",cn=Backends,cn=config";
+
     private Logger logger = LoggerFactory.getLogger(LDAPManager.class);
 
     private String dataPath = "etc/org.codice.opendj/ldap";
 
     private String installDir;
 
+    private List<String> sslProtocols = new ArrayList<String>();
+
+    private List<String> sslCipherSuites = new ArrayList<String>();
+
+    private List<BackendDefinition> backends = new ArrayList<BackendDefinition>();
+
+    private int replicationPort = 0;
+
+    private int replicationServerId = 1;
+
+    private List<String> replicationPeers = new ArrayList<String>();
+
+    private int replicationInitializeFrom = 0;
+
+    /**
+     * Set when the data path is created and cleared once the configuration
+     * has been applied to it, at which point the schema files the profile
+     * does not use are removed and a new replica is initialized from another
+     * node.
+     */
+    private boolean newInstallPending = false;
+
+    /**
+     * Set when the server is started on an existing data path and cleared
+     * once its installed files were brought up to date with the bundle, after
+     * the configuration has been applied so that a regenerated config.ldif
+     * carries it.
+     */
+    private boolean upgradePending = false;
+
+    /**
+     * The configuration is applied by {@link #updateCallback(Map)} after the
+     * server was started with the default settings.
+     */
+    private boolean configurationApplied = false;
+
+    private int importThreadCount = 0;
+
+    private int exportRateLimit = 0;
+
+    /**
+     * One lock per backend id, held by exports while they read the backend
+     * and by the operations that take it offline, so that an export never
+     * sees a replaced database. Exports of one backend do not hold up the
+     * others.
+     */
+    private final ConcurrentMap<String, ReadWriteLock> backendLocks =
+            new ConcurrentHashMap<String, ReadWriteLock>();
+
+    private volatile LDIFImportProgress importProgress;
+
+    private DeploymentProfile profile = DeploymentProfile.STANDARD;
+
+    private long startupTimeMillis;
+
+    private long startupHeapBytes;
+
+    private int healthProbeInterval = 30;
+
+    private int healthLatencyThreshold = 500;
+
+    private int healthSuccessThreshold = 90;
+
+    private String healthProbeHost = "";
+
+    private String healthProbeBindDN = "";
+
+    private String healthProbeBindPassword = "";
+
+    private HealthProber healthProber;
+
+    private ScheduledExecutorService healthScheduler;
+
+    private ServiceRegistration healthRegistration;
+
+    private int admissionRateLimit = 0;
+
+    private int admissionBurst = 100;
+
+    private int admissionMaxScans = 0;
+
+    private AdmissionControlPlugin admissionPlugin;
+
+    private boolean membershipIndexEnabled = true;
+
+    private final MembershipIndex membershipIndex = new MembershipIndex();
+
+    private MembershipIndexPlugin membershipPlugin;
+
+    private DurabilityMode durability = DurabilityMode.WRITE_NO_SYNC;
+
+    private int groupCommitWindow = 5;
+
+    private int groupCommitSize = 50;
+
+    private CommitLatencyTracker commitLatencyTracker;
+
+    private GroupCommitter groupCommitter;
+
+    private GroupCommitPlugin groupCommitPlugin;
+
+    private List<VLVIndexDefinition> vlvIndexes = new ArrayList<VLVIndexDefinition>();
+
+    private int vlvAutoCreateThreshold = 0;
+
+    private SortedSearchTracker sortedSearchTracker;
+
+    private UnindexedSearchTracker searchTracker;
+
+    private ScheduledExecutorService scheduler;
+
+    private ServiceRegistration adminRegistration;
+
     private BundleContext context;
 
     /**
@@ -130,6 +473,7 @@ public LDAPManager(BundleContext context) {
      */
     public void startServer() throws LDAPException {
         logger.info("Starting LDAP Server Configuration.");
+        long startTime = System.nanoTime();
         File installFile = new File(dataPath);
         installDir = installFile.getAbsolutePath();
         boolean isFreshInstall;
@@ -137,6 +481,7 @@ public void startServer() throws LDAPException {
             isFreshInstall = false;
             logger.debug("Configuration already exists at {}, not setting up defaults.",
                     installDir);
+            upgradePending = true;
         } else {
             isFreshInstall = true;
             logger.debug("No initial configuration found, setting defaults.");
@@ -145,10 +490,12 @@ public void startServer() throws LDAPException {
 
             logger.info("Copying default files to configuration location.");
             copyDefaultFiles();
+            saveInstallManifest(createInstallManifest());
         }
 
         try {
             createStorePinFiles();
+            createBackendDirectories();
             // General Configuration
             DirectoryEnvironmentConfig serverConfig = new DirectoryEnvironmentConfig();
             serverConfig.setServerRoot(installFile);
@@ -174,8 +521,8 @@ public void startServer() throws LDAPException {
 
         // post start tasks if first time being started
         if (isFreshInstall) {
-            InputStream defaultLDIF = null;
-
+            // profile and replication are only known once the configuration is applied
+            newInstallPending = true;
             try {
                 //we use the find because that searches fragments too
                 Enumeration<URL> entries = context.getBundle()
@@ -183,167 +530,549 @@ public void startServer() throws LDAPException {
                 if (entries != null) {
                     while (entries.hasMoreElements()) {
                         URL url = entries.nextElement();
-                        defaultLDIF = url.openStream();
                         logger.debug("Installing default LDIF file: {}", url);
                         // load into backend
-                        loadLDIF(defaultLDIF);
+                        importLDIF(url, false);
                     }
                 }
-            } catch (IOException ioe) {
-                // need to make sure that the server is stopped on error
-                logger.warn(
-                        "Error encountered during LDIF import, stopping server and cleaning up.");
-                stopServer();
-                throw new LDAPException(
-                        "Error encountered during LDIF import, stopping server and cleaning up.",
-                        ioe);
             } catch (LDAPException le) {
                 // need to make sure that the server is stopped on error
                 logger.warn(
                         "Error encountered during LDIF import, stopping server and cleaning up.");
                 stopServer();
                 throw le;
-            } finally {
-                IOUtils.closeQuietly(defaultLDIF);
             }
 
         }
+        startBackgroundTasks();
+        recordStartupMetrics(startTime);
         logger.info("LDAP server successfully started.");
     }
 
-    private void createStorePinFiles() throws IOException {
-        Path keyStorePin = Paths.get(DEFAULT_TRUST_STORE_PW_LOCACTION);
-        Path trustStorePin = Paths.get(DEFAULT_KEY_STORE_PW_LOCACTION);
-        if (Files.exists(keyStorePin)) {
-            Files.delete(keyStorePin);
+    /**
+     * Starts the background tasks that run while the server is up.
+     */
+    private void startBackgroundTasks() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        searchTracker = new UnindexedSearchTracker(new File(installDir + ACCESS_LOG_LOC));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                searchTracker.scan();
+            }
+        }, SEARCH_TRACKER_INTERVAL_SECONDS, SEARCH_TRACKER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        startCommitLatencyTracker();
+        startGroupCommit();
+        startSortedSearchTracker();
+        startMembershipIndex();
+        startHealthProber();
+        startAdmissionControl();
+        adminRegistration = context.registerService(ADMIN_SERVICES, this, null);
+    }
+
+    /**
+     * Stops the background tasks started with the server.
+     */
+    private void stopBackgroundTasks() {
+        if (adminRegistration != null) {
+            try {
+                adminRegistration.unregister();
+            } catch (IllegalStateException ise) {
+                logger.debug("Administration services were already unregistered.", ise);
+            }
+            adminRegistration = null;
         }
-        if (Files.exists(trustStorePin)) {
-            Files.delete(trustStorePin);
+        stopAdmissionControl();
+        stopHealthProber();
+        stopMembershipIndex();
+        stopSortedSearchTracker();
+        stopGroupCommit();
+        stopCommitLatencyTracker();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
         }
+    }
 
-        Files.createFile(keyStorePin);
-        Files.createFile(trustStorePin);
-
-        BufferedWriter keyStorePinWriter = Files.newBufferedWriter(keyStorePin);
-        try {
-            keyStorePinWriter.write(DEFAULT_KEY_STORE_PW);
-        } finally {
-            keyStorePinWriter.close();
+    /**
+     * Registers the admission control plugin if a request rate or a subtree
+     * search limit is configured.
+     */
+    private void startAdmissionControl() {
+        if (admissionRateLimit <= 0 && admissionMaxScans <= 0) {
+            logger.debug("Admission control is disabled.");
+            return;
         }
-
-        BufferedWriter trustStorePinWriter = Files.newBufferedWriter(trustStorePin);
-        try {
-            trustStorePinWriter.write(DEFAULT_TRUST_STORE_PW);
-        } finally {
-            trustStorePinWriter.close();
+        int maxScans = admissionMaxScans;
+        if (maxScans > 0) {
+            // searches over the limit must still leave a worker thread for everything else
+            int workerThreads = getWorkerThreadCount();
+            if (maxScans >= workerThreads) {
+                maxScans = Math.max(1, workerThreads - 1);
+                logger.warn("{} concurrent subtree searches would occupy all {} worker threads, "
+                        + "allowing {}.", admissionMaxScans, workerThreads, maxScans);
+            }
         }
-
         try {
-            Set<PosixFilePermission> posixFilePermissions = new HashSet<PosixFilePermission>();
-            posixFilePermissions.add(PosixFilePermission.OWNER_READ);
-            posixFilePermissions.add(PosixFilePermission.OWNER_WRITE);
-            Files.setPosixFilePermissions(keyStorePin, posixFilePermissions);
-            Files.setPosixFilePermissions(trustStorePin, posixFilePermissions);
-        } catch (UnsupportedOperationException e) {
-            logger.warn(
-                    "Unable to set read/write permissions for temporary keystore password files. This might be normal if running in a Windows environment.",
-                    e);
+            admissionPlugin = new AdmissionControlPlugin(DN.decode(ADMISSION_PLUGIN_DN),
+                    admissionRateLimit, admissionBurst, maxScans);
+        } catch (DirectoryException de) {
+            logger.warn("Could not create admission control plugin.", de);
+            return;
         }
+        DirectoryServer.getPluginConfigManager()
+                .registerInternalPlugin(admissionPlugin);
+        logger.info("Admission control enabled: {} requests per second per client, "
+                        + "burst of {}, {} concurrent subtree searches.", admissionRateLimit,
+                admissionBurst, maxScans);
     }
 
     /**
-     * Stops the underlying LDAP server. This method is set in blueprint and is
-     * used when the bundle is being stopped.
+     * @return number of worker threads of the work queue, either configured or
+     * picked by the server
      */
-    public void stopServer() throws LDAPException {
-        logger.info("Stopping LDAP Server");
-        if (EmbeddedUtils.isRunning()) {
-            EmbeddedUtils.stopServer(LDAPManager.class.getName(), Message.EMPTY);
-            StringBuilder lockReleaseError = new StringBuilder();
-            if (!LockFileManager.releaseLock(LockFileManager.getServerLockFileName(),
-                    lockReleaseError)) {
-                logger.warn(
-                        "Could not release the main server lock file. You may need to terminate the JVM to "
-                                + "restart the server. ERROR: {}", lockReleaseError.toString());
+    private int getWorkerThreadCount() {
+        try {
+            for (Map<String, String> attributes : searchMonitor(WORK_QUEUE_CONFIG_DN,
+                    SearchScope.BASE_OBJECT, "(objectClass=*)",
+                    "Could not read work queue configuration").values()) {
+                String workerThreads = attributes.get("ds-cfg-num-worker-threads");
+                if (StringUtils.isNotBlank(workerThreads) && StringUtils.isNumeric(
+                        workerThreads)) {
+                    return Integer.parseInt(workerThreads);
+                }
             }
-
-            logger.info("LDAP Server successfully stopped.");
-        } else {
-            logger.info("Server was not started, it is still stopped.");
+        } catch (LDAPException le) {
+            logger.debug("Using the default number of worker threads.", le);
         }
+        // what the traditional work queue uses when no number is configured
+        return Math.max(24, 2 * Runtime.getRuntime()
+                .availableProcessors());
     }
 
     /**
-     * Restarts the underlying LDAP server. This method calls stopServer and
-     * then startServer. It does not use the embedded LDAP server's restart
-     * command due to a system.exit() that is in it.
-     *
-     * @throws LDAPException
+     * Removes the admission control plugin.
      */
-    public void restartServer() throws LDAPException {
-        logger.info("--Restarting LDAP Server--");
-        stopServer();
-        startServer();
-        logger.info("LDAP Server successfully restarted.");
+    private void stopAdmissionControl() {
+        if (admissionPlugin != null) {
+            DirectoryServer.getPluginConfigManager()
+                    .deregisterInternalPlugin(admissionPlugin);
+            admissionPlugin = null;
+        }
     }
 
     /**
-     * Retrieves the current port set to listen for LDAP calls. This
-     * <i>should</i> be the current listening port, but if it was just changed
-     * it will take calling the restartServer command to re-bind to ports.
-     *
-     * @return the integer value of the port
+     * Registers the plugin that measures how long writes take to be
+     * acknowledged.
      */
-    public int getLDAPPort() {
-        return ConnectorType.LDAP.currentPort;
+    private void startCommitLatencyTracker() {
+        try {
+            commitLatencyTracker = new CommitLatencyTracker(DN.decode(COMMIT_LATENCY_PLUGIN_DN));
+        } catch (DirectoryException de) {
+            logger.warn("Could not create commit latency tracker.", de);
+            return;
+        }
+        DirectoryServer.getPluginConfigManager()
+                .registerInternalPlugin(commitLatencyTracker);
     }
 
     /**
-     * Set the LDAP port for the server to listen on. <br/>
-     * <br/>
-     * <b>NOTE:</b> this will NOT automatically update the server to listen on
-     * the new port. The configuration will need to be updated and the server
-     * restarted for it to listen on the new port.
-     *
-     * @param ldapPortNumber new port to listen on.
+     * Removes the commit latency tracker plugin.
      */
-    public void setLDAPPort(int ldapPortNumber) {
-        ConnectorType.LDAP.currentPort = ldapPortNumber;
+    private void stopCommitLatencyTracker() {
+        if (commitLatencyTracker != null) {
+            DirectoryServer.getPluginConfigManager()
+                    .deregisterInternalPlugin(commitLatencyTracker);
+            commitLatencyTracker = null;
+        }
     }
 
     /**
-     * Retrieves the current port set to listen for LDAPS (SSL) calls. This
-     * <i>should</i> be the current listening port, but if it was just changed
-     * it will take calling the restartServer command to re-bind to ports.
-     *
-     * @return the integer value of the port
+     * Registers the plugin that holds back write responses until the group
+     * commit flusher synced them, if the durability mode is group commit.
      */
-    public int getLDAPSPort() {
-        return ConnectorType.LDAPS.currentPort;
+    private void startGroupCommit() {
+        if (durability != DurabilityMode.GROUP_COMMIT) {
+            return;
+        }
+        Set<String> backendIds = new LinkedHashSet<String>();
+        List<File> directories = new ArrayList<File>();
+        backendIds.add(DEFAULT_DB_ID);
+        directories.add(getBackendDirectory(DEFAULT_DB_DIR, DEFAULT_DB_ID));
+        for (BackendDefinition definition : backends) {
+            backendIds.add(definition.getBackendId());
+            directories.add(getBackendDirectory(definition.getDbDirectory(),
+                    definition.getBackendId()));
+        }
+        GroupCommitter committer = new GroupCommitter(groupCommitWindow, groupCommitSize,
+                new JELogSyncer(directories));
+        try {
+            groupCommitPlugin = new GroupCommitPlugin(DN.decode(GROUP_COMMIT_PLUGIN_DN), committer,
+                    backendIds);
+        } catch (DirectoryException de) {
+            logger.warn("Could not create group commit plugin, writes are not synced.", de);
+            return;
+        }
+        committer.start();
+        groupCommitter = committer;
+        DirectoryServer.getPluginConfigManager()
+                .registerInternalPlugin(groupCommitPlugin);
     }
 
     /**
-     * Set the LDAPS port for the server to listen on. <br/>
-     * <br/>
-     * <b>NOTE:</b> this will NOT automatically update the server to listen on
-     * the new port. The configuration will need to be updated and the server
-     * restarted for it to listen on the new port.
-     *
-     * @param ldapsPortNumber new port to listen on.
+     * Removes the group commit plugin and stops its flusher once the waiting
+     * writes are synced.
      */
-    public void setLDAPSPort(int ldapsPortNumber) {
-        ConnectorType.LDAPS.currentPort = ldapsPortNumber;
+    private void stopGroupCommit() {
+        if (groupCommitPlugin != null) {
+            DirectoryServer.getPluginConfigManager()
+                    .deregisterInternalPlugin(groupCommitPlugin);
+            groupCommitPlugin = null;
+        }
+        if (groupCommitter != null) {
+            groupCommitter.stop();
+            groupCommitter = null;
+        }
     }
 
     /**
-     * Retrieves the current port set to listen for ADMIN calls. This
-     * <i>should</i> be the current listening port, but if it was just changed
-     * it will take calling the restartServer command to re-bind to ports.
-     *
-     * @return the integer value of the port
+     * Adds the configured VLV indexes that the server does not have yet,
+     * registers the plugin that tracks sorted searches and periodically
+     * creates the VLV indexes those searches need once the automatic creation
+     * threshold is reached.
      */
-    public int getAdminPort() {
-        return ConnectorType.ADMIN.currentPort;
+    private void startSortedSearchTracker() {
+        for (VLVIndexDefinition definition : vlvIndexes) {
+            try {
+                addVLVIndex(definition);
+            } catch (LDAPException le) {
+                logger.warn("Could not add VLV index {}.", definition, le);
+            }
+        }
+        try {
+            sortedSearchTracker = new SortedSearchTracker(DN.decode(SORTED_SEARCH_PLUGIN_DN));
+        } catch (DirectoryException de) {
+            logger.warn("Could not create sorted search tracker.", de);
+            return;
+        }
+        DirectoryServer.getPluginConfigManager()
+                .registerInternalPlugin(sortedSearchTracker);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                createRecommendedVLVIndexes();
+            }
+        }, SEARCH_TRACKER_INTERVAL_SECONDS, SEARCH_TRACKER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Removes the sorted search tracker plugin.
+     */
+    private void stopSortedSearchTracker() {
+        if (sortedSearchTracker != null) {
+            DirectoryServer.getPluginConfigManager()
+                    .deregisterInternalPlugin(sortedSearchTracker);
+            sortedSearchTracker = null;
+        }
+    }
+
+    /**
+     * Creates the VLV indexes that were needed by at least
+     * {@link #vlvAutoCreateThreshold} sorted searches, up to
+     * {@link #MAX_AUTO_VLV_INDEXES} stored indexes.
+     */
+    private void createRecommendedVLVIndexes() {
+        SortedSearchTracker tracker = sortedSearchTracker;
+        if (vlvAutoCreateThreshold <= 0 || tracker == null) {
+            return;
+        }
+        List<VLVIndexDefinition> stored = readVLVIndexDefinitions();
+        List<VLVIndexDefinition> existing = new ArrayList<VLVIndexDefinition>(stored);
+        existing.addAll(vlvIndexes);
+        for (VLVIndexRecommendation recommendation : tracker.getRecommendations()) {
+            if (recommendation.getSearchCount() < vlvAutoCreateThreshold) {
+                break;
+            }
+            VLVIndexDefinition definition = recommendation.getDefinition();
+            boolean exists = false;
+            for (VLVIndexDefinition existingDefinition : existing) {
+                exists |= existingDefinition.isSameIndex(definition);
+            }
+            if (exists) {
+                continue;
+            }
+            if (stored.size() >= MAX_AUTO_VLV_INDEXES) {
+                logger.warn("Not creating VLV index for {}, {} VLV indexes exist already.",
+                        recommendation, stored.size());
+                return;
+            }
+            logger.info("Creating VLV index for frequent sorted search {}", recommendation);
+            try {
+                createVLVIndex(definition);
+                stored.add(definition);
+                existing.add(definition);
+            } catch (LDAPException le) {
+                logger.warn("Could not create VLV index {}.", definition, le);
+            }
+        }
+    }
+
+    /**
+     * Registers the plugin that keeps the membership index up to date and
+     * reads the groups of every local backend into it.
+     */
+    private void startMembershipIndex() {
+        if (!membershipIndexEnabled) {
+            logger.debug("Membership index is disabled.");
+            return;
+        }
+        try {
+            membershipPlugin = new MembershipIndexPlugin(DN.decode(MEMBERSHIP_PLUGIN_DN),
+                    membershipIndex);
+        } catch (DirectoryException de) {
+            logger.warn("Could not create membership index plugin.", de);
+            return;
+        }
+        // registered before loading so that no change made during the load is missed
+        DirectoryServer.getPluginConfigManager()
+                .registerInternalPlugin(membershipPlugin);
+        try {
+            rebuildMembershipIndex();
+        } catch (LDAPException le) {
+            logger.warn("Membership index is incomplete until it is rebuilt.", le);
+        }
+    }
+
+    /**
+     * Removes the membership index plugin and empties the index.
+     */
+    private void stopMembershipIndex() {
+        if (membershipPlugin != null) {
+            DirectoryServer.getPluginConfigManager()
+                    .deregisterInternalPlugin(membershipPlugin);
+            membershipPlugin = null;
+        }
+        membershipIndex.clear();
+    }
+
+    /**
+     * @return base DNs of the default backend and every configured backend
+     * that is currently loaded.
+     */
+    private List<DN> getBackendBaseDNs() {
+        List<String> backendIds = new ArrayList<String>();
+        backendIds.add(DEFAULT_DB_ID);
+        for (BackendDefinition definition : backends) {
+            backendIds.add(definition.getBackendId());
+        }
+        List<DN> baseDNs = new ArrayList<DN>();
+        for (String backendId : backendIds) {
+            Backend backend = DirectoryServer.getBackend(backendId);
+            if (backend != null) {
+                baseDNs.addAll(Arrays.asList(backend.getBaseDNs()));
+            }
+        }
+        return baseDNs;
+    }
+
+    /**
+     * Registers the {@link DirectoryHealth} service and starts probing the base
+     * DN of every local backend, through every enabled LDAP listener and
+     * through an internal connection. Probes run
+     * on their own thread so that a slow server does not hold up the other
+     * background tasks.
+     */
+    private void startHealthProber() {
+        if (healthProbeInterval <= 0) {
+            logger.debug("Health probes are disabled.");
+            return;
+        }
+        // a probe that does not answer within twice the threshold counts as failed
+        long timeoutMillis = Math.max(1000, 2L * healthLatencyThreshold);
+        Map<String, HealthProber.Probe> probes = new LinkedHashMap<String, HealthProber.Probe>();
+        List<DN> baseDNs = getBackendBaseDNs();
+        if (ConnectorType.LDAP.currentPort != 0) {
+            probes.put("ldap", HealthProber.listenerProbe(
+                    "ldap://localhost:" + ConnectorType.LDAP.currentPort, baseDNs,
+                    healthProbeBindDN, healthProbeBindPassword, timeoutMillis));
+        }
+        if (ConnectorType.LDAPS.currentPort != 0) {
+            // the host name is verified against the server certificate
+            probes.put("ldaps", HealthProber.listenerProbe(
+                    "ldaps://" + HealthProber.getProbeHost(healthProbeHost) + ":"
+                            + ConnectorType.LDAPS.currentPort, baseDNs, healthProbeBindDN,
+                    healthProbeBindPassword, timeoutMillis));
+        }
+        for (DN baseDN : baseDNs) {
+            probes.put("internal " + baseDN, HealthProber.internalProbe(baseDN));
+        }
+
+        healthProber = new HealthProber(probes, healthLatencyThreshold, healthSuccessThreshold);
+        healthRegistration = context.registerService(DirectoryHealth.class.getName(),
+                healthProber, healthProber.getServiceProperties());
+        healthProber.setRegistration(healthRegistration);
+        healthScheduler = Executors.newSingleThreadScheduledExecutor();
+        healthScheduler.scheduleWithFixedDelay(healthProber, 0, healthProbeInterval,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the health probes and unregisters the {@link DirectoryHealth}
+     * service.
+     */
+    private void stopHealthProber() {
+        if (healthScheduler != null) {
+            healthScheduler.shutdownNow();
+            healthScheduler = null;
+        }
+        if (healthProber != null) {
+            healthProber.setRegistration(null);
+            healthProber = null;
+        }
+        if (healthRegistration != null) {
+            try {
+                healthRegistration.unregister();
+            } catch (IllegalStateException ise) {
+                logger.debug("Health service was already unregistered.", ise);
+            }
+            healthRegistration = null;
+        }
+    }
+
+    private void createStorePinFiles() throws IOException {
+        Path keyStorePin = Paths.get(DEFAULT_TRUST_STORE_PW_LOCACTION);
+        Path trustStorePin = Paths.get(DEFAULT_KEY_STORE_PW_LOCACTION);
+        if (Files.exists(keyStorePin)) {
+            Files.delete(keyStorePin);
+        }
+        if (Files.exists(trustStorePin)) {
+            Files.delete(trustStorePin);
+        }
+
+        Files.createFile(keyStorePin);
+        Files.createFile(trustStorePin);
+
+        BufferedWriter keyStorePinWriter = Files.newBufferedWriter(keyStorePin);
+        try {
+            keyStorePinWriter.write(DEFAULT_KEY_STORE_PW);
+        } finally {
+            keyStorePinWriter.close();
+        }
+
+        BufferedWriter trustStorePinWriter = Files.newBufferedWriter(trustStorePin);
+        try {
+            trustStorePinWriter.write(DEFAULT_TRUST_STORE_PW);
+        } finally {
+            trustStorePinWriter.close();
+        }
+
+        try {
+            Set<PosixFilePermission> posixFilePermissions = new HashSet<PosixFilePermission>();
+            posixFilePermissions.add(PosixFilePermission.OWNER_READ);
+            posixFilePermissions.add(PosixFilePermission.OWNER_WRITE);
+            Files.setPosixFilePermissions(keyStorePin, posixFilePermissions);
+            Files.setPosixFilePermissions(trustStorePin, posixFilePermissions);
+        } catch (UnsupportedOperationException e) {
+            logger.warn(
+                    "Unable to set read/write permissions for temporary keystore password files. This might be normal if running in a Windows environment.",
+                    e);
+        }
+    }
+
+    /**
+     * Stops the underlying LDAP server. This method is set in blueprint and is
+     * used when the bundle is being stopped.
+     */
+    public void stopServer() throws LDAPException {
+        logger.info("Stopping LDAP Server");
+        stopBackgroundTasks();
+        if (EmbeddedUtils.isRunning()) {
+            EmbeddedUtils.stopServer(LDAPManager.class.getName(), Message.EMPTY);
+            StringBuilder lockReleaseError = new StringBuilder();
+            if (!LockFileManager.releaseLock(LockFileManager.getServerLockFileName(),
+                    lockReleaseError)) {
+                logger.warn(
+                        "Could not release the main server lock file. You may need to terminate the JVM to "
+                                + "restart the server. ERROR: {}", lockReleaseError.toString());
+            }
+
+            logger.info("LDAP Server successfully stopped.");
+        } else {
+            logger.info("Server was not started, it is still stopped.");
+        }
+    }
+
+    /**
+     * Restarts the underlying LDAP server. This method calls stopServer and
+     * then startServer. It does not use the embedded LDAP server's restart
+     * command due to a system.exit() that is in it.
+     *
+     * @throws LDAPException
+     */
+    public void restartServer() throws LDAPException {
+        logger.info("--Restarting LDAP Server--");
+        stopServer();
+        startServer();
+        logger.info("LDAP Server successfully restarted.");
+    }
+
+    /**
+     * Retrieves the current port set to listen for LDAP calls. This
+     * <i>should</i> be the current listening port, but if it was just changed
+     * it will take calling the restartServer command to re-bind to ports.
+     *
+     * @return the integer value of the port
+     */
+    public int getLDAPPort() {
+        return ConnectorType.LDAP.currentPort;
+    }
+
+    /**
+     * Set the LDAP port for the server to listen on. <br/>
+     * <br/>
+     * <b>NOTE:</b> this will NOT automatically update the server to listen on
+     * the new port. The configuration will need to be updated and the server
+     * restarted for it to listen on the new port.
+     *
+     * @param ldapPortNumber new port to listen on.
+     */
+    public void setLDAPPort(int ldapPortNumber) {
+        ConnectorType.LDAP.currentPort = ldapPortNumber;
+    }
+
+    /**
+     * Retrieves the current port set to listen for LDAPS (SSL) calls. This
+     * <i>should</i> be the current listening port, but if it was just changed
+     * it will take calling the restartServer command to re-bind to ports.
+     *
+     * @return the integer value of the port
+     */
+    public int getLDAPSPort() {
+        return ConnectorType.LDAPS.currentPort;
+    }
+
+    /**
+     * Set the LDAPS port for the server to listen on. <br/>
+     * <br/>
+     * <b>NOTE:</b> this will NOT automatically update the server to listen on
+     * the new port. The configuration will need to be updated and the server
+     * restarted for it to listen on the new port.
+     *
+     * @param ldapsPortNumber new port to listen on.
+     */
+    public void setLDAPSPort(int ldapsPortNumber) {
+        ConnectorType.LDAPS.currentPort = ldapsPortNumber;
+    }
+
+    /**
+     * Retrieves the current port set to listen for ADMIN calls. This
+     * <i>should</i> be the current listening port, but if it was just changed
+     * it will take calling the restartServer command to re-bind to ports.
+     *
+     * @return the integer value of the port
+     */
+    public int getAdminPort() {
+        return ConnectorType.ADMIN.currentPort;
     }
 
     /**
@@ -359,135 +1088,2413 @@ public void setAdminPort(int adminPortNumber) {
         ConnectorType.ADMIN.currentPort = adminPortNumber;
     }
 
-    public String getDataPath() {
-        return this.dataPath;
+    /**
+     * Retrieves the SSL/TLS protocols the LDAPS connector is limited to. An
+     * empty list means the JVM defaults are used.
+     *
+     * @return list of protocol names
+     */
+    public List<String> getSSLProtocols() {
+        return sslProtocols;
+    }
+
+    /**
+     * Set the SSL/TLS protocols the LDAPS connector accepts. <br/>
+     * <br/>
+     * <b>NOTE:</b> this will NOT automatically update the server. The
+     * configuration will need to be updated and the server restarted for the
+     * new protocols to be used.
+     *
+     * @param sslProtocols protocol names, empty to use the JVM defaults.
+     */
+    public void setSSLProtocols(List<String> sslProtocols) {
+        this.sslProtocols = sslProtocols;
+    }
+
+    /**
+     * Retrieves the cipher suites the LDAPS connector is limited to. An empty
+     * list means the JVM defaults are used.
+     *
+     * @return list of cipher suite names
+     */
+    public List<String> getSSLCipherSuites() {
+        return sslCipherSuites;
+    }
+
+    /**
+     * Set the cipher suites the LDAPS connector accepts. <br/>
+     * <br/>
+     * <b>NOTE:</b> this will NOT automatically update the server. The
+     * configuration will need to be updated and the server restarted for the
+     * new cipher suites to be used.
+     *
+     * @param sslCipherSuites cipher suite names, empty to use the JVM defaults.
+     */
+    public void setSSLCipherSuites(List<String> sslCipherSuites) {
+        this.sslCipherSuites = sslCipherSuites;
+    }
+
+    /**
+     * Retrieves the additional backends that are configured next to the
+     * default userRoot backend.
+     *
+     * @return list of backend definitions
+     */
+    public List<BackendDefinition> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Set the additional backends to create next to the default userRoot
+     * backend. <br/>
+     * <br/>
+     * <b>NOTE:</b> this will NOT automatically update the server. The
+     * configuration will need to be updated and the server restarted for the
+     * backends to be created.
+     *
+     * @param backends additional backend definitions.
+     */
+    public void setBackends(List<BackendDefinition> backends) {
+        this.backends = backends;
+    }
+
+    /**
+     * Retrieves the searches that were unindexed or exceeded an index entry or
+     * lookthrough limit since the server started, grouped by filter shape.
+     *
+     * @return map of filter shape to a two element array holding the number
+     * of unindexed searches and the number of limit-exceeded searches
+     */
+    public Map<String, long[]> getUnindexedSearches() {
+        if (searchTracker == null) {
+            return new HashMap<String, long[]>();
+        }
+        searchTracker.scan();
+        return searchTracker.getShapeCounts();
+    }
+
+    /**
+     * Builds a report of the attribute indexes that would have served the
+     * unindexed and limit-exceeded searches seen since the server started.
+     *
+     * @return index recommendations, most frequently needed first
+     */
+    @Override
+    public List<IndexRecommendation> getIndexRecommendations() {
+        if (searchTracker == null) {
+            return new ArrayList<IndexRecommendation>();
+        }
+        searchTracker.scan();
+        return searchTracker.getRecommendations();
+    }
+
+    /**
+     * Adds an attribute index given in its stored form, see
+     * {@link #createIndex(IndexDefinition)}.
+     *
+     * @param definition index in the form
+     *                   <code>backendId|attribute|indexType[,indexType]</code>
+     * @throws LDAPException if the definition is malformed or the index could
+     *                       not be added
+     */
+    @Override
+    public void createIndex(String definition) throws LDAPException {
+        createIndex(IndexDefinition.parse(definition));
+    }
+
+    /**
+     * Adds an attribute index to a running backend and starts a background
+     * task that builds it. The backend stays online while the index is built;
+     * searches keep treating the index as unavailable until the task is done.
+     * The definition is stored in the data path and is re-applied whenever the
+     * server configuration is regenerated.
+     *
+     * @param definition index to add
+     * @throws LDAPException if the server is not running, the backend does not
+     *                       exist or the index could not be added
+     */
+    public void createIndex(IndexDefinition definition) throws LDAPException {
+        if (!EmbeddedUtils.isRunning()) {
+            throw new LDAPException("Server must be running to create index " + definition);
+        }
+        Backend backend = DirectoryServer.getBackend(definition.getBackendId());
+        if (backend == null) {
+            throw new LDAPException("Backend " + definition.getBackendId() + " does not exist.");
+        }
+        logger.info("Creating index {}", definition);
+
+        InternalClientConnection connection = InternalClientConnection.getRootConnection();
+        try {
+            DN configDN = DN.decode(definition.getConfigDN());
+            for (String indexType : definition.getIndexTypes()) {
+                List<Modification> modifications = new ArrayList<Modification>();
+                modifications.add(new Modification(ModificationType.ADD,
+                        Attributes.create("ds-cfg-index-type", indexType)));
+                ModifyOperation modifyOperation = connection.processModify(configDN,
+                        modifications);
+                if (modifyOperation.getResultCode() == ResultCode.NO_SUCH_OBJECT) {
+                    addEntry(definition.toLDIF());
+                    break;
+                } else if (modifyOperation.getResultCode()
+                        != ResultCode.ATTRIBUTE_OR_VALUE_EXISTS) {
+                    checkResult(modifyOperation, "Could not add index " + definition);
+                }
+            }
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException("Invalid index definition " + definition, de);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        saveIndexDefinition(definition);
+
+        addEntry("dn: ds-task-id=" + UUID.randomUUID() + ",cn=Scheduled Tasks,cn=tasks\n"
+                + "objectClass: top\n" + "objectClass: ds-task\n"
+                + "objectClass: ds-task-rebuild\n"
+                + "ds-task-class-name: org.opends.server.tasks.RebuildTask\n"
+                + "ds-task-rebuild-base-dn: " + backend.getBaseDNs()[0] + "\n"
+                + "ds-task-rebuild-index: " + definition.getAttribute() + "\n");
+        logger.info("Scheduled background build of index {}", definition);
+    }
+
+    /**
+     * Builds a report of the VLV indexes that would have served the sorted and
+     * virtual list view searches seen since the server started.
+     *
+     * @return VLV index recommendations, most frequently needed first
+     */
+    public List<VLVIndexRecommendation> getVLVIndexRecommendations() {
+        if (sortedSearchTracker == null) {
+            return new ArrayList<VLVIndexRecommendation>();
+        }
+        return sortedSearchTracker.getRecommendations();
+    }
+
+    /**
+     * Adds a VLV index given in the form of the VLV index settings, see
+     * {@link #createVLVIndex(VLVIndexDefinition)}.
+     *
+     * @param definition VLV index in the form
+     *                   <code>backendId|name|baseDN|scope|sortOrder|filter</code>
+     * @throws LDAPException if the definition is malformed or the index could
+     *                       not be added
+     */
+    @Override
+    public void createVLVIndex(String definition) throws LDAPException {
+        createVLVIndex(VLVIndexDefinition.parse(definition));
+    }
+
+    /**
+     * Adds a VLV index to a running backend and starts a background task that
+     * builds it. Sorted searches keep sorting in memory until the task is
+     * done. Once the index has been added its definition is stored in the
+     * data path and is re-applied whenever the server configuration is
+     * regenerated.
+     *
+     * @param definition VLV index to add
+     * @throws LDAPException if the server is not running, the backend does not
+     *                       exist or the index could not be added
+     */
+    public void createVLVIndex(VLVIndexDefinition definition) throws LDAPException {
+        addVLVIndex(definition);
+        saveVLVIndexDefinition(definition);
+    }
+
+    /**
+     * Adds the configuration entry of a VLV index unless it exists and
+     * schedules a background build of the index.
+     *
+     * @param definition VLV index to add
+     * @throws LDAPException if the server is not running, the backend does not
+     *                       exist or the index could not be added
+     */
+    private void addVLVIndex(VLVIndexDefinition definition) throws LDAPException {
+        if (!EmbeddedUtils.isRunning()) {
+            throw new LDAPException("Server must be running to create VLV index " + definition);
+        }
+        Backend backend = DirectoryServer.getBackend(definition.getBackendId());
+        if (!(backend instanceof BackendImpl)) {
+            throw new LDAPException("Backend " + definition.getBackendId()
+                    + " does not exist or does not support VLV indexes.");
+        }
+        DN rebuildBaseDN = backend.getBaseDNs()[0];
+        try {
+            if (DirectoryServer.entryExists(DN.decode(definition.getConfigDN()))) {
+                logger.debug("VLV index {} exists already.", definition.getName());
+                return;
+            }
+            DN vlvBaseDN = DN.decode(definition.getBaseDN());
+            for (DN baseDN : backend.getBaseDNs()) {
+                if (vlvBaseDN.isDescendantOf(baseDN)) {
+                    rebuildBaseDN = baseDN;
+                }
+            }
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException("Invalid VLV index definition " + definition,
+                    de);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        logger.info("Creating VLV index {}", definition);
+        addEntry(definition.toLDIF());
+        addEntry("dn: ds-task-id=" + UUID.randomUUID() + ",cn=Scheduled Tasks,cn=tasks\n"
+                + "objectClass: top\n" + "objectClass: ds-task\n"
+                + "objectClass: ds-task-rebuild\n"
+                + "ds-task-class-name: org.opends.server.tasks.RebuildTask\n"
+                + "ds-task-rebuild-base-dn: " + rebuildBaseDN + "\n"
+                + "ds-task-rebuild-index: " + definition.getRebuildName() + "\n");
+        logger.info("Scheduled background build of VLV index {}", definition.getName());
+    }
+
+    /**
+     * Reads the VLV index definitions that were added with
+     * {@link #createVLVIndex(VLVIndexDefinition)}.
+     *
+     * @return stored VLV index definitions
+     */
+    private List<VLVIndexDefinition> readVLVIndexDefinitions() {
+        List<VLVIndexDefinition> definitions = new ArrayList<VLVIndexDefinition>();
+        Path definitionsFile = Paths.get(installDir + VLV_INDEX_DEFINITIONS_LOC);
+        if (!Files.exists(definitionsFile)) {
+            return definitions;
+        }
+        try {
+            for (String line : Files.readAllLines(definitionsFile, StandardCharsets.UTF_8)) {
+                if (StringUtils.isNotBlank(line)) {
+                    try {
+                        definitions.add(VLVIndexDefinition.parse(line.trim()));
+                    } catch (LDAPException le) {
+                        logger.warn("Skipping stored VLV index: {}", le.getMessage());
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            logger.warn("Could not read stored VLV index definitions from {}", definitionsFile,
+                    ioe);
+        }
+        return definitions;
+    }
+
+    /**
+     * Stores a VLV index definition, replacing a stored definition with the
+     * same backend and name.
+     *
+     * @param definition VLV index definition to store
+     * @throws LDAPException if the definitions file could not be written
+     */
+    private void saveVLVIndexDefinition(VLVIndexDefinition definition) throws LDAPException {
+        List<String> lines = new ArrayList<String>();
+        for (VLVIndexDefinition stored : readVLVIndexDefinitions()) {
+            if (!stored.getBackendId()
+                    .equalsIgnoreCase(definition.getBackendId()) || !stored.getName()
+                    .equalsIgnoreCase(definition.getName())) {
+                lines.add(stored.toString());
+            }
+        }
+        lines.add(definition.toString());
+        try {
+            Files.write(Paths.get(installDir + VLV_INDEX_DEFINITIONS_LOC), lines,
+                    StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException(
+                    "Could not store VLV index definition " + definition, ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    /**
+     * Reads the index definitions that were added with
+     * {@link #createIndex(IndexDefinition)}.
+     *
+     * @return stored index definitions
+     */
+    private List<IndexDefinition> readIndexDefinitions() {
+        List<IndexDefinition> definitions = new ArrayList<IndexDefinition>();
+        Path definitionsFile = Paths.get(installDir + INDEX_DEFINITIONS_LOC);
+        if (!Files.exists(definitionsFile)) {
+            return definitions;
+        }
+        try {
+            for (String line : Files.readAllLines(definitionsFile, StandardCharsets.UTF_8)) {
+                if (StringUtils.isNotBlank(line)) {
+                    try {
+                        definitions.add(IndexDefinition.parse(line.trim()));
+                    } catch (LDAPException le) {
+                        logger.warn("Skipping stored index: {}", le.getMessage());
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            logger.warn("Could not read stored index definitions from {}", definitionsFile, ioe);
+        }
+        return definitions;
+    }
+
+    /**
+     * Stores an index definition, merging its index types into an existing
+     * definition for the same backend and attribute.
+     *
+     * @param definition index definition to store
+     * @throws LDAPException if the definitions file could not be written
+     */
+    private void saveIndexDefinition(IndexDefinition definition) throws LDAPException {
+        List<String> lines = new ArrayList<String>();
+        Set<String> indexTypes = new LinkedHashSet<String>();
+        for (IndexDefinition stored : readIndexDefinitions()) {
+            if (stored.getBackendId()
+                    .equalsIgnoreCase(definition.getBackendId()) && stored.getAttribute()
+                    .equalsIgnoreCase(definition.getAttribute())) {
+                indexTypes.addAll(stored.getIndexTypes());
+            } else {
+                lines.add(stored.toString());
+            }
+        }
+        indexTypes.addAll(definition.getIndexTypes());
+        lines.add(new IndexDefinition(definition.getBackendId(), definition.getAttribute(),
+                indexTypes).toString());
+        try {
+            Files.write(Paths.get(installDir + INDEX_DEFINITIONS_LOC), lines,
+                    StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not store index definition " + definition,
+                    ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    /**
+     * Reads the stored LDIF import history.
+     *
+     * @return the stored import records, oldest first
+     */
+    private List<LDIFImportRecord> readImportHistory() {
+        List<LDIFImportRecord> history = new ArrayList<LDIFImportRecord>();
+        Path historyFile = Paths.get(installDir + IMPORT_HISTORY_LOC);
+        if (!Files.exists(historyFile)) {
+            return history;
+        }
+        try {
+            for (String line : Files.readAllLines(historyFile, StandardCharsets.UTF_8)) {
+                if (StringUtils.isNotBlank(line)) {
+                    try {
+                        history.add(LDIFImportRecord.parse(line.trim()));
+                    } catch (DirectoryServiceException dse) {
+                        logger.warn("Skipping stored LDIF import: {}", dse.getMessage());
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            logger.warn("Could not read LDIF import history from {}", historyFile, ioe);
+        }
+        return history;
+    }
+
+    /**
+     * Adds an import record to the stored history, dropping the oldest records
+     * once {@link #MAX_IMPORT_HISTORY} is reached.
+     *
+     * @param record import to store.
+     */
+    private void saveImportRecord(LDIFImportRecord record) {
+        List<String> lines = new ArrayList<String>();
+        for (LDIFImportRecord stored : readImportHistory()) {
+            lines.add(stored.toString());
+        }
+        lines.add(record.toString());
+        if (lines.size() > MAX_IMPORT_HISTORY) {
+            lines = lines.subList(lines.size() - MAX_IMPORT_HISTORY, lines.size());
+        }
+        try {
+            Files.write(Paths.get(installDir + IMPORT_HISTORY_LOC), lines,
+                    StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            logger.warn("Could not store LDIF import record {}", record, ioe);
+        }
+    }
+
+    /**
+     * Records that the backends were replaced by other means than an LDIF
+     * import, so that the next import of the base LDIF file is not skipped.
+     *
+     * @param reason why the backends were replaced, for the log.
+     */
+    private void invalidateImportHistory(String reason) {
+        logger.debug("Base LDIF file will be imported again, {}.", reason);
+        writeLines(IMPORT_INVALIDATED_LOC,
+                Collections.singletonList(Long.toString(System.currentTimeMillis())));
+    }
+
+    /**
+     * @return time the backends were last replaced by other means than an
+     * LDIF import, 0 if they never were.
+     */
+    private long readImportInvalidationTime() {
+        List<String> lines = readLines(IMPORT_INVALIDATED_LOC);
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(lines.get(0));
+        } catch (NumberFormatException nfe) {
+            logger.warn("Invalid content in {}", IMPORT_INVALIDATED_LOC, nfe);
+            // unknown, import again rather than keep stale data
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return the configured additional backends in their stored form.
+     */
+    private List<String> getBackendLines() {
+        List<String> lines = new ArrayList<String>();
+        for (BackendDefinition definition : backends) {
+            lines.add(definition.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * @param location file location relative to the data path.
+     * @return the trimmed, non-blank lines of the file, empty if it does not
+     * exist or could not be read.
+     */
+    private List<String> readLines(String location) {
+        List<String> lines = new ArrayList<String>();
+        Path file = Paths.get(installDir + location);
+        if (!Files.exists(file)) {
+            return lines;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (StringUtils.isNotBlank(line)) {
+                    lines.add(line.trim());
+                }
+            }
+        } catch (IOException ioe) {
+            logger.warn("Could not read {}", file, ioe);
+        }
+        return lines;
+    }
+
+    /**
+     * @param location file location relative to the data path.
+     * @param lines    lines to replace the content of the file with.
+     */
+    private void writeLines(String location, List<String> lines) {
+        try {
+            Files.write(Paths.get(installDir + location), lines, StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            logger.warn("Could not write {}", location, ioe);
+        }
+    }
+
+    /**
+     * Adds an entry to the server using an internal root connection.
+     *
+     * @param ldif the entry in LDIF form
+     * @throws LDAPException if the entry could not be parsed or added
+     */
+    private void addEntry(String ldif) throws LDAPException {
+        LDIFImportConfig ldifConfig = new LDIFImportConfig(
+                new BufferedReader(new StringReader(ldif)));
+        LDIFReader reader = null;
+        try {
+            reader = new LDIFReader(ldifConfig);
+            AddOperation addOperation = InternalClientConnection.getRootConnection()
+                    .processAdd(reader.readEntry());
+            checkResult(addOperation, "Could not add entry");
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not read entry to add.", ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } catch (LDIFException le) {
+            LDAPException lde = new LDAPException("Entry to add is not valid LDIF.", le);
+            logger.warn(lde.getMessage(), lde);
+            throw lde;
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            ldifConfig.close();
+        }
+    }
+
+    /**
+     * Throws an exception if an internal operation did not succeed.
+     *
+     * @param operation completed internal operation
+     * @param message   message to use for the exception
+     * @throws LDAPException if the operation did not succeed
+     */
+    private void checkResult(Operation operation, String message) throws LDAPException {
+        if (operation.getResultCode() != ResultCode.SUCCESS) {
+            LDAPException le = new LDAPException(
+                    message + ": " + operation.getResultCode() + " " + operation.getErrorMessage());
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    /**
+     * Set the port the replication server listens on. 0 disables replication.
+     * <br/>
+     * <br/>
+     * <b>NOTE:</b> this will NOT automatically update the server. The
+     * configuration will need to be updated and the server restarted for the
+     * change to take effect.
+     *
+     * @param replicationPort replication port, 0 to disable replication.
+     */
+    public void setReplicationPort(int replicationPort) {
+        this.replicationPort = replicationPort;
+    }
+
+    public int getReplicationServerId() {
+        return replicationServerId;
+    }
+
+    /**
+     * Set the id of this node in the replication topology. Every node needs a
+     * different id from 1 to 16383.
+     *
+     * @param replicationServerId id of this node.
+     */
+    public void setReplicationServerId(int replicationServerId) {
+        this.replicationServerId = replicationServerId;
+    }
+
+    public List<String> getReplicationPeers() {
+        return replicationPeers;
+    }
+
+    /**
+     * Set the replication servers of all nodes, as host:port values. The same
+     * list can be used on every node.
+     *
+     * @param replicationPeers replication servers in the topology.
+     */
+    public void setReplicationPeers(List<String> replicationPeers) {
+        this.replicationPeers = replicationPeers;
+    }
+
+    public int getImportThreadCount() {
+        return importThreadCount;
+    }
+
+    /**
+     * Set the number of threads used to read entries and build indexes when
+     * importing LDIF files. Set to 0 to use two threads per processor.
+     *
+     * @param importThreadCount number of import threads.
+     */
+    public void setImportThreadCount(int importThreadCount) {
+        this.importThreadCount = Math.max(0, importThreadCount);
+    }
+
+    public int getExportRateLimit() {
+        return exportRateLimit;
+    }
+
+    /**
+     * Set the highest rate at which LDIF exports read entries, measured in
+     * kilobytes of uncompressed LDIF per second. Set to 0 for no limit.
+     *
+     * @param exportRateLimit export rate limit in kilobytes per second.
+     */
+    public void setExportRateLimit(int exportRateLimit) {
+        this.exportRateLimit = Math.max(0, exportRateLimit);
+    }
+
+    /**
+     * @return the progress of the running LDIF import, or of the last one if
+     * none is running. Null if no LDIF has been imported since the server was
+     * started.
+     */
+    public LDIFImportProgress getImportProgress() {
+        return importProgress;
+    }
+
+    /**
+     * @return the LDIF files imported since the server was installed, oldest
+     * first. Only the most recent imports are kept.
+     */
+    @Override
+    public List<LDIFImportRecord> getLDIFImportHistory() {
+        return readImportHistory();
+    }
+
+    /**
+     * Replaces the data of every replicated base DN with a copy from another
+     * node. The copy is made by a background task; the base DNs are not
+     * available on this node until it completes.
+     *
+     * @param sourceServerId replication server id of the node to copy from.
+     * @throws LDAPException if replication is disabled or the task could not
+     *                       be scheduled.
+     */
+    @Override
+    public void initializeReplicationFrom(int sourceServerId) throws LDAPException {
+        if (!EmbeddedUtils.isRunning()) {
+            throw new LDAPException("Server must be running to initialize from "
+                    + sourceServerId);
+        }
+        if (replicationPort == 0) {
+            throw new LDAPException("Replication is not enabled, cannot initialize from "
+                    + sourceServerId);
+        }
+        List<String> backendIds = new ArrayList<String>();
+        backendIds.add(DEFAULT_DB_ID);
+        for (BackendDefinition definition : backends) {
+            backendIds.add(definition.getBackendId());
+        }
+        List<DN> baseDNs = new ArrayList<DN>();
+        for (String backendId : backendIds) {
+            Backend backend = DirectoryServer.getBackend(backendId);
+            if (backend == null) {
+                LDAPException le = new LDAPException("Backend " + backendId
+                        + " does not exist, cannot initialize from " + sourceServerId);
+                logger.warn(le.getMessage(), le);
+                throw le;
+            }
+            baseDNs.addAll(Arrays.asList(backend.getBaseDNs()));
+        }
+        invalidateImportHistory("the backends are initialized from server " + sourceServerId);
+        for (DN baseDN : baseDNs) {
+            logger.info("Scheduling initialization of {} from server {}", baseDN,
+                    sourceServerId);
+            addEntry("dn: ds-task-id=" + UUID.randomUUID() + ",cn=Scheduled Tasks,cn=tasks\n"
+                    + "objectClass: top\n" + "objectClass: ds-task\n"
+                    + "objectClass: ds-task-initialize-from-remote-replica\n"
+                    + "ds-task-class-name: org.opends.server.tasks.InitializeTask\n"
+                    + "ds-task-initialize-domain-dn: " + baseDN + "\n"
+                    + "ds-task-initialize-replica-server-id: " + sourceServerId + "\n");
+        }
+    }
+
+    /**
+     * Retrieves the replication monitor entries of this node, for example the
+     * connected replication server, missing changes and approximate delay
+     * of each replicated base DN.
+     *
+     * @return map of monitor entry DN to its attributes
+     * @throws LDAPException if the monitor entries could not be read
+     */
+    @Override
+    public Map<String, Map<String, String>> getReplicationStatus() throws LDAPException {
+        if (!EmbeddedUtils.isRunning() || replicationPort == 0) {
+            return new HashMap<String, Map<String, String>>();
+        }
+        return searchMonitor(REPLICATION_MONITOR_DN, SearchScope.WHOLE_SUBTREE,
+                REPLICATION_MONITOR_FILTER, "Could not read replication status");
+    }
+
+    /**
+     * Retrieves the storage statistics of a local database backend: the number
+     * of entries it holds and the statistics of its JE environment, such as
+     * the cache and log sizes and cache misses. Dividing the number of entries
+     * by the cache size shows how many entries fit in the cache with the
+     * current entry encoding.
+     *
+     * @param backendId id of a local database backend.
+     * @return map of statistic name to value, empty if the server is not
+     * running.
+     * @throws LDAPException if the backend does not exist or its statistics
+     *                       could not be read.
+     */
+    @Override
+    public Map<String, String> getStorageStatistics(String backendId) throws LDAPException {
+        Map<String, String> statistics = new HashMap<String, String>();
+        if (!EmbeddedUtils.isRunning()) {
+            return statistics;
+        }
+        Backend backend = DirectoryServer.getBackend(backendId);
+        if (backend == null) {
+            throw new LDAPException("Backend " + backendId + " does not exist.");
+        }
+        for (Map<String, String> attributes : searchMonitor(String.format(
+                DB_ENVIRONMENT_MONITOR_DN, backendId), SearchScope.BASE_OBJECT, "(objectClass=*)",
+                "Could not read storage statistics of " + backendId).values()) {
+            statistics.putAll(attributes);
+        }
+        statistics.put("entryCount", Long.toString(backend.getEntryCount()));
+        return statistics;
+    }
+
+    /**
+     * Retrieves the durability mode of the local database backends, the
+     * latency of the writes acknowledged since the server started, the
+     * number of group commit syncs and the writes they made durable, and the
+     * log sync statistics of the userRoot JE environment, such as the number
+     * of fsyncs and the number of commits that requested one. Comparing the
+     * writes with the syncs shows how many commits share an fsync.
+     *
+     * @return map of statistic name to value, only the mode if the server is
+     * not running.
+     * @throws LDAPException if the environment statistics could not be read.
+     */
+    @Override
+    public Map<String, String> getDurabilityStatistics() throws LDAPException {
+        Map<String, String> statistics = new LinkedHashMap<String, String>();
+        statistics.put("durability", durability.toString());
+        if (durability == DurabilityMode.GROUP_COMMIT) {
+            statistics.put("groupCommitWindowMillis", Integer.toString(groupCommitWindow));
+            statistics.put("groupCommitSize", Integer.toString(groupCommitSize));
+        }
+        if (!EmbeddedUtils.isRunning()) {
+            return statistics;
+        }
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            for (Map.Entry<String, Long> group : committer.getStatistics()
+                    .entrySet()) {
+                statistics.put(group.getKey(), group.getValue()
+                        .toString());
+            }
+        }
+        CommitLatencyTracker tracker = commitLatencyTracker;
+        if (tracker != null) {
+            for (Map.Entry<String, Long> latency : tracker.getStatistics()
+                    .entrySet()) {
+                statistics.put(latency.getKey(), latency.getValue()
+                        .toString());
+            }
+        }
+        for (Map.Entry<String, String> storage : getStorageStatistics(DEFAULT_DB_ID).entrySet()) {
+            String name = storage.getKey()
+                    .toLowerCase();
+            if (name.contains("sync")) {
+                statistics.put(storage.getKey(), storage.getValue());
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Searches the monitor backend with an internal root connection.
+     *
+     * @param baseDN       base DN of the search.
+     * @param scope        scope of the search.
+     * @param filter       filter of the search.
+     * @param errorMessage message of the exception thrown if the search fails.
+     * @return map of monitor entry DN to its attributes, multiple values are
+     * joined with ", "
+     * @throws LDAPException if the search failed
+     */
+    private Map<String, Map<String, String>> searchMonitor(String baseDN, SearchScope scope,
+            String filter, String errorMessage) throws LDAPException {
+        Map<String, Map<String, String>> monitorEntries =
+                new HashMap<String, Map<String, String>>();
+        try {
+            InternalSearchOperation searchOperation =
+                    InternalClientConnection.getRootConnection()
+                            .processSearch(DN.decode(baseDN), scope,
+                                    SearchFilter.createFilterFromString(filter));
+            checkResult(searchOperation, errorMessage);
+            for (SearchResultEntry entry : searchOperation.getSearchEntries()) {
+                Map<String, String> attributes = new HashMap<String, String>();
+                for (List<Attribute> attributeList : entry.getUserAttributes()
+                        .values()) {
+                    for (Attribute attribute : attributeList) {
+                        List<String> values = new ArrayList<String>();
+                        for (AttributeValue value : attribute) {
+                            values.add(value.getValue()
+                                    .toString());
+                        }
+                        attributes.put(attribute.getName(), StringUtils.join(values, ", "));
+                    }
+                }
+                monitorEntries.put(entry.getDN()
+                        .toString(), attributes);
+            }
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException(errorMessage + ".", de);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        return monitorEntries;
+    }
+
+    /**
+     * @return the health of the server as seen by the health probes, or null
+     * if the probes are disabled or the server is not running.
+     */
+    public DirectoryHealth getHealth() {
+        return healthProber;
+    }
+
+    public int getHealthProbeInterval() {
+        return healthProbeInterval;
+    }
+
+    /**
+     * Set the number of seconds between two runs of the health probes. 0
+     * disables the probes and the health service.
+     *
+     * @param healthProbeInterval seconds between probe runs.
+     */
+    public void setHealthProbeInterval(int healthProbeInterval) {
+        this.healthProbeInterval = healthProbeInterval;
+    }
+
+    public int getHealthLatencyThreshold() {
+        return healthLatencyThreshold;
+    }
+
+    /**
+     * Set the average probe latency in milliseconds above which the server is
+     * reported as degraded.
+     *
+     * @param healthLatencyThreshold latency threshold in milliseconds.
+     */
+    public void setHealthLatencyThreshold(int healthLatencyThreshold) {
+        this.healthLatencyThreshold = healthLatencyThreshold;
+    }
+
+    public int getHealthSuccessThreshold() {
+        return healthSuccessThreshold;
+    }
+
+    /**
+     * Set the percentage of successful probe runs below which the server is
+     * reported as degraded.
+     *
+     * @param healthSuccessThreshold success rate threshold in percent.
+     */
+    public void setHealthSuccessThreshold(int healthSuccessThreshold) {
+        this.healthSuccessThreshold = healthSuccessThreshold;
+    }
+
+    public String getHealthProbeHost() {
+        return healthProbeHost;
+    }
+
+    /**
+     * Set the host name the LDAPS probe connects to. It has to match the
+     * certificate of the server. If empty, the fully qualified name of the
+     * local host is used.
+     *
+     * @param healthProbeHost host name of this node.
+     */
+    public void setHealthProbeHost(String healthProbeHost) {
+        this.healthProbeHost = healthProbeHost;
+    }
+
+    public String getHealthProbeBindDN() {
+        return healthProbeBindDN;
+    }
+
+    /**
+     * Set the DN the listener probes bind as. It needs read access to the
+     * base entry of every backend. If empty, the probes bind anonymously.
+     *
+     * @param healthProbeBindDN DN of the probe account.
+     */
+    public void setHealthProbeBindDN(String healthProbeBindDN) {
+        this.healthProbeBindDN = healthProbeBindDN;
+    }
+
+    /**
+     * Set the password of the DN the listener probes bind as.
+     *
+     * @param healthProbeBindPassword password of the probe account.
+     */
+    public void setHealthProbeBindPassword(String healthProbeBindPassword) {
+        this.healthProbeBindPassword = healthProbeBindPassword;
+    }
+
+    public int getAdmissionRateLimit() {
+        return admissionRateLimit;
+    }
+
+    /**
+     * Set the number of searches, adds, modifies and deletes per second that
+     * a single client, identified by its bind DN or else its address, may
+     * send. Requests above the rate are rejected as busy. 0 disables the limit.
+     *
+     * @param admissionRateLimit requests per second per client.
+     */
+    public void setAdmissionRateLimit(int admissionRateLimit) {
+        this.admissionRateLimit = admissionRateLimit;
+    }
+
+    public int getAdmissionBurst() {
+        return admissionBurst;
+    }
+
+    /**
+     * Set the number of requests a client may send at once above its rate.
+     *
+     * @param admissionBurst burst size per client.
+     */
+    public void setAdmissionBurst(int admissionBurst) {
+        this.admissionBurst = admissionBurst;
+    }
+
+    public int getAdmissionMaxScans() {
+        return admissionMaxScans;
+    }
+
+    /**
+     * Set the number of subtree and one-level searches that may run at the
+     * same time, so that binds and base-object searches always find a free
+     * worker thread. Further searches are rejected as busy. 0 disables the
+     * limit.
+     *
+     * @param admissionMaxScans concurrent subtree searches.
+     */
+    public void setAdmissionMaxScans(int admissionMaxScans) {
+        this.admissionMaxScans = admissionMaxScans;
+    }
+
+    /**
+     * Retrieves the admission control counters (admitted requests, requests
+     * rejected by the rate limit and the subtree search limit, running
+     * subtree searches) together with the work queue monitor statistics such
+     * as the current and average request backlog and the requests rejected
+     * because the queue was full.
+     *
+     * @return map of statistic name to value, empty if the server is not
+     * running.
+     * @throws LDAPException if the work queue statistics could not be read.
+     */
+    @Override
+    public Map<String, String> getAdmissionStatistics() throws LDAPException {
+        Map<String, String> statistics = new LinkedHashMap<String, String>();
+        if (!EmbeddedUtils.isRunning()) {
+            return statistics;
+        }
+        AdmissionControlPlugin plugin = admissionPlugin;
+        if (plugin != null) {
+            for (Map.Entry<String, Long> counter : plugin.getStatistics()
+                    .entrySet()) {
+                statistics.put(counter.getKey(), counter.getValue()
+                        .toString());
+            }
+        }
+        for (Map<String, String> attributes : searchMonitor(WORK_QUEUE_MONITOR_DN,
+                SearchScope.BASE_OBJECT, "(objectClass=*)",
+                "Could not read work queue statistics").values()) {
+            statistics.putAll(attributes);
+        }
+        return statistics;
+    }
+
+    public DurabilityMode getDurability() {
+        return durability;
+    }
+
+    /**
+     * Set how the local database backends make writes durable. Takes effect
+     * when the server configuration is regenerated.
+     *
+     * @param durability durability mode.
+     */
+    public void setDurability(DurabilityMode durability) {
+        this.durability = durability;
+    }
+
+    public int getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    /**
+     * Set the longest time in milliseconds a write waits for concurrent
+     * writes to share its sync in the group commit mode.
+     *
+     * @param groupCommitWindow group commit window in milliseconds.
+     */
+    public void setGroupCommitWindow(int groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    public int getGroupCommitSize() {
+        return groupCommitSize;
+    }
+
+    /**
+     * Set the number of waiting writes after which a group is synced before
+     * the group commit window has passed.
+     *
+     * @param groupCommitSize writes per group.
+     */
+    public void setGroupCommitSize(int groupCommitSize) {
+        this.groupCommitSize = groupCommitSize;
+    }
+
+    public List<VLVIndexDefinition> getVLVIndexes() {
+        return vlvIndexes;
+    }
+
+    /**
+     * Set the VLV indexes to keep in addition to the ones created with
+     * {@link #createVLVIndex(VLVIndexDefinition)}. Indexes that are no longer
+     * listed are not removed from the server.
+     *
+     * @param vlvIndexes VLV index definitions.
+     */
+    public void setVLVIndexes(List<VLVIndexDefinition> vlvIndexes) {
+        this.vlvIndexes = vlvIndexes;
+    }
+
+    public int getVLVAutoCreateThreshold() {
+        return vlvAutoCreateThreshold;
+    }
+
+    /**
+     * Set the number of sorted searches after which the VLV index that would
+     * serve them is created in the background. 0 only reports the indexes
+     * through {@link #getVLVIndexRecommendations()}.
+     *
+     * @param vlvAutoCreateThreshold sorted searches before a VLV index is
+     *                               created.
+     */
+    public void setVLVAutoCreateThreshold(int vlvAutoCreateThreshold) {
+        this.vlvAutoCreateThreshold = vlvAutoCreateThreshold;
+    }
+
+    public boolean isMembershipIndexEnabled() {
+        return membershipIndexEnabled;
+    }
+
+    /**
+     * Set whether static group membership is kept in memory for
+     * {@link #isMemberOf(String, String)} and
+     * {@link #getGroupMembership(String)}.
+     *
+     * @param membershipIndexEnabled true to keep the membership index.
+     */
+    public void setMembershipIndexEnabled(boolean membershipIndexEnabled) {
+        this.membershipIndexEnabled = membershipIndexEnabled;
+    }
+
+    /**
+     * Checks whether an entry is a member of a static group, directly or
+     * through groups nested in it, without reading the group.
+     *
+     * @param memberDN DN of a possible member.
+     * @param groupDN  DN of a groupOfNames, groupOfUniqueNames or
+     *                 groupOfEntries group.
+     * @return true if the entry is a member of the group.
+     * @throws LDAPException if the membership index is disabled or a DN is
+     *                       invalid.
+     */
+    @Override
+    public boolean isMemberOf(String memberDN, String groupDN) throws LDAPException {
+        checkMembershipIndex();
+        return membershipIndex.isMember(normalizeDN(memberDN), normalizeDN(groupDN), true);
+    }
+
+    /**
+     * Retrieves the static groups an entry is a member of, directly or
+     * through nested groups.
+     *
+     * @param memberDN DN of a possible member.
+     * @return normalized DNs of the groups.
+     * @throws LDAPException if the membership index is disabled or the DN is
+     *                       invalid.
+     */
+    @Override
+    public Set<String> getGroupMembership(String memberDN) throws LDAPException {
+        checkMembershipIndex();
+        return membershipIndex.getGroups(normalizeDN(memberDN), true);
+    }
+
+    /**
+     * Reads all static groups into the membership index again. Needed after
+     * changes that bypass the server plugins, such as a replica
+     * initialization; LDIF imports made through this class rebuild the index
+     * themselves. Membership lookups are answered from the previous index
+     * until the new one is complete.
+     *
+     * @throws LDAPException if the index is disabled or the groups of a
+     *                       backend could not be read.
+     */
+    @Override
+    public void rebuildMembershipIndex() throws LDAPException {
+        MembershipIndexPlugin plugin = membershipPlugin;
+        if (plugin == null) {
+            checkMembershipIndex();
+            return;
+        }
+        long startTime = System.nanoTime();
+        int groups = plugin.rebuild(getBackendBaseDNs());
+        logger.info("Membership index built from {} groups in {} ms.", groups,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Loads a LDIF file into the backends that hold its entries, replacing
+     * their current content, and records it in the import history.
+     *
+     * @param ldifURL location of a plain, gzip or zip LDIF file.
+     * @throws LDAPException Thrown if any errors occur during import process.
+     */
+    public void importLDIF(URL ldifURL) throws LDAPException {
+        importLDIF(ldifURL, false);
+    }
+
+    /**
+     * Writes the entries of a backend, or of a subtree of it, to a stream as
+     * LDIF while the server stays online. Entries are read straight from the
+     * database in the order they were added, as they were last committed, at
+     * no more than {@link #getExportRateLimit()}. A slow stream slows the
+     * export down instead of buffering entries. Imports, snapshots and
+     * restores wait for the export to finish.
+     *
+     * @param baseDN     base DN of the subtree to export, or null to export the
+     *                   whole userRoot backend.
+     * @param ldifStream stream to write to, it is not closed.
+     * @param compress   true to gzip compress the LDIF.
+     * @throws LDAPException if no backend holds the base DN or the export
+     *                       failed.
+     */
+    @Override
+    public void exportLDIF(String baseDN, OutputStream ldifStream, boolean compress)
+            throws LDAPException {
+        DN exportBaseDN = toExportBaseDN(baseDN);
+        Backend backend = getExportBackend(exportBaseDN);
+        OutputStream exportStream = new CloseShieldOutputStream(ldifStream);
+        try {
+            if (compress) {
+                // closed with the export, which finishes the gzip trailer
+                exportStream = new GZIPOutputStream(exportStream, IMPORT_BUFFER_SIZE);
+            }
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not start LDIF export.", ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        writeLDIF(backend, exportBaseDN, exportStream);
+    }
+
+    /**
+     * Exports the entries of a backend, or of a subtree of it, like
+     * {@link #exportLDIF(String, OutputStream, boolean)} and returns them one
+     * at a time. The export runs in the background and waits while the
+     * caller processes entries. The cursor must be closed.
+     * <p/>
+     * Until the cursor is drained or closed the export keeps its backend from
+     * being taken offline, so {@link #importLDIF(URL)},
+     * {@link #snapshotBackend(String, File)} and
+     * {@link #restoreBackend(String, File)} of that backend wait for it and
+     * fail after {@value #BACKEND_OFFLINE_TIMEOUT_SECONDS} seconds. Close the
+     * cursor before calling them from the thread that reads it.
+     *
+     * @param baseDN base DN of the subtree to export, or null to export the
+     *               whole userRoot backend.
+     * @return cursor over the exported entries.
+     * @throws LDAPException if no backend holds the base DN.
+     */
+    public EntryCursor openEntryCursor(String baseDN) throws LDAPException {
+        final DN exportBaseDN = toExportBaseDN(baseDN);
+        final Backend backend = getExportBackend(exportBaseDN);
+        return new EntryCursor(new EntryCursor.Export() {
+            @Override
+            public void writeTo(OutputStream ldifStream) throws LDAPException {
+                writeLDIF(backend, exportBaseDN, ldifStream);
+            }
+        }, "LDIF export of " + backend.getBackendID());
+    }
+
+    /**
+     * Exports the entries of a backend, or of a subtree of it, like
+     * {@link #openEntryCursor(String)} and returns them as LDIF, for callers
+     * outside this bundle that cannot use the server entry type.
+     *
+     * @param baseDN base DN of the subtree to export, or null to export the
+     *               whole userRoot backend.
+     * @return cursor over the exported entries.
+     * @throws LDAPException if no backend holds the base DN.
+     */
+    @Override
+    public LDIFCursor openLDIFCursor(String baseDN) throws LDAPException {
+        final EntryCursor cursor = openEntryCursor(baseDN);
+        return new LDIFCursor() {
+            @Override
+            public String next() throws LDAPException {
+                org.opends.server.types.Entry entry = cursor.next();
+                return entry == null ? null : entry.toLDIFString();
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+
+    /**
+     * Exports the entries of a backend as LDIF and closes the stream.
+     *
+     * @param backend    backend to export.
+     * @param baseDN     base DN of the subtree to export, or null for all.
+     * @param ldifStream stream to write to.
+     * @throws LDAPException if the export failed.
+     */
+    private void writeLDIF(Backend backend, DN baseDN, OutputStream ldifStream)
+            throws LDAPException {
+        OutputStream exportStream = ldifStream;
+        if (exportRateLimit > 0) {
+            exportStream = new RateLimitedOutputStream(exportStream, exportRateLimit * 1024L);
+        }
+        LDIFExportConfig exportConfig = new LDIFExportConfig(new BufferedOutputStream(
+                exportStream, IMPORT_BUFFER_SIZE));
+        if (baseDN != null) {
+            exportConfig.setIncludeBranches(Collections.singletonList(baseDN));
+        }
+        long startTime = System.nanoTime();
+        ReadWriteLock backendLock = getBackendLock(backend.getBackendID());
+        backendLock.readLock()
+                .lock();
+        try {
+            backend.exportLDIF(exportConfig);
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException(
+                    "Error while exporting LDIF from " + backend.getBackendID() + ".", de);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } finally {
+            backendLock.readLock()
+                    .unlock();
+            exportConfig.close();
+            IOUtils.closeQuietly(exportStream);
+        }
+        logger.info("Exported {} from {} in {} ms.", baseDN == null ? "all entries" : baseDN,
+                backend.getBackendID(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private DN toExportBaseDN(String baseDN) throws LDAPException {
+        if (StringUtils.isBlank(baseDN)) {
+            return null;
+        }
+        try {
+            return DN.decode(baseDN);
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException("Invalid DN " + baseDN + ".", de);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    /**
+     * @param baseDN base DN of the subtree to export, or null for userRoot.
+     * @return the backend holding the base DN.
+     * @throws LDAPException if no backend that supports exports holds it.
+     */
+    private Backend getExportBackend(DN baseDN) throws LDAPException {
+        Backend backend = baseDN == null ? DirectoryServer.getBackend(DEFAULT_DB_ID) :
+                DirectoryServer.getBackend(baseDN);
+        if (backend == null || !backend.supportsLDIFExport()) {
+            LDAPException le = new LDAPException("No backend that can be exported holds "
+                    + (baseDN == null ? DEFAULT_DB_ID : baseDN) + ".");
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        return backend;
+    }
+
+    /**
+     * Saves the database of a local backend so that it can be restored with
+     * {@link #restoreBackend(String, File)}. The backend is unavailable while
+     * its files are saved. JE log files are only appended to, so every file
+     * but the last is hard linked into the snapshot where the file system
+     * allows it, which makes a snapshot take milliseconds instead of the time
+     * needed to copy the database.
+     *
+     * @param backendId   id of a local database backend.
+     * @param snapshotDir directory to save the database in, any content is
+     *                    replaced.
+     * @throws LDAPException if the backend does not exist or its files could
+     *                       not be saved.
+     */
+    public void snapshotBackend(String backendId, File snapshotDir) throws LDAPException {
+        File backendDirectory = getBackendDirectory(backendId);
+        long startTime = System.nanoTime();
+        Backend backend = takeBackendOffline(backendId);
+        try {
+            FileUtils.deleteQuietly(snapshotDir);
+            createDirectory(snapshotDir.getAbsolutePath());
+            linkDatabaseFiles(backendDirectory, snapshotDir);
+        } finally {
+            bringBackendOnline(backend);
+        }
+        logger.info("Saved snapshot of {} to {} in {} ms.", backendId, snapshotDir,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Replaces the database of a local backend with a snapshot taken by
+     * {@link #snapshotBackend(String, File)}. The snapshot is not changed and
+     * can be restored again. Cached entries of the backend are dropped and the
+     * membership index is rebuilt.
+     *
+     * @param backendId   id of a local database backend.
+     * @param snapshotDir directory holding the snapshot.
+     * @throws LDAPException if the backend or snapshot does not exist or the
+     *                       files could not be restored.
+     */
+    public void restoreBackend(String backendId, File snapshotDir) throws LDAPException {
+        File backendDirectory = getBackendDirectory(backendId);
+        if (!snapshotDir.isDirectory()) {
+            LDAPException le = new LDAPException("No snapshot found at " + snapshotDir + ".");
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        long startTime = System.nanoTime();
+        Backend backend = takeBackendOffline(backendId);
+        try {
+            FileUtils.cleanDirectory(backendDirectory);
+            linkDatabaseFiles(snapshotDir, backendDirectory);
+            invalidateImportHistory("backend " + backendId + " was restored");
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException(
+                    "Could not clear database directory " + backendDirectory + ".", ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } finally {
+            bringBackendOnline(backend);
+        }
+        EntryCache entryCache = DirectoryServer.getEntryCache();
+        if (entryCache != null) {
+            entryCache.clearBackend(backendId);
+        }
+        if (membershipPlugin != null) {
+            rebuildMembershipIndex();
+        }
+        logger.info("Restored {} from snapshot {} in {} ms.", backendId, snapshotDir,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Closes a backend so that its files can be changed. Waits up to
+     * {@value #BACKEND_OFFLINE_TIMEOUT_SECONDS} seconds for running exports of
+     * the backend to finish, including those of open entry cursors.
+     *
+     * @param backendId id of the backend.
+     * @return the closed backend.
+     * @throws LDAPException if the backend does not exist or an export did
+     *                       not finish in time.
+     */
+    private Backend takeBackendOffline(String backendId) throws LDAPException {
+        Backend backend = DirectoryServer.getBackend(backendId);
+        if (backend == null) {
+            LDAPException le = new LDAPException("Backend " + backendId + " is not available.");
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        ReadWriteLock backendLock = getBackendLock(backendId);
+        boolean locked;
+        try {
+            locked = backendLock.writeLock()
+                    .tryLock(BACKEND_OFFLINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread()
+                    .interrupt();
+            LDAPException le = new LDAPException(
+                    "Interrupted while waiting for exports of " + backendId + " to finish.", ie);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        if (!locked) {
+            LDAPException le = new LDAPException("Could not take backend " + backendId
+                    + " offline, an LDIF export or an open entry cursor still reads it after "
+                    + BACKEND_OFFLINE_TIMEOUT_SECONDS + " seconds.");
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+        boolean offline = false;
+        try {
+            StringBuilder failureReason = new StringBuilder();
+            if (!LockFileManager.acquireExclusiveLock(
+                    LockFileManager.getBackendLockFileName(backend), failureReason)) {
+                // the server keeps a shared lock on enabled backends
+                logger.debug("Could not lock backend {} exclusively: {}", backendId,
+                        failureReason);
+            }
+            backend.finalizeBackend();
+            offline = true;
+        } finally {
+            if (!offline) {
+                // otherwise every later export and import of the backend would wait for it
+                LockFileManager.releaseLock(LockFileManager.getBackendLockFileName(backend),
+                        new StringBuilder());
+                backendLock.writeLock()
+                        .unlock();
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * @param backendId id of a backend.
+     * @return the lock that guards taking the backend offline.
+     */
+    private ReadWriteLock getBackendLock(String backendId) {
+        String key = backendId.toLowerCase();
+        ReadWriteLock lock = backendLocks.get(key);
+        if (lock == null) {
+            ReadWriteLock newLock = new ReentrantReadWriteLock();
+            lock = backendLocks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Reopens a backend closed by {@link #takeBackendOffline(String)}.
+     *
+     * @param backend the closed backend.
+     * @throws LDAPException if the backend could not be reopened.
+     */
+    private void bringBackendOnline(Backend backend) throws LDAPException {
+        try {
+            backend.initializeBackend();
+        } catch (ConfigException ce) {
+            LDAPException le = new LDAPException(
+                    "Error with configuration while re-starting backend database.", ce);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } catch (InitializationException ie) {
+            LDAPException le = new LDAPException(
+                    "Error while trying to re-initialize backend database.", ie);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } finally {
+            LockFileManager.releaseLock(LockFileManager.getBackendLockFileName(backend),
+                    new StringBuilder());
+            getBackendLock(backend.getBackendID()).writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Copies the files of a closed JE environment. The last log file is
+     * copied because JE appends to it once the environment is reopened; the
+     * others are never written again and are hard linked if possible.
+     *
+     * @param from directory of the environment to copy.
+     * @param to   existing, empty directory to copy to.
+     * @throws LDAPException if a file could not be copied.
+     */
+    private void linkDatabaseFiles(File from, File to) throws LDAPException {
+        File[] files = from.listFiles();
+        if (files == null) {
+            throw new LDAPException("Could not list database directory " + from + ".");
+        }
+        String lastLogFile = null;
+        for (File file : files) {
+            if (file.getName()
+                    .endsWith(JE_LOG_FILE_SUFFIX) && (lastLogFile == null
+                    || file.getName()
+                    .compareTo(lastLogFile) > 0)) {
+                lastLogFile = file.getName();
+            }
+        }
+        for (File file : files) {
+            if (!file.isFile() || JE_LOCK_FILE.equals(file.getName())) {
+                continue;
+            }
+            Path target = new File(to, file.getName()).toPath();
+            try {
+                if (file.getName()
+                        .endsWith(JE_LOG_FILE_SUFFIX) && !file.getName()
+                        .equals(lastLogFile)) {
+                    try {
+                        Files.createLink(target, file.toPath());
+                        continue;
+                    } catch (IOException ioe) {
+                        logger.debug("Could not link {}, copying it.", file, ioe);
+                    } catch (UnsupportedOperationException uoe) {
+                        logger.debug("Could not link {}, copying it.", file, uoe);
+                    }
+                }
+                Files.copy(file.toPath(), target);
+            } catch (IOException ioe) {
+                LDAPException le = new LDAPException(
+                        "Could not copy database file " + file + " to " + to + ".", ioe);
+                logger.warn(le.getMessage(), le);
+                throw le;
+            }
+        }
+    }
+
+    /**
+     * @param backendId id of a local database backend.
+     * @return the directory holding the JE environment of the backend.
+     * @throws LDAPException if the backend is not managed by this class.
+     */
+    private File getBackendDirectory(String backendId) throws LDAPException {
+        if (DEFAULT_DB_ID.equals(backendId)) {
+            return getBackendDirectory(DEFAULT_DB_DIR, backendId);
+        }
+        for (BackendDefinition definition : backends) {
+            if (definition.getBackendId()
+                    .equals(backendId)) {
+                return getBackendDirectory(definition.getDbDirectory(), backendId);
+            }
+        }
+        LDAPException le = new LDAPException(
+                "Backend " + backendId + " is not a local database backend.");
+        logger.warn(le.getMessage(), le);
+        throw le;
+    }
+
+    /**
+     * Resolves the database directory of a backend. Relative directories are
+     * resolved against the install directory, the same way the server
+     * resolves them.
+     *
+     * @param dbDirectory configured parent directory, may be empty.
+     * @param backendId   id of the backend.
+     * @return the directory holding the JE environment of the backend.
+     */
+    private File getBackendDirectory(String dbDirectory, String backendId) {
+        File parentDirectory = new File(StringUtils.defaultIfEmpty(dbDirectory, DEFAULT_DB_DIR));
+        if (!parentDirectory.isAbsolute()) {
+            parentDirectory = new File(installDir, parentDirectory.getPath());
+        }
+        return new File(parentDirectory, backendId);
+    }
+
+    private void checkMembershipIndex() throws LDAPException {
+        if (membershipPlugin == null) {
+            LDAPException le = new LDAPException(
+                    "Membership index is disabled or the server is not running.");
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    private String normalizeDN(String dn) throws LDAPException {
+        try {
+            return DN.decode(dn)
+                    .toNormalizedString();
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException("Invalid DN " + dn + ".", de);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    public DeploymentProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Set the profile used to generate the server configuration. The schema
+     * files of the profile are only selected when the data path is created.
+     *
+     * @param profile deployment profile.
+     */
+    public void setProfile(DeploymentProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @return time in milliseconds the last server start took, including the
+     * import of the default LDIF files on a fresh install.
+     */
+    public long getStartupTimeMillis() {
+        return startupTimeMillis;
+    }
+
+    /**
+     * @return heap in bytes that was in use right after the last server start.
+     * This includes garbage that has not been collected yet, so it is an upper
+     * bound of what the server needs.
+     */
+    public long getStartupHeapBytes() {
+        return startupHeapBytes;
+    }
+
+    /**
+     * Stores how long the server took to start and how much heap it uses.
+     *
+     * @param startTime value of {@link System#nanoTime()} when the start began.
+     */
+    private void recordStartupMetrics(long startTime) {
+        startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        startupHeapBytes = ManagementFactory.getMemoryMXBean()
+                .getHeapMemoryUsage()
+                .getUsed();
+        logger.info("LDAP server started in {} ms with {} MB of heap in use ({} profile).",
+                startupTimeMillis, startupHeapBytes / (1024 * 1024), profile);
+    }
+
+    public String getDataPath() {
+        return this.dataPath;
+    }
+
+    public void setDataPath(String dataPath) {
+        this.dataPath = dataPath;
+    }
+
+    /**
+     * Callback method to update the properties for the server. This method will
+     * restart the server if any of the properties being updated require a
+     * restart.
+     *
+     * @param properties Map of properties to be updated.
+     * @throws LDAPException If any error occurs during the updating process,
+     *                       including an error on server restart.
+     */
+    public void updateCallback(Map<String, Object> properties) throws LDAPException {
+        boolean needsRestart = false;
+        boolean healthChanged = false;
+        boolean admissionChanged = false;
+        boolean groupCommitChanged = false;
+        boolean membershipChanged = false;
+        URL baseLDIF = null;
+        logger.debug("Got an update with {} items in it.", properties.size());
+        Set<Entry<String, Object>> entries = properties.entrySet();
+        for (Entry<String, Object> curEntry : entries) {
+            logger.debug(curEntry.toString());
+            if (ConnectorType.LDAP.portVariable.equals(curEntry.getKey())) {
+                int newPort = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newPort == ConnectorType.LDAP.currentPort) {
+                    logger.debug("LDAP Port unchanged, not updating.");
+                    continue;
+                }
+                setLDAPPort(newPort);
+                needsRestart = true;
+            } else if (ConnectorType.LDAPS.portVariable.equals(curEntry.getKey())) {
+                int newPort = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newPort == ConnectorType.LDAPS.currentPort) {
+                    logger.debug("LDAPS Port unchanged, not updating.");
+                    continue;
+                }
+                setLDAPSPort(newPort);
+                needsRestart = true;
+            } else if (ConnectorType.ADMIN.portVariable.equals(curEntry.getKey())) {
+                int newPort = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newPort == ConnectorType.ADMIN.currentPort) {
+                    logger.debug("Admin Port unchanged, not updating.");
+                    continue;
+                }
+                setAdminPort(newPort);
+                needsRestart = true;
+            } else if (BASE_LDIF_STR.equals(curEntry.getKey())) {
+                String ldifLocation = curEntry.getValue()
+                        .toString();
+                if (ldifLocation.isEmpty()) {
+                    logger.debug("No new base ldif file, not loading.");
+                    continue;
+                }
+                File ldifFile = new File(ldifLocation);
+                if (!ldifFile.isFile()) {
+                    logger.warn("Base LDIF file not found at {}. Could not update base entries.",
+                            ldifLocation);
+                    continue;
+                }
+                try {
+                    // imported once the backends have their new configuration
+                    baseLDIF = ldifFile.toURI()
+                            .toURL();
+                } catch (MalformedURLException mue) {
+                    logger.warn(
+                            "Base LDIF file location {} is invalid. Could not update base entries.",
+                            ldifLocation);
+                }
+            } else if (BACKENDS_STR.equals(curEntry.getKey())) {
+                List<BackendDefinition> newBackends = new ArrayList<BackendDefinition>();
+                for (String definition : toStringList(curEntry.getValue())) {
+                    try {
+                        newBackends.add(BackendDefinition.parse(definition, newBackends));
+                    } catch (LDAPException le) {
+                        logger.warn("Skipping backend: {}", le.getMessage());
+                    }
+                }
+                if (newBackends.equals(backends)) {
+                    logger.debug("Backends unchanged, not updating.");
+                    continue;
+                }
+                setBackends(newBackends);
+                needsRestart = true;
+            } else if ("dataPath".equals(curEntry.getKey())) {
+                String newDataPath = curEntry.getValue()
+                        .toString();
+                if (StringUtils.equals(dataPath, newDataPath)) {
+                    logger.debug("Data path unchanged, not updating.");
+                    continue;
+                }
+                setDataPath(newDataPath);
+                needsRestart = true;
+            } else if (SSL_PROTOCOLS_STR.equals(curEntry.getKey())) {
+                List<String> newProtocols = toStringList(curEntry.getValue());
+                if (newProtocols.equals(sslProtocols)) {
+                    logger.debug("LDAPS protocols unchanged, not updating.");
+                    continue;
+                }
+                setSSLProtocols(newProtocols);
+                needsRestart = true;
+            } else if (SSL_CIPHER_SUITES_STR.equals(curEntry.getKey())) {
+                List<String> newCipherSuites = toStringList(curEntry.getValue());
+                if (newCipherSuites.equals(sslCipherSuites)) {
+                    logger.debug("LDAPS cipher suites unchanged, not updating.");
+                    continue;
+                }
+                setSSLCipherSuites(newCipherSuites);
+                needsRestart = true;
+            } else if (REPLICATION_PORT_STR.equals(curEntry.getKey())) {
+                int newPort = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newPort == replicationPort) {
+                    logger.debug("Replication port unchanged, not updating.");
+                    continue;
+                }
+                setReplicationPort(newPort);
+                needsRestart = true;
+            } else if (REPLICATION_SERVER_ID_STR.equals(curEntry.getKey())) {
+                int newServerId = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newServerId == replicationServerId) {
+                    logger.debug("Replication server id unchanged, not updating.");
+                    continue;
+                }
+                setReplicationServerId(newServerId);
+                needsRestart = true;
+            } else if (REPLICATION_PEERS_STR.equals(curEntry.getKey())) {
+                List<String> newPeers = toStringList(curEntry.getValue());
+                if (newPeers.equals(replicationPeers)) {
+                    logger.debug("Replication peers unchanged, not updating.");
+                    continue;
+                }
+                setReplicationPeers(newPeers);
+                needsRestart = true;
+            } else if (HEALTH_INTERVAL_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == healthProbeInterval) {
+                    continue;
+                }
+                setHealthProbeInterval(newValue);
+                healthChanged = true;
+            } else if (HEALTH_LATENCY_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == healthLatencyThreshold) {
+                    continue;
+                }
+                setHealthLatencyThreshold(newValue);
+                healthChanged = true;
+            } else if (HEALTH_SUCCESS_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == healthSuccessThreshold) {
+                    continue;
+                }
+                setHealthSuccessThreshold(newValue);
+                healthChanged = true;
+            } else if (HEALTH_HOST_STR.equals(curEntry.getKey())) {
+                String newValue = curEntry.getValue()
+                        .toString()
+                        .trim();
+                if (newValue.equals(healthProbeHost)) {
+                    continue;
+                }
+                setHealthProbeHost(newValue);
+                healthChanged = true;
+            } else if (HEALTH_BIND_DN_STR.equals(curEntry.getKey())) {
+                String newValue = curEntry.getValue()
+                        .toString()
+                        .trim();
+                if (newValue.equals(healthProbeBindDN)) {
+                    continue;
+                }
+                setHealthProbeBindDN(newValue);
+                healthChanged = true;
+            } else if (HEALTH_BIND_PASSWORD_STR.equals(curEntry.getKey())) {
+                String newValue = curEntry.getValue()
+                        .toString();
+                if (newValue.equals(healthProbeBindPassword)) {
+                    continue;
+                }
+                setHealthProbeBindPassword(newValue);
+                healthChanged = true;
+            } else if (ADMISSION_RATE_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == admissionRateLimit) {
+                    continue;
+                }
+                setAdmissionRateLimit(newValue);
+                admissionChanged = true;
+            } else if (ADMISSION_BURST_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == admissionBurst) {
+                    continue;
+                }
+                setAdmissionBurst(newValue);
+                admissionChanged = true;
+            } else if (ADMISSION_SCANS_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == admissionMaxScans) {
+                    continue;
+                }
+                setAdmissionMaxScans(newValue);
+                admissionChanged = true;
+            } else if (DURABILITY_STR.equals(curEntry.getKey())) {
+                DurabilityMode newDurability;
+                try {
+                    newDurability = DurabilityMode.fromName(curEntry.getValue()
+                            .toString());
+                } catch (LDAPException le) {
+                    logger.warn("Keeping {} durability: {}", durability, le.getMessage());
+                    continue;
+                }
+                if (newDurability == durability) {
+                    logger.debug("Durability unchanged, not updating.");
+                    continue;
+                }
+                setDurability(newDurability);
+                needsRestart = true;
+            } else if (GROUP_COMMIT_WINDOW_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == groupCommitWindow) {
+                    continue;
+                }
+                setGroupCommitWindow(newValue);
+                groupCommitChanged = true;
+            } else if (GROUP_COMMIT_SIZE_STR.equals(curEntry.getKey())) {
+                int newValue = Integer.parseInt(curEntry.getValue()
+                        .toString());
+                if (newValue == groupCommitSize) {
+                    continue;
+                }
+                setGroupCommitSize(newValue);
+                groupCommitChanged = true;
+            } else if (VLV_INDEXES_STR.equals(curEntry.getKey())) {
+                List<VLVIndexDefinition> newIndexes = new ArrayList<VLVIndexDefinition>();
+                for (String definition : toStringList(curEntry.getValue())) {
+                    try {
+                        newIndexes.add(VLVIndexDefinition.parse(definition));
+                    } catch (LDAPException le) {
+                        logger.warn("Skipping VLV index: {}", le.getMessage());
+                    }
+                }
+                if (newIndexes.equals(vlvIndexes)) {
+                    logger.debug("VLV indexes unchanged, not updating.");
+                    continue;
+                }
+                setVLVIndexes(newIndexes);
+                if (EmbeddedUtils.isRunning()) {
+                    for (VLVIndexDefinition definition : newIndexes) {
+                        try {
+                            addVLVIndex(definition);
+                        } catch (LDAPException le) {
+                            logger.warn("Could not add VLV index {}.", definition, le);
+                        }
+                    }
+                }
+            } else if (VLV_AUTO_CREATE_STR.equals(curEntry.getKey())) {
+                // checked by the next scheduled run
+                setVLVAutoCreateThreshold(Integer.parseInt(curEntry.getValue()
+                        .toString()));
+            } else if (MEMBERSHIP_INDEX_STR.equals(curEntry.getKey())) {
+                boolean newValue = Boolean.parseBoolean(curEntry.getValue()
+                        .toString());
+                if (newValue == membershipIndexEnabled) {
+                    continue;
+                }
+                setMembershipIndexEnabled(newValue);
+                membershipChanged = true;
+            } else if (PROFILE_STR.equals(curEntry.getKey())) {
+                DeploymentProfile newProfile;
+                try {
+                    newProfile = DeploymentProfile.fromName(curEntry.getValue()
+                            .toString());
+                } catch (LDAPException le) {
+                    logger.warn("Keeping {} profile: {}", profile, le.getMessage());
+                    continue;
+                }
+                if (newProfile == profile) {
+                    logger.debug("Profile unchanged, not updating.");
+                    continue;
+                }
+                setProfile(newProfile);
+                needsRestart = true;
+            } else if (REPLICATION_INIT_FROM_STR.equals(curEntry.getKey())) {
+                // only used the first time the server is started
+                replicationInitializeFrom = Integer.parseInt(curEntry.getValue()
+                        .toString());
+            } else if (IMPORT_THREADS_STR.equals(curEntry.getKey())) {
+                // only used by the next import
+                setImportThreadCount(Integer.parseInt(curEntry.getValue()
+                        .toString()));
+            } else if (EXPORT_RATE_LIMIT_STR.equals(curEntry.getKey())) {
+                // only used by the next export
+                setExportRateLimit(Integer.parseInt(curEntry.getValue()
+                        .toString()));
+            } else if (ServerSetting.fromVariable(curEntry.getKey()) != null) {
+                ServerSetting setting = ServerSetting.fromVariable(curEntry.getKey());
+                String newValue = curEntry.getValue()
+                        .toString();
+                if (StringUtils.equals(setting.currentValue, newValue)) {
+                    logger.debug("{} unchanged, not updating.", setting.settingName);
+                    continue;
+                }
+                setting.currentValue = newValue;
+                needsRestart = true;
+            }
+        }
+        if (!configurationApplied) {
+            configurationApplied = true;
+            if (newInstallPending) {
+                needsRestart |= removeExcludedSchemaFiles();
+            }
+            if (upgradePending) {
+                upgradePending = false;
+                needsRestart |= upgradeInstalledFiles();
+            }
+        }
+        if (needsRestart) {
+            copyConfig(DEFAULT_CONFIG_LOC, installDir + DEFAULT_CONFIG_LOC);
+            logger.debug("Calling restart to update configurations.");
+            restartServer();
+        }
+        if (baseLDIF != null) {
+            importLDIF(baseLDIF, true);
+        }
+        initializeNewReplica();
+        if (needsRestart) {
+            return;
+        }
+        if (healthChanged && EmbeddedUtils.isRunning()) {
+            logger.debug("Restarting health probes with new settings.");
+            stopHealthProber();
+            startHealthProber();
+        }
+        if (admissionChanged && EmbeddedUtils.isRunning()) {
+            logger.debug("Restarting admission control with new settings.");
+            stopAdmissionControl();
+            startAdmissionControl();
+        }
+        if (groupCommitChanged && EmbeddedUtils.isRunning()) {
+            logger.debug("Restarting group commit with new settings.");
+            stopGroupCommit();
+            startGroupCommit();
+        }
+        if (membershipChanged && EmbeddedUtils.isRunning()) {
+            stopMembershipIndex();
+            startMembershipIndex();
+        }
+    }
+
+    /**
+     * Initializes the data of a new node from the configured replication
+     * source the first time the configuration is applied after the data path
+     * was created. Nodes that do not replicate, or that have no source
+     * configured, keep the default entries imported on install.
+     *
+     * @throws LDAPException if the initialization could not be scheduled
+     */
+    private void initializeNewReplica() throws LDAPException {
+        if (!newInstallPending || !EmbeddedUtils.isRunning()) {
+            return;
+        }
+        newInstallPending = false;
+        if (replicationPort == 0 || replicationInitializeFrom == 0) {
+            return;
+        }
+        logger.info("Initializing new replica from server {}.", replicationInitializeFrom);
+        initializeReplicationFrom(replicationInitializeFrom);
+    }
+
+    /**
+     * Converts a multi-valued metatype property into a list of non-empty
+     * strings. Configuration admin may hand these over as an array, a
+     * collection or a single comma separated string.
+     *
+     * @param value property value
+     * @return list of trimmed, non-empty values
+     */
+    private List<String> toStringList(Object value) {
+        List<String> values = new ArrayList<String>();
+        Collection<?> rawValues;
+        if (value instanceof Object[]) {
+            rawValues = Arrays.asList((Object[]) value);
+        } else if (value instanceof Collection) {
+            rawValues = (Collection<?>) value;
+        } else {
+            rawValues = Arrays.asList(StringUtils.split(String.valueOf(value), ','));
+        }
+        for (Object rawValue : rawValues) {
+            if (rawValue != null && StringUtils.isNotBlank(rawValue.toString())) {
+                values.add(rawValue.toString()
+                        .trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Loads a LDIF file into the backends that hold its entries. The file is
+     * imported once per backend, limited to that backend's base DNs, so
+     * independent subtrees are imported into their own JE environments. All
+     * existing data in those backends will be cleared and only the entries
+     * from this LDIF will be available.
+     *
+     * @param ldifURL location of an LDIF file to load.
+     * @return the result of the import into each backend.
+     * @throws LDAPException Thrown if any errors occur during import process.
+     */
+    private List<LDIFImportResult> loadLDIF(URL ldifURL) throws LDAPException {
+        List<LDIFImportResult> results = new ArrayList<LDIFImportResult>();
+        for (String backendId : findImportBackends(ldifURL)) {
+            InputStream ldifStream = null;
+            LDIFImportProgress progress = new LDIFImportProgress(ldifURL.toString(), backendId,
+                    getContentLength(ldifURL));
+            ScheduledExecutorService progressReporter =
+                    Executors.newSingleThreadScheduledExecutor();
+            try {
+                ldifStream = openLDIF(ldifURL, progress);
+                logger.debug("Importing {} into backend {}", ldifURL, backendId);
+                importProgress = progress;
+                progressReporter.scheduleAtFixedRate(progress, IMPORT_PROGRESS_INTERVAL_SECONDS,
+                        IMPORT_PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+                results.add(loadLDIF(ldifStream, backendId));
+            } catch (IOException ioe) {
+                LDAPException le = new LDAPException("Could not read LDIF file " + ldifURL, ioe);
+                logger.warn(le.getMessage(), le);
+                throw le;
+            } finally {
+                progressReporter.shutdownNow();
+                IOUtils.closeQuietly(ldifStream);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Loads a LDIF file like {@link #loadLDIF(URL)} and stores the digest and
+     * results of the import in the import history.
+     *
+     * @param ldifURL       location of an LDIF file to load.
+     * @param skipUnchanged if true the file is not imported when it has the
+     *                      same content as the last successful import and
+     *                      the backends were neither replaced nor
+     *                      reconfigured since.
+     * @return true if the file was imported, false if it was skipped.
+     * @throws LDAPException Thrown if any errors occur during import process.
+     */
+    private boolean importLDIF(URL ldifURL, boolean skipUnchanged) throws LDAPException {
+        String source = ldifURL.toString();
+        long size = getContentLength(ldifURL);
+        long lastModified = getLastModified(ldifURL);
+        List<LDIFImportRecord> history = readImportHistory();
+        LDIFImportRecord lastImport = history.isEmpty() ? null : history.get(history.size() - 1);
+
+        String digest;
+        if (lastImport != null && lastImport.isSameFile(source, size, lastModified)) {
+            digest = lastImport.getDigest();
+        } else {
+            digest = getDigest(ldifURL);
+        }
+        if (skipUnchanged && lastImport != null && lastImport.isSuccessful()
+                && lastImport.getDigest()
+                .equals(digest) && lastImport.getImportTime()
+                .getTime() > readImportInvalidationTime() && getBackendLines().equals(
+                readLines(IMPORT_BACKENDS_LOC))) {
+            logger.info("LDIF file {} is unchanged since it was imported on {}, not importing.",
+                    source, lastImport.getImportTime());
+            return false;
+        }
+
+        long startTime = System.currentTimeMillis();
+        long entriesImported = 0;
+        long entriesRejected = 0;
+        boolean successful = false;
+        try {
+            for (LDIFImportResult result : loadLDIF(ldifURL)) {
+                entriesImported += result.getEntriesImported();
+                entriesRejected += result.getEntriesRejected();
+            }
+            successful = true;
+            writeLines(IMPORT_BACKENDS_LOC, getBackendLines());
+            if (membershipPlugin != null) {
+                // imports do not run plugins
+                try {
+                    rebuildMembershipIndex();
+                } catch (LDAPException le) {
+                    logger.warn("Could not rebuild membership index after import.", le);
+                }
+            }
+        } finally {
+            saveImportRecord(new LDIFImportRecord(startTime, digest, size, lastModified,
+                    entriesImported, entriesRejected, System.currentTimeMillis() - startTime,
+                    successful, source));
+        }
+        return true;
+    }
+
+    /**
+     * @param ldifURL location of a file.
+     * @return hex encoded SHA-256 digest of the file as stored.
+     * @throws LDAPException Thrown if the file could not be read.
+     */
+    private String getDigest(URL ldifURL) throws LDAPException {
+        InputStream digestStream = null;
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            digestStream = new DigestInputStream(ldifURL.openStream(), messageDigest);
+            byte[] buffer = new byte[IMPORT_BUFFER_SIZE];
+            while (digestStream.read(buffer) != -1) {
+                // digest is updated while reading
+            }
+            StringBuilder digest = new StringBuilder();
+            for (byte digestByte : messageDigest.digest()) {
+                digest.append(String.format("%02x", digestByte));
+            }
+            return digest.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new LDAPException("SHA-256 is not supported by this JVM.", nsae);
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not read LDIF file " + ldifURL, ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } finally {
+            IOUtils.closeQuietly(digestStream);
+        }
+    }
+
+    /**
+     * Opens an LDIF file for reading. Files that are gzip compressed or that
+     * are zip archives are decompressed while they are read; for zip archives
+     * the first file in the archive is used.
+     *
+     * @param ldifURL  location of a plain, gzip or zip LDIF file.
+     * @param progress progress to update while the file is read, may be null.
+     * @return stream of plain LDIF
+     * @throws IOException Thrown if the file could not be opened.
+     */
+    private InputStream openLDIF(URL ldifURL, LDIFImportProgress progress) throws IOException {
+        InputStream sourceStream = ldifURL.openStream();
+        if (progress != null) {
+            sourceStream = progress.trackBytes(sourceStream);
+        }
+        InputStream ldifStream = new BufferedInputStream(sourceStream, IMPORT_BUFFER_SIZE);
+        ldifStream.mark(4);
+        byte[] magic = new byte[4];
+        int read = 0;
+        while (read < magic.length) {
+            int count = ldifStream.read(magic, read, magic.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        ldifStream.reset();
+
+        if (read >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            logger.debug("Reading {} as gzip compressed LDIF.", ldifURL);
+            ldifStream = new BufferedInputStream(new GZIPInputStream(ldifStream,
+                    IMPORT_BUFFER_SIZE), IMPORT_BUFFER_SIZE);
+        } else if (read == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3
+                && magic[3] == 4) {
+            ZipInputStream zipStream = new ZipInputStream(ldifStream);
+            ZipEntry zipEntry = zipStream.getNextEntry();
+            while (zipEntry != null && zipEntry.isDirectory()) {
+                zipEntry = zipStream.getNextEntry();
+            }
+            if (zipEntry == null) {
+                IOUtils.closeQuietly(zipStream);
+                throw new IOException("Zip archive " + ldifURL + " does not contain a file.");
+            }
+            logger.debug("Reading {} from zip archive {}.", zipEntry.getName(), ldifURL);
+            ldifStream = new BufferedInputStream(zipStream, IMPORT_BUFFER_SIZE);
+        }
+
+        if (progress != null) {
+            ldifStream = progress.trackEntries(ldifStream);
+        }
+        return ldifStream;
+    }
+
+    /**
+     * @param url location of a file.
+     * @return last modification time of the file, or 0 if it is not known.
+     */
+    private long getLastModified(URL url) {
+        try {
+            return url.openConnection()
+                    .getLastModified();
+        } catch (IOException ioe) {
+            logger.debug("Could not get the modification time of {}", url, ioe);
+            return 0;
+        }
     }
 
-    public void setDataPath(String dataPath) {
-        this.dataPath = dataPath;
+    /**
+     * @param url location of a file.
+     * @return size of the file in bytes, or -1 if it is not known.
+     */
+    private long getContentLength(URL url) {
+        try {
+            return url.openConnection()
+                    .getContentLengthLong();
+        } catch (IOException ioe) {
+            logger.debug("Could not get the size of {}", url, ioe);
+            return -1;
+        }
     }
 
     /**
-     * Callback method to update the properties for the server. This method will
-     * restart the server if any of the properties being updated require a
-     * restart.
+     * Finds the local backends that hold at least one entry of the given LDIF
+     * file by reading only its DN lines. Falls back to the default backend if
+     * no entry belongs to a known backend.
      *
-     * @param properties Map of properties to be updated.
-     * @throws LDAPException If any error occurs during the updating process,
-     *                       including an error on server restart.
+     * @param ldifURL location of an LDIF file.
+     * @return ids of the backends to import into
+     * @throws LDAPException Thrown if the file could not be read.
      */
-    public void updateCallback(Map<String, Object> properties) throws LDAPException {
-        boolean needsRestart = false;
-        logger.debug("Got an update with {} items in it.", properties.size());
-        Set<Entry<String, Object>> entries = properties.entrySet();
-        for (Entry<String, Object> curEntry : entries) {
-            logger.debug(curEntry.toString());
-            if (ConnectorType.LDAP.portVariable.equals(curEntry.getKey())) {
-                int newPort = Integer.parseInt(curEntry.getValue()
-                        .toString());
-                if (newPort == ConnectorType.LDAP.currentPort) {
-                    logger.debug("LDAP Port unchanged, not updating.");
-                    continue;
-                }
-                setLDAPPort(newPort);
-                needsRestart = true;
-            } else if (ConnectorType.LDAPS.portVariable.equals(curEntry.getKey())) {
-                int newPort = Integer.parseInt(curEntry.getValue()
-                        .toString());
-                if (newPort == ConnectorType.LDAPS.currentPort) {
-                    logger.debug("LDAPS Port unchanged, not updating.");
-                    continue;
-                }
-                setLDAPSPort(newPort);
-                needsRestart = true;
-            } else if (ConnectorType.ADMIN.portVariable.equals(curEntry.getKey())) {
-                int newPort = Integer.parseInt(curEntry.getValue()
-                        .toString());
-                if (newPort == ConnectorType.ADMIN.currentPort) {
-                    logger.debug("Admin Port unchanged, not updating.");
-                    continue;
-                }
-                setAdminPort(newPort);
-                needsRestart = true;
-            } else if (BASE_LDIF_STR.equals(curEntry.getKey())) {
-                InputStream ldifStream = null;
-                String ldifLocation = curEntry.getValue()
-                        .toString();
-                if (ldifLocation.isEmpty()) {
-                    logger.debug("No new base ldif file, not loading.");
+    private Set<String> findImportBackends(URL ldifURL) throws LDAPException {
+        Set<String> localBackendIds = new HashSet<String>();
+        localBackendIds.add(DEFAULT_DB_ID);
+        for (BackendDefinition definition : backends) {
+            localBackendIds.add(definition.getBackendId());
+        }
+
+        Set<String> backendIds = new LinkedHashSet<String>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(openLDIF(ldifURL, null),
+                    StandardCharsets.UTF_8));
+            StringBuilder dnLine = null;
+            String line;
+            while ((line = reader.readLine()) != null
+                    && backendIds.size() < localBackendIds.size()) {
+                if (dnLine != null && line.startsWith(" ")) {
+                    // folded DN line
+                    dnLine.append(line.substring(1));
                     continue;
                 }
-                try {
-                    ldifStream = new FileInputStream(ldifLocation);
-                    loadLDIF(ldifStream);
-                } catch (FileNotFoundException fnfe) {
-                    logger.warn("Base LDIF file not found at {}. Could not update base entries.",
-                            ldifLocation);
-                } finally {
-                    IOUtils.closeQuietly(ldifStream);
+                if (dnLine != null) {
+                    addImportBackend(dnLine.toString(), localBackendIds, backendIds);
+                    dnLine = null;
                 }
-            } else if ("dataPath".equals(curEntry.getKey())) {
-                String newDataPath = curEntry.getValue()
-                        .toString();
-                if (StringUtils.equals(dataPath, newDataPath)) {
-                    logger.debug("Data path unchanged, not updating.");
-                    continue;
+                if (line.regionMatches(true, 0, "dn:", 0, 3)) {
+                    dnLine = new StringBuilder(line.substring(3));
                 }
-                setDataPath(newDataPath);
-                needsRestart = true;
             }
+            if (dnLine != null) {
+                addImportBackend(dnLine.toString(), localBackendIds, backendIds);
+            }
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not read LDIF file " + ldifURL, ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        } finally {
+            IOUtils.closeQuietly(reader);
         }
-        if (needsRestart) {
-            copyConfig(DEFAULT_CONFIG_LOC, installDir + DEFAULT_CONFIG_LOC);
-            logger.debug("Calling restart to update configurations.");
-            restartServer();
+
+        if (backendIds.isEmpty()) {
+            backendIds.add(DEFAULT_DB_ID);
         }
+        return backendIds;
     }
 
     /**
-     * Loads a LDIF file into the default backend db. All existing data in the
-     * backend will be cleared and only the entries from this LDIF will be
-     * available.
+     * Adds the id of the local backend that handles the given DN value, if any.
+     *
+     * @param dnValue          value of a DN line, without the "dn:" prefix.
+     * @param localBackendIds  ids of the backends managed by this class.
+     * @param backendIds       set to add the matching backend id to.
+     */
+    private void addImportBackend(String dnValue, Set<String> localBackendIds,
+            Set<String> backendIds) {
+        String dnString;
+        if (dnValue.startsWith(":")) {
+            dnString = new String(Base64.getMimeDecoder()
+                    .decode(dnValue.substring(1)
+                            .trim()), StandardCharsets.UTF_8);
+        } else {
+            dnString = dnValue.trim();
+        }
+        try {
+            Backend backend = DirectoryServer.getBackend(DN.decode(dnString));
+            if (backend != null && localBackendIds.contains(backend.getBackendID())) {
+                backendIds.add(backend.getBackendID());
+            }
+        } catch (DirectoryException de) {
+            logger.debug("Could not parse LDIF entry DN {}", dnString, de);
+        }
+    }
+
+    /**
+     * Loads a LDIF file into a backend db. All existing data in the backend
+     * will be cleared and only the entries from this LDIF that are below the
+     * backend's base DNs will be available. Entries are read and indexed by
+     * {@link #getImportThreadCount()} threads using a temporary directory below
+     * the data path. Entries that cannot be imported are written to a rejects
+     * file in the logs directory.
      *
      * @param ldifStream InputStream of an LDIF file to load.
+     * @param backendId  id of the backend to load into.
+     * @return the result of the import.
      * @throws LDAPException Thrown if any errors occur during import process.
      */
-    private void loadLDIF(InputStream ldifStream) throws LDAPException {
+    private LDIFImportResult loadLDIF(InputStream ldifStream, String backendId)
+            throws LDAPException {
         LDIFImportConfig ldifConfig = null;
+        File tmpDir = new File(installDir + IMPORT_TMP_LOC);
+        String rejectsFile = installDir + IMPORT_REJECTS_LOC + backendId + ".ldif";
         try {
+            Backend backend = DirectoryServer.getBackend(backendId);
+            if (backend == null) {
+                throw new LDAPException("Backend " + backendId + " is not available for import.");
+            }
             ldifConfig = new LDIFImportConfig(ldifStream);
             ldifConfig.setAppendToExistingData(false);
             ldifConfig.setClearBackend(true);
             ldifConfig.setValidateSchema(false);
             ldifConfig.setSkipDNValidation(false);
-            Backend backend = DirectoryServer.getBackend(DEFAULT_DB_ID);
+            ldifConfig.setIncludeBranches(Arrays.asList(backend.getBaseDNs()));
+            ldifConfig.setThreadCount(importThreadCount);
+            ldifConfig.setTmpDirectory(tmpDir.getAbsolutePath());
+            ldifConfig.writeRejectedEntries(rejectsFile, ExistingFileBehavior.OVERWRITE);
             logger.debug("Got reference to backend: {}", backend.getBackendID());
-            String lockFile = LockFileManager.getBackendLockFileName(backend);
-            LockFileManager.acquireExclusiveLock(lockFile, new StringBuilder());
-            backend.finalizeBackend();
-            LDIFImportResult importResult = backend.importLDIF(ldifConfig);
+            takeBackendOffline(backendId);
+            LDIFImportResult importResult;
+            try {
+                importResult = backend.importLDIF(ldifConfig);
+            } finally {
+                bringBackendOnline(backend);
+            }
             logger.debug("Complete result of import: {}", importResult);
-            backend.initializeBackend();
-            LockFileManager.releaseLock(lockFile, new StringBuilder());
             logger.info("{} entries imported.", importResult.getEntriesImported());
-        } catch (DirectoryException de) {
-            LDAPException le = new LDAPException("Error while trying to import LDIF.", de);
-            logger.warn(le.getMessage(), le);
-            throw le;
-        } catch (ConfigException ce) {
-            LDAPException le = new LDAPException(
-                    "Error with configuration while re-starting backend database.", ce);
+            if (importResult.getEntriesRejected() > 0) {
+                logger.warn("{} entries could not be imported into {}, see {}",
+                        importResult.getEntriesRejected(), backendId, rejectsFile);
+            }
+            return importResult;
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not create rejects file " + rejectsFile,
+                    ioe);
             logger.warn(le.getMessage(), le);
             throw le;
-        } catch (InitializationException ie) {
-            LDAPException le = new LDAPException(
-                    "Error while trying to re-initialize backend database.", ie);
+        } catch (DirectoryException de) {
+            LDAPException le = new LDAPException("Error while trying to import LDIF.", de);
             logger.warn(le.getMessage(), le);
             throw le;
         } finally {
             if (ldifConfig != null) {
                 ldifConfig.close();
             }
+            FileUtils.deleteQuietly(tmpDir);
         }
 
     }
@@ -510,7 +3517,7 @@ private void copyDefaultFiles() throws LDAPException {
         // Log folder
         createDirectory(installDir + "/logs");
         // DB folders
-        createDirectory(installDir + "/db/userRoot");
+        createDirectory(installDir + "/" + DEFAULT_DB_DIR + "/" + DEFAULT_DB_ID);
         // Upgrade folder
         createDirectory(installDir + "/config/upgrade");
 
@@ -523,12 +3530,255 @@ private void copyDefaultFiles() throws LDAPException {
 
         // Default schema files
         // This also copies any fragment schema files
-        copyFile(DEFAULT_SCHEMA_LOC, installDir + DEFAULT_SCHEMA_LOC, "*.ldif");
+        copyFile(DEFAULT_SCHEMA_LOC, installDir + DEFAULT_SCHEMA_LOC, "*.ldif",
+                profile.getExcludedSchemaFiles());
 
         // Default upgrade schema files checks to see if schemas changed
         copyFile(DEFAULT_UPGRADE_SCHEMA_LOC, installDir + DEFAULT_UPGRADE_SCHEMA_LOC);
     }
 
+    /**
+     * Removes the schema files that the profile does not install from a data
+     * path that was created before the profile was configured.
+     *
+     * @return true if a schema file was removed
+     * @throws LDAPException if the install manifest could not be updated
+     */
+    private boolean removeExcludedSchemaFiles() throws LDAPException {
+        InstallManifest manifest = readInstallManifest();
+        boolean removed = false;
+        for (String fileName : profile.getExcludedSchemaFiles()) {
+            String path = DEFAULT_SCHEMA_LOC.substring(1) + fileName;
+            File schemaFile = new File(installDir, path);
+            if (schemaFile.isFile()) {
+                logger.info("Removing schema file {}, it is not installed with the {} profile.",
+                        fileName, profile);
+                FileUtils.deleteQuietly(schemaFile);
+                manifest.remove(path);
+                removed = true;
+            }
+        }
+        if (removed) {
+            saveInstallManifest(manifest);
+        }
+        return removed;
+    }
+
+    /**
+     * Finds the bundled files that {@link #copyDefaultFiles()} installs as
+     * they are, including the schema files of fragments.
+     *
+     * @return URL of each file keyed by its path relative to the data path
+     */
+    private Map<String, URL> getBundledFiles() {
+        Map<String, URL> files = new TreeMap<String, URL>();
+        for (String location : Arrays.asList(DEFAULT_ADMIN_BACKEND_LOC, DEFAULT_BUILDINFO_LOC,
+                DEFAULT_SCHEMA_LOC + "*.ldif", DEFAULT_UPGRADE_SCHEMA_LOC)) {
+            String directory = location.substring(0, location.lastIndexOf("/") + 1);
+            Enumeration<URL> entries = context.getBundle()
+                    .findEntries(directory, location.substring(location.lastIndexOf("/") + 1),
+                            false);
+            if (entries != null) {
+                while (entries.hasMoreElements()) {
+                    URL url = entries.nextElement();
+                    String urlString = url.toString();
+                    files.put(directory.substring(1) + urlString.substring(
+                            urlString.lastIndexOf("/") + 1), url);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Builds the manifest of a fresh install from the files that were copied.
+     *
+     * @return manifest of the installed files
+     * @throws LDAPException if a bundled file could not be read.
+     */
+    private InstallManifest createInstallManifest() throws LDAPException {
+        InstallManifest manifest = new InstallManifest();
+        for (Map.Entry<String, URL> file : getBundledFiles().entrySet()) {
+            // schema files excluded by the profile were not copied
+            if (new File(installDir, file.getKey()).isFile()) {
+                manifest.put(file.getKey(), getDigest(file.getValue()));
+            }
+        }
+        manifest.put(CONFIG_TEMPLATE_KEY, getDigest(context.getBundle()
+                .getResource(DEFAULT_CONFIG_LOC)));
+        return manifest;
+    }
+
+    /**
+     * Brings the installed configuration and schema files up to date with the
+     * bundle. Files the bundle changed are replaced unless they were changed
+     * locally since they were installed, new files are added and files the
+     * bundle no longer contains are removed if they were not changed locally.
+     * The database is not touched. Runs once the configuration has been
+     * applied, the server is restarted afterwards to load the new files.
+     *
+     * @return true if a file was changed or config.ldif has to be regenerated
+     * because its template changed.
+     * @throws LDAPException if a file could not be read or copied.
+     */
+    private boolean upgradeInstalledFiles() throws LDAPException {
+        InstallManifest manifest = readInstallManifest();
+        Map<String, URL> bundledFiles = getBundledFiles();
+        int updated = 0;
+        for (Map.Entry<String, URL> bundledFile : bundledFiles.entrySet()) {
+            String path = bundledFile.getKey();
+            File localFile = new File(installDir, path);
+            if (manifest.get(path) == null && !localFile.exists()
+                    && DeploymentProfile.isOptionalSchemaFile(localFile.getName())) {
+                // left out by the profile the data path was created with
+                continue;
+            }
+            String bundledDigest = getDigest(bundledFile.getValue());
+            String localDigest = localFile.isFile() ? getDigest(toURL(localFile)) : null;
+            switch (manifest.decide(path, bundledDigest, localDigest)) {
+            case INSTALL:
+            case REPLACE:
+                logger.info("Upgrading {} from the bundle.", path);
+                copyFile("/" + path, installDir + "/" + path);
+                manifest.put(path, bundledDigest);
+                updated++;
+                break;
+            case KEEP_MODIFIED:
+                logger.warn("Not upgrading {}, it was changed after it was installed.", path);
+                break;
+            default:
+                if (bundledDigest.equals(localDigest)) {
+                    manifest.put(path, bundledDigest);
+                }
+            }
+        }
+        for (String path : new ArrayList<String>(manifest.getPaths())) {
+            if (bundledFiles.containsKey(path) || CONFIG_TEMPLATE_KEY.equals(path)) {
+                continue;
+            }
+            File localFile = new File(installDir, path);
+            if (localFile.isFile() && getDigest(toURL(localFile)).equals(manifest.get(path))) {
+                logger.info("Removing {}, it is no longer in the bundle.", path);
+                FileUtils.deleteQuietly(localFile);
+                updated++;
+            } else if (localFile.isFile()) {
+                logger.warn("Keeping {}, it is no longer in the bundle but was changed locally.",
+                        path);
+            }
+            manifest.remove(path);
+        }
+
+        String templateDigest = getDigest(context.getBundle()
+                .getResource(DEFAULT_CONFIG_LOC));
+        String installedTemplateDigest = manifest.get(CONFIG_TEMPLATE_KEY);
+        if (installedTemplateDigest != null && !installedTemplateDigest.equals(templateDigest)) {
+            // regenerated from the applied configuration by the restart
+            logger.info("Configuration template changed, regenerating {}.", DEFAULT_CONFIG_LOC);
+            updated++;
+        }
+        manifest.put(CONFIG_TEMPLATE_KEY, templateDigest);
+
+        saveInstallManifest(manifest);
+        if (updated > 0) {
+            logger.info("Upgraded {} configuration and schema files.", updated);
+        }
+        return updated > 0;
+    }
+
+    private URL toURL(File file) throws LDAPException {
+        try {
+            return file.toURI()
+                    .toURL();
+        } catch (MalformedURLException mue) {
+            throw new LDAPException("Invalid file location " + file, mue);
+        }
+    }
+
+    /**
+     * Reads the manifest of the installed bundle files. Data paths created
+     * before the manifest existed are assumed to hold the files of the
+     * previous release.
+     *
+     * @return the manifest, the digests of the previous release if there is
+     * none
+     */
+    private InstallManifest readInstallManifest() {
+        Path manifestFile = Paths.get(installDir + INSTALL_MANIFEST_LOC);
+        if (!Files.exists(manifestFile)) {
+            logger.debug("No install manifest at {}, comparing with the previous release.",
+                    manifestFile);
+            return readPreviousReleaseDigests();
+        }
+        try {
+            return InstallManifest.parse(Files.readAllLines(manifestFile,
+                    StandardCharsets.UTF_8));
+        } catch (IOException ioe) {
+            logger.warn("Could not read install manifest from {}", manifestFile, ioe);
+            return new InstallManifest();
+        }
+    }
+
+    /**
+     * Reads the digests of the files installed by the previous bundle
+     * release.
+     *
+     * @return the digests, empty if the bundle does not contain them
+     */
+    private InstallManifest readPreviousReleaseDigests() {
+        URL digestsURL = context.getBundle()
+                .getResource(PREVIOUS_RELEASE_DIGESTS_LOC);
+        if (digestsURL == null) {
+            logger.debug("No previous release digests in the bundle, only unmodified files "
+                    + "will be upgraded.");
+            return new InstallManifest();
+        }
+        InputStream digestsStream = null;
+        try {
+            digestsStream = digestsURL.openStream();
+            return InstallManifest.parse(IOUtils.readLines(digestsStream, "UTF-8"));
+        } catch (IOException ioe) {
+            logger.warn("Could not read previous release digests from {}", digestsURL, ioe);
+            return new InstallManifest();
+        } finally {
+            IOUtils.closeQuietly(digestsStream);
+        }
+    }
+
+    /**
+     * Stores the manifest of the installed bundle files.
+     *
+     * @param manifest manifest to store
+     * @throws LDAPException if the manifest could not be written
+     */
+    private void saveInstallManifest(InstallManifest manifest) throws LDAPException {
+        try {
+            Files.write(Paths.get(installDir + INSTALL_MANIFEST_LOC), manifest.toLines(),
+                    StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            LDAPException le = new LDAPException("Could not store install manifest.", ioe);
+            logger.warn(le.getMessage(), le);
+            throw le;
+        }
+    }
+
+    /**
+     * Creates the database directories of the additional backends that do not
+     * exist yet.
+     *
+     * @throws LDAPException Thrown if a directory could not be created.
+     */
+    private void createBackendDirectories() throws LDAPException {
+        for (BackendDefinition definition : backends) {
+            File backendDirectory = getBackendDirectory(definition.getDbDirectory(),
+                    definition.getBackendId());
+            if (!backendDirectory.exists()) {
+                logger.info("Creating database directory {} for backend {}", backendDirectory,
+                        definition.getBackendId());
+                createDirectory(backendDirectory.getAbsolutePath());
+            }
+        }
+    }
+
     /**
      * Performs a copy of a config file from one area to another. This method is
      * for configuration files that contain variables to configure during the
@@ -553,11 +3803,33 @@ private void copyConfig(String from, String to) throws LDAPException {
 
             String configStr = writer.toString();
 
+            configStr = profile.applyTo(configStr, replicationPort != 0);
+            configStr = durability.applyTo(configStr);
+            configStr = addBackends(configStr);
+            if (replicationPort != 0) {
+                logger.info("Enabling replication on port {} with server id {} and peers {}",
+                        replicationPort, replicationServerId, replicationPeers);
+            }
+            configStr = ReplicationConfig.addReplication(configStr, replicationPort,
+                    replicationServerId, replicationPeers, backends);
+            for (IndexDefinition definition : readIndexDefinitions()) {
+                configStr = definition.applyTo(configStr);
+            }
+            for (VLVIndexDefinition definition : vlvIndexes) {
+                configStr = definition.applyTo(configStr);
+            }
+            for (VLVIndexDefinition definition : readVLVIndexDefinitions()) {
+                configStr = definition.applyTo(configStr);
+            }
             configStr = updatePort(ConnectorType.LDAP, configStr);
             configStr = updatePort(ConnectorType.LDAPS, configStr);
             configStr = updatePort(ConnectorType.ADMIN, configStr);
             configStr = updateStore(KeystoreInfo.KEY_STORE, configStr);
             configStr = updateStore(KeystoreInfo.TRUST_STORE, configStr);
+            for (ServerSetting setting : ServerSetting.values()) {
+                configStr = updateSetting(setting, configStr);
+            }
+            configStr = updateSSLSettings(configStr);
 
             reader = new StringReader(configStr);
             logger.debug("Copying {} to {}", from, to);
@@ -574,6 +3846,62 @@ private void copyConfig(String from, String to) throws LDAPException {
         }
     }
 
+    /**
+     * Adds the configuration entries of the additional backends to the given
+     * configuration file. Each backend is created from the userRoot backend
+     * entry and its index entries.
+     *
+     * @param configStr String containing the entire configuration file
+     * @return The configuration file as a string with the backends added to it.
+     */
+    private String addBackends(String configStr) {
+        if (backends.isEmpty()) {
+            return configStr;
+        }
+        String userRootPercent = ConfigLDIF.getAttribute(configStr, DEFAULT_DB_CONFIG_DN,
+                "ds-cfg-db-cache-percent");
+        List<Integer> cachePercentages = BackendDefinition.allocateCachePercent(
+                StringUtils.isNumeric(userRootPercent) ? Integer.parseInt(userRootPercent) : 10,
+                backends);
+        configStr = ConfigLDIF.setAttribute(configStr, DEFAULT_DB_CONFIG_DN,
+                "ds-cfg-db-cache-percent", cachePercentages.get(0)
+                        .toString());
+        String userRootConfig = getUserRootConfig(configStr);
+
+        StringBuilder newConfig = new StringBuilder(configStr.trim());
+        for (int i = 0; i < backends.size(); i++) {
+            BackendDefinition definition = backends.get(i);
+            logger.info("Adding backend {} for {} with {}% database cache",
+                    definition.getBackendId(), definition.getBaseDN(),
+                    cachePercentages.get(i + 1));
+            newConfig.append("\n\n")
+                    .append(definition.createConfig(userRootConfig, cachePercentages.get(i + 1))
+                            .trim());
+        }
+        newConfig.append('\n');
+        return newConfig.toString();
+    }
+
+    /**
+     * Retrieves the userRoot backend entry and all of its child entries from
+     * the given configuration file.
+     *
+     * @param configStr String containing the entire configuration file
+     * @return the userRoot entries, separated by blank lines
+     */
+    private String getUserRootConfig(String configStr) {
+        StringBuilder userRootConfig = new StringBuilder();
+        for (String configEntry : configStr.split("\\r?\\n(\\r?\\n)+")) {
+            String dnLine = StringUtils.substringBefore(configEntry, "\n")
+                    .trim();
+            if (dnLine.startsWith("dn:") && dnLine.endsWith(DEFAULT_DB_CONFIG_DN)) {
+                userRootConfig.append(configEntry.trim())
+                        .append("\n\n");
+            }
+        }
+        return userRootConfig.toString();
+    }
+
     /**
      * Updates the port for a connector in the given configuration file.
      * Replaces the variables in the config file.
@@ -618,6 +3946,52 @@ private String updateStore(KeystoreInfo keystoreInfo, String configStr) {
         return newConfig;
     }
 
+    /**
+     * Updates a tunable server setting for the given configuration file.
+     * Replaces every occurrence of the setting's variable in the config file.
+     *
+     * @param setting   ServerSetting to update
+     * @param configStr String containing the entire configuration file
+     * @return The configuration file as a string with the setting updated in it.
+     */
+    private String updateSetting(ServerSetting setting, String configStr) {
+        String value = setting.currentValue;
+        String profileValue = profile.getSettingDefault(setting.variable);
+        if (profileValue != null && value.equals(setting.defaultValue)) {
+            logger.debug("Using the {} profile value for {}", profile, setting.settingName);
+            value = profileValue;
+        }
+        logger.debug("Updating {} to {}", setting.settingName, value);
+        return configStr.replace(setting.variable, value);
+    }
+
+    /**
+     * Updates the protocols and cipher suites of the LDAPS connector in the
+     * given configuration file. Replaces the variable line with one attribute
+     * line per configured value, or removes it when nothing is configured so
+     * the JVM defaults are used.
+     *
+     * @param configStr String containing the entire configuration file
+     * @return The configuration file as a string with the SSL settings updated in it.
+     */
+    private String updateSSLSettings(String configStr) {
+        StringBuilder sslSettings = new StringBuilder();
+        for (String protocol : sslProtocols) {
+            sslSettings.append("ds-cfg-ssl-protocol: ")
+                    .append(protocol)
+                    .append('\n');
+        }
+        for (String cipherSuite : sslCipherSuites) {
+            sslSettings.append("ds-cfg-ssl-cipher-suite: ")
+                    .append(cipherSuite)
+                    .append('\n');
+        }
+        logger.debug("Setting LDAPS protocols to {} and cipher suites to {}", sslProtocols,
+                sslCipherSuites);
+        return configStr.replaceFirst(SSL_SETTINGS_VAR + "\\r?\\n",
+                Matcher.quoteReplacement(sslSettings.toString()));
+    }
+
     /**
      * Performs a copy of a file from one area to another. In the context of
      * this class it is used to put files into the persistent cache location.
@@ -654,6 +4028,21 @@ private void copyFile(String from, String to) throws LDAPException {
      * @throws LDAPException
      */
     private void copyFile(String from, String to, String pattern) throws LDAPException {
+        copyFile(from, to, pattern, Collections.<String>emptyList());
+    }
+
+    /**
+     * Performs a copy of the matching files from one area to another, skipping
+     * the files with the given names.
+     *
+     * @param from          File name to copy (within the current class's context
+     * @param to            Area to store file, should be within the persistent cache.
+     * @param pattern       FileFilter pattern String to search for
+     * @param excludedNames names of files not to copy
+     * @throws LDAPException
+     */
+    private void copyFile(String from, String to, String pattern, List<String> excludedNames)
+            throws LDAPException {
         InputStream fromStream = null;
         OutputStream toStream = null;
         Enumeration<URL> entries = context.getBundle()
@@ -662,13 +4051,17 @@ private void copyFile(String from, String to, String pattern) throws LDAPExcepti
         if (entries != null) {
             while (entries.hasMoreElements()) {
                 currentURL = entries.nextElement();
+                String urlString = currentURL.toString();
+                String name = urlString.substring(urlString.lastIndexOf("/") + 1);
+                if (excludedNames.contains(name)) {
+                    logger.debug("Not copying {}", currentURL);
+                    continue;
+                }
                 try {
                     logger.debug("Copying {} to {}", currentURL, to);
                     fromStream = currentURL.openStream();
                     if (to.endsWith("/")) {
-                        String urlString = currentURL.toString();
-                        toStream = new FileOutputStream(
-                                to + urlString.substring(urlString.lastIndexOf("/") + 1));
+                        toStream = new FileOutputStream(to + name);
                     } else {
                         toStream = new FileOutputStream(to);
                     }
@@ -742,6 +4135,57 @@ private enum ConnectorType {
 
     }
 
+    /**
+     * Enumeration used to describe the tunable server settings that are
+     * exposed through the metatype. Each setting is stored as the string that
+     * replaces its variable in the config file.
+     */
+    private enum ServerSetting {
+        REQUEST_HANDLERS("request handlers", "request.handlers", "2"), BUFFER_SIZE(
+                "connection buffer size", "buffer.size", "4096"), ENTRIES_COMPRESSED(
+                "entry compression", "entries.compressed", "false"), WORK_QUEUE_CAPACITY(
+                "work queue capacity", "work.queue.capacity", "1000");
+
+        private String settingName;
+
+        private String variable;
+
+        private String currentValue;
+
+        private String defaultValue;
+
+        /**
+         * Default constructor for a server setting.
+         *
+         * @param settingName  Name of the setting that will be used in logs.
+         * @param variable     Variable for the setting that is inside the config
+         *                     file and is also the metatype property id (ex:
+         *                     request.handlers)
+         * @param defaultValue Default value for the setting
+         */
+        ServerSetting(String settingName, String variable, String defaultValue) {
+            this.settingName = settingName;
+            this.variable = variable;
+            this.currentValue = defaultValue;
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * Looks up the setting that uses the given variable.
+         *
+         * @param variable metatype property id
+         * @return the matching setting or null if there is none
+         */
+        private static ServerSetting fromVariable(String variable) {
+            for (ServerSetting setting : values()) {
+                if (setting.variable.equals(variable)) {
+                    return setting;
+                }
+            }
+            return null;
+        }
+    }
+
     private enum KeystoreInfo {
 
         TRUST_STORE(DEFAULT_TRUST_STORE_LOCATION, "trust.store.loc", DEFAULT_TRUST_STORE_PW,
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the progress of an LDIF import by counting the bytes read from the
+ * source file and the entries read from the (possibly decompressed) LDIF. When
+ * run it logs the import rate and an estimate of the remaining time.
+ */
+public class LDIFImportProgress implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LDIFImportProgress.class);
+
+    private final String source;
+
+    private final String backendId;
+
+    private final long totalBytes;
+
+    private final long startTime = System.nanoTime();
+
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private final AtomicLong entriesRead = new AtomicLong();
+
+    /**
+     * @param source     name of the LDIF source, used in logs
+     * @param backendId  id of the backend being imported into
+     * @param totalBytes size of the source in bytes, or -1 if unknown
+     */
+    LDIFImportProgress(String source, String backendId, long totalBytes) {
+        this.source = source;
+        this.backendId = backendId;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Wraps the raw source stream to count the bytes read from it.
+     *
+     * @param sourceStream stream of the LDIF source as stored
+     * @return counting stream
+     */
+    InputStream trackBytes(InputStream sourceStream) {
+        return new FilterInputStream(sourceStream) {
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    bytesRead.incrementAndGet();
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytesRead.addAndGet(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Wraps the LDIF stream to count the entries read from it. An entry is
+     * counted for every line that starts with "dn:".
+     *
+     * @param ldifStream stream of plain LDIF
+     * @return counting stream
+     */
+    InputStream trackEntries(InputStream ldifStream) {
+        return new FilterInputStream(ldifStream) {
+            // number of characters of "dn:" matched at the start of the current line
+            private int matched = 0;
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    count((byte) read);
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                for (int i = 0; i < read; i++) {
+                    count(buffer[offset + i]);
+                }
+                return read;
+            }
+
+            private void count(byte current) {
+                if (current == '\n') {
+                    matched = 0;
+                } else if (matched >= 0 && matched < 3) {
+                    char expected = "dn:".charAt(matched);
+                    if (Character.toLowerCase((char) current) == expected) {
+                        matched++;
+                        if (matched == 3) {
+                            entriesRead.incrementAndGet();
+                        }
+                    } else {
+                        matched = -1;
+                    }
+                }
+            }
+        };
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getBackendId() {
+        return backendId;
+    }
+
+    /**
+     * @return number of entries read from the LDIF so far
+     */
+    public long getEntriesRead() {
+        return entriesRead.get();
+    }
+
+    /**
+     * @return average number of entries read per second since the import started
+     */
+    public double getEntriesPerSecond() {
+        double seconds = (System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds > 0 ? entriesRead.get() / seconds : 0;
+    }
+
+    /**
+     * @return percentage of the source that has been read, or -1 if the size
+     * of the source is unknown
+     */
+    public double getPercentComplete() {
+        if (totalBytes <= 0) {
+            return -1;
+        }
+        return Math.min(100, bytesRead.get() * 100.0 / totalBytes);
+    }
+
+    /**
+     * @return estimated number of seconds until the source is fully read, or
+     * -1 if it cannot be estimated yet
+     */
+    public long getEstimatedSecondsRemaining() {
+        long read = bytesRead.get();
+        if (totalBytes <= 0 || read == 0) {
+            return -1;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        return TimeUnit.NANOSECONDS.toSeconds((long) (elapsed * ((double) (totalBytes - read)
+                / read)));
+    }
+
+    @Override
+    public void run() {
+        long remaining = getEstimatedSecondsRemaining();
+        LOGGER.info("Importing {} into {}: {} entries read ({} entries/s), {}% read, ETA {}",
+                source, backendId, getEntriesRead(), Math.round(getEntriesPerSecond()),
+                Math.round(getPercentComplete()),
+                remaining < 0 ? "unknown" : String.format("%d:%02d", remaining / 60,
+                        remaining % 60));
+    }
+}
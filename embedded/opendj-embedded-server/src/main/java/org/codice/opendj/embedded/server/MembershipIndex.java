@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Static group membership kept in memory. Every DN is stored once and
+ * referenced by an integer id; each group maps to the sorted ids of its
+ * members and each member maps to the sorted ids of the groups it is a direct
+ * member of. Nested groups are resolved by following the member to group map
+ * from the groups a DN is a direct member of.
+ * <p/>
+ * DNs must be passed in normalized form.
+ * <p/>
+ * The index answers the membership lookups of {@link LDAPManager}. The
+ * server's own isMemberOf virtual attribute and the groupdn bind rules of
+ * ACIs are resolved by the server's group manager and do not use it.
+ */
+class MembershipIndex {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    private List<String> dns = new ArrayList<String>();
+
+    private Map<Integer, int[]> groupMembers = new HashMap<Integer, int[]>();
+
+    private Map<Integer, int[]> memberGroups = new HashMap<Integer, int[]>();
+
+    /**
+     * Sets the members of a group, replacing any members it had before.
+     *
+     * @param groupDN   normalized DN of the group
+     * @param memberDNs normalized DNs of its direct members
+     */
+    void setGroup(String groupDN, Collection<String> memberDNs) {
+        lock.writeLock()
+                .lock();
+        try {
+            removeGroupLocked(groupDN);
+            int groupId = getOrCreateId(groupDN);
+            int[] members = new int[memberDNs.size()];
+            int count = 0;
+            for (String memberDN : memberDNs) {
+                members[count++] = getOrCreateId(memberDN);
+            }
+            members = sortedUnique(members);
+            if (members.length == 0) {
+                return;
+            }
+            groupMembers.put(groupId, members);
+            for (int memberId : members) {
+                memberGroups.put(memberId, insert(memberGroups.get(memberId), groupId));
+            }
+        } finally {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Adds and removes members of a group without reading its other members.
+     *
+     * @param groupDN    normalized DN of the group
+     * @param addedDNs   normalized DNs of the members added to it
+     * @param removedDNs normalized DNs of the members removed from it
+     */
+    void updateMembers(String groupDN, Collection<String> addedDNs,
+            Collection<String> removedDNs) {
+        lock.writeLock()
+                .lock();
+        try {
+            int groupId = getOrCreateId(groupDN);
+            int[] members = getOrEmpty(groupMembers, groupId);
+            for (String memberDN : removedDNs) {
+                Integer memberId = ids.get(memberDN);
+                if (memberId == null) {
+                    continue;
+                }
+                int[] remaining = remove(members, memberId);
+                if (remaining == members) {
+                    continue;
+                }
+                members = remaining;
+                int[] groups = remove(memberGroups.get(memberId), groupId);
+                if (groups.length == 0) {
+                    memberGroups.remove(memberId);
+                } else {
+                    memberGroups.put(memberId, groups);
+                }
+            }
+            for (String memberDN : addedDNs) {
+                int memberId = getOrCreateId(memberDN);
+                members = insert(members, memberId);
+                memberGroups.put(memberId, insert(memberGroups.get(memberId), groupId));
+            }
+            if (members.length == 0) {
+                groupMembers.remove(groupId);
+            } else {
+                groupMembers.put(groupId, members);
+            }
+        } finally {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Removes a group and all of its memberships.
+     *
+     * @param groupDN normalized DN of the group
+     */
+    void removeGroup(String groupDN) {
+        lock.writeLock()
+                .lock();
+        try {
+            removeGroupLocked(groupDN);
+        } finally {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Removes a group and every group below it.
+     *
+     * @param baseDN normalized DN of the removed or renamed entry
+     * @return number of groups removed
+     */
+    int removeGroupsUnder(String baseDN) {
+        lock.writeLock()
+                .lock();
+        try {
+            List<String> removed = new ArrayList<String>();
+            for (Integer groupId : groupMembers.keySet()) {
+                String groupDN = dns.get(groupId);
+                if (groupDN.equals(baseDN) || groupDN.endsWith("," + baseDN)) {
+                    removed.add(groupDN);
+                }
+            }
+            for (String groupDN : removed) {
+                removeGroupLocked(groupDN);
+            }
+            return removed.size();
+        } finally {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Removes all groups.
+     */
+    void clear() {
+        lock.writeLock()
+                .lock();
+        try {
+            ids.clear();
+            dns.clear();
+            groupMembers.clear();
+            memberGroups.clear();
+        } finally {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Replaces all groups with the groups of another index in one step, so
+     * that readers see either the old or the new groups. The other index is
+     * left empty.
+     *
+     * @param other index built to replace this one
+     */
+    void replaceWith(MembershipIndex other) {
+        lock.writeLock()
+                .lock();
+        other.lock.writeLock()
+                .lock();
+        try {
+            ids = other.ids;
+            dns = other.dns;
+            groupMembers = other.groupMembers;
+            memberGroups = other.memberGroups;
+            other.ids = new HashMap<String, Integer>();
+            other.dns = new ArrayList<String>();
+            other.groupMembers = new HashMap<Integer, int[]>();
+            other.memberGroups = new HashMap<Integer, int[]>();
+        } finally {
+            other.lock.writeLock()
+                    .unlock();
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * @param memberDN normalized DN of a possible member
+     * @param groupDN  normalized DN of a group
+     * @param nested   if true, membership through nested groups counts too
+     * @return true if the DN is a member of the group
+     */
+    boolean isMember(String memberDN, String groupDN, boolean nested) {
+        lock.readLock()
+                .lock();
+        try {
+            Integer memberId = ids.get(memberDN);
+            Integer groupId = ids.get(groupDN);
+            if (memberId == null || groupId == null) {
+                return false;
+            }
+            int[] direct = memberGroups.get(memberId);
+            if (direct != null && Arrays.binarySearch(direct, groupId) >= 0) {
+                return true;
+            }
+            return nested && getGroupIds(memberId).get(groupId);
+        } finally {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * @param memberDN normalized DN of a possible member
+     * @param nested   if true, groups the DN is a member of through nested
+     *                 groups are included
+     * @return normalized DNs of the groups the DN is a member of
+     */
+    Set<String> getGroups(String memberDN, boolean nested) {
+        Set<String> groups = new LinkedHashSet<String>();
+        lock.readLock()
+                .lock();
+        try {
+            Integer memberId = ids.get(memberDN);
+            if (memberId == null) {
+                return groups;
+            }
+            if (!nested) {
+                for (int groupId : getOrEmpty(memberGroups, memberId)) {
+                    groups.add(dns.get(groupId));
+                }
+                return groups;
+            }
+            BitSet groupIds = getGroupIds(memberId);
+            for (int groupId = groupIds.nextSetBit(0); groupId >= 0;
+                    groupId = groupIds.nextSetBit(groupId + 1)) {
+                groups.add(dns.get(groupId));
+            }
+            return groups;
+        } finally {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * @return number of groups in the index
+     */
+    int getGroupCount() {
+        lock.readLock()
+                .lock();
+        try {
+            return groupMembers.size();
+        } finally {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Collects the groups a member belongs to directly or through nested
+     * groups. Cycles between groups are visited only once.
+     */
+    private BitSet getGroupIds(int memberId) {
+        BitSet visited = new BitSet();
+        Deque<Integer> pending = new ArrayDeque<Integer>();
+        pending.add(memberId);
+        while (!pending.isEmpty()) {
+            for (int groupId : getOrEmpty(memberGroups, pending.poll())) {
+                if (!visited.get(groupId)) {
+                    visited.set(groupId);
+                    pending.add(groupId);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private void removeGroupLocked(String groupDN) {
+        Integer groupId = ids.get(groupDN);
+        if (groupId == null) {
+            return;
+        }
+        int[] members = groupMembers.remove(groupId);
+        if (members == null) {
+            return;
+        }
+        for (int memberId : members) {
+            int[] groups = remove(memberGroups.get(memberId), groupId);
+            if (groups.length == 0) {
+                memberGroups.remove(memberId);
+            } else {
+                memberGroups.put(memberId, groups);
+            }
+        }
+    }
+
+    private int getOrCreateId(String dn) {
+        Integer id = ids.get(dn);
+        if (id == null) {
+            id = dns.size();
+            dns.add(dn);
+            ids.put(dn, id);
+        }
+        return id;
+    }
+
+    private static int[] getOrEmpty(Map<Integer, int[]> map, int key) {
+        int[] values = map.get(key);
+        return values == null ? NO_IDS : values;
+    }
+
+    private static int[] sortedUnique(int[] values) {
+        Arrays.sort(values);
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[count++] = values[i];
+            }
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static int[] insert(int[] values, int value) {
+        if (values == null) {
+            return new int[] {value};
+        }
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return values;
+        }
+        index = -index - 1;
+        int[] newValues = new int[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, index);
+        newValues[index] = value;
+        System.arraycopy(values, index, newValues, index + 1, values.length - index);
+        return newValues;
+    }
+
+    private static int[] remove(int[] values, int value) {
+        if (values == null) {
+            return NO_IDS;
+        }
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return values;
+        }
+        int[] newValues = new int[values.length - 1];
+        System.arraycopy(values, 0, newValues, 0, index);
+        System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+        return newValues;
+    }
+}
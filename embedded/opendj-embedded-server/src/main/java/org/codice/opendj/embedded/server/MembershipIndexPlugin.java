@@ -0,0 +1,407 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.api.plugin.PluginType;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchListener;
+import org.opends.server.protocols.internal.InternalSearchOperation;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeValue;
+import org.opends.server.types.DN;
+import org.opends.server.types.DereferencePolicy;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.Modification;
+import org.opends.server.types.ModificationType;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.types.SearchResultEntry;
+import org.opends.server.types.SearchResultReference;
+import org.opends.server.types.SearchScope;
+import org.opends.server.types.operation.PostOperationAddOperation;
+import org.opends.server.types.operation.PostOperationDeleteOperation;
+import org.opends.server.types.operation.PostOperationModifyDNOperation;
+import org.opends.server.types.operation.PostOperationModifyOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Internal plugin that keeps a {@link MembershipIndex} up to date as static
+ * groups are added, modified, renamed and deleted. Member values added to or
+ * deleted from a group are applied one by one, only replacing a member
+ * attribute reads the whole group again. Internal operations are
+ * included so that changes made by the referential integrity plugin are seen.
+ * Imports and replica initialization do not run plugins, so the index has to
+ * be built again with {@link #rebuild(List)} after them.
+ */
+class MembershipIndexPlugin extends InternalDirectoryServerPlugin {
+
+    static final List<String> GROUP_CLASSES = Arrays.asList("groupofnames",
+            "groupofuniquenames", "groupofentries");
+
+    static final List<String> MEMBER_ATTRIBUTES = Arrays.asList("member", "uniquemember");
+
+    private static final String GROUP_FILTER =
+            "(|(objectClass=groupOfNames)(objectClass=groupOfUniqueNames)"
+                    + "(objectClass=groupOfEntries))";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MembershipIndexPlugin.class);
+
+    private final MembershipIndex index;
+
+    /**
+     * Index being built by {@link #rebuild(List)}, which receives the changes
+     * made while it is built.
+     */
+    private volatile MembershipIndex rebuildIndex;
+
+    /**
+     * @param componentDN DN used to identify the plugin in logs
+     * @param index       index to keep up to date
+     */
+    MembershipIndexPlugin(DN componentDN, MembershipIndex index) {
+        super(componentDN, EnumSet.of(PluginType.POST_OPERATION_ADD,
+                PluginType.POST_OPERATION_MODIFY, PluginType.POST_OPERATION_DELETE,
+                PluginType.POST_OPERATION_MODIFY_DN), true);
+        this.index = index;
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(PostOperationAddOperation addOperation) {
+        if (addOperation.getResultCode() == ResultCode.SUCCESS) {
+            update(addOperation.getEntryToAdd());
+        }
+        return PluginResult.PostOperation.continueOperationProcessing();
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(
+            PostOperationModifyOperation modifyOperation) {
+        if (modifyOperation.getResultCode() == ResultCode.SUCCESS) {
+            Entry modifiedEntry = modifyOperation.getModifiedEntry();
+            boolean wasGroup = isGroup(modifyOperation.getCurrentEntry());
+            if (isGroup(modifiedEntry)) {
+                if (!wasGroup || !updateMembers(modifiedEntry,
+                        modifyOperation.getModifications())) {
+                    update(modifiedEntry);
+                }
+            } else if (wasGroup) {
+                // the group object class was removed
+                for (MembershipIndex target : getTargets()) {
+                    target.removeGroup(modifiedEntry.getDN()
+                            .toNormalizedString());
+                }
+            }
+        }
+        return PluginResult.PostOperation.continueOperationProcessing();
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(
+            PostOperationDeleteOperation deleteOperation) {
+        if (deleteOperation.getResultCode() == ResultCode.SUCCESS) {
+            // a subtree delete removes the groups below the entry as well
+            for (MembershipIndex target : getTargets()) {
+                target.removeGroupsUnder(deleteOperation.getEntryToDelete()
+                        .getDN()
+                        .toNormalizedString());
+            }
+        }
+        return PluginResult.PostOperation.continueOperationProcessing();
+    }
+
+    @Override
+    public PluginResult.PostOperation doPostOperation(
+            PostOperationModifyDNOperation modifyDNOperation) {
+        if (modifyDNOperation.getResultCode() != ResultCode.SUCCESS) {
+            return PluginResult.PostOperation.continueOperationProcessing();
+        }
+        Entry updatedEntry = modifyDNOperation.getUpdatedEntry();
+        for (MembershipIndex target : getTargets()) {
+            int removed = target.removeGroupsUnder(modifyDNOperation.getOriginalEntry()
+                    .getDN()
+                    .toNormalizedString());
+            if (removed == 0 || (removed == 1 && isGroup(updatedEntry))) {
+                update(updatedEntry, target);
+            } else {
+                // groups below the renamed entry moved too, read them at their new DNs
+                try {
+                    load(updatedEntry.getDN(), target);
+                } catch (LDAPException le) {
+                    LOGGER.warn(le.getMessage(), le);
+                }
+            }
+        }
+        return PluginResult.PostOperation.continueOperationProcessing();
+    }
+
+    /**
+     * Builds the index again from the groups below the given base DNs. The
+     * new index is built separately and then replaces the current one in one
+     * step, so lookups keep being answered from the current index meanwhile.
+     *
+     * @param baseDNs base DNs to search
+     * @return number of groups read
+     * @throws LDAPException if the groups could not be searched, in which case
+     *                       the current index is kept
+     */
+    synchronized int rebuild(List<DN> baseDNs) throws LDAPException {
+        MembershipIndex newIndex = new MembershipIndex();
+        rebuildIndex = newIndex;
+        try {
+            int groups = 0;
+            for (DN baseDN : baseDNs) {
+                groups += load(baseDN, newIndex);
+            }
+            index.replaceWith(newIndex);
+            return groups;
+        } finally {
+            rebuildIndex = null;
+        }
+    }
+
+    /**
+     * Reads every group at or below a base DN into an index.
+     *
+     * @param baseDN base DN to search
+     * @param target index to read the groups into
+     * @return number of groups read
+     * @throws LDAPException if the groups could not be searched
+     */
+    private int load(DN baseDN, final MembershipIndex target) throws LDAPException {
+        final int[] count = new int[1];
+        LinkedHashSet<String> attributes = new LinkedHashSet<String>();
+        attributes.add("objectClass");
+        attributes.addAll(MEMBER_ATTRIBUTES);
+        InternalSearchOperation searchOperation;
+        try {
+            searchOperation = InternalClientConnection.getRootConnection()
+                    .processSearch(baseDN, SearchScope.WHOLE_SUBTREE,
+                            DereferencePolicy.NEVER_DEREF_ALIASES, 0, 0, false,
+                            SearchFilter.createFilterFromString(GROUP_FILTER), attributes,
+                            new InternalSearchListener() {
+                                @Override
+                                public void handleInternalSearchEntry(
+                                        InternalSearchOperation searchOperation,
+                                        SearchResultEntry searchEntry) {
+                                    update(searchEntry, target);
+                                    count[0]++;
+                                }
+
+                                @Override
+                                public void handleInternalSearchReference(
+                                        InternalSearchOperation searchOperation,
+                                        SearchResultReference searchReference) {
+                                    // referrals to other servers are not followed
+                                }
+                            });
+        } catch (DirectoryException de) {
+            throw new LDAPException("Could not read groups below " + baseDN + ".", de);
+        }
+        if (searchOperation.getResultCode() != ResultCode.SUCCESS
+                && searchOperation.getResultCode() != ResultCode.NO_SUCH_OBJECT) {
+            throw new LDAPException("Could not read groups below " + baseDN + ": "
+                    + searchOperation.getResultCode() + " " + searchOperation.getErrorMessage());
+        }
+        return count[0];
+    }
+
+    /**
+     * Applies the member values added and deleted by a modification of a
+     * group to the index, so that only the changed values are decoded.
+     *
+     * @param group         the group after the modification
+     * @param modifications the modifications applied to it
+     * @return false if the group has to be read again instead, because a
+     * member attribute was replaced or removed as a whole, or the group uses
+     * both member attributes and a value may still be in the other one
+     */
+    private boolean updateMembers(Entry group, List<Modification> modifications) {
+        Map<String, Boolean> changes = getMemberChanges(modifications);
+        if (changes == null) {
+            return false;
+        }
+        if (changes.isEmpty()) {
+            return true;
+        }
+        if (changes.containsValue(Boolean.FALSE) && countMemberAttributes(group) > 1) {
+            return false;
+        }
+        List<String> added = new ArrayList<String>();
+        List<String> removed = new ArrayList<String>();
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            if (change.getValue()) {
+                added.add(change.getKey());
+            } else {
+                removed.add(change.getKey());
+            }
+        }
+        String groupDN = group.getDN()
+                .toNormalizedString();
+        for (MembershipIndex target : getTargets()) {
+            target.updateMembers(groupDN, added, removed);
+        }
+        return true;
+    }
+
+    /**
+     * Works out which members a list of modifications adds and removes. When
+     * a value is changed more than once the last change wins, as it does in
+     * the entry.
+     *
+     * @param modifications modifications of a group
+     * @return normalized member DN mapped to true if it was added and false
+     * if it was removed, or null if a member attribute was replaced or removed
+     * as a whole
+     */
+    static Map<String, Boolean> getMemberChanges(List<Modification> modifications) {
+        Map<String, Boolean> changes = new LinkedHashMap<String, Boolean>();
+        for (Modification modification : modifications) {
+            Attribute attribute = modification.getAttribute();
+            if (!MEMBER_ATTRIBUTES.contains(attribute.getName()
+                    .toLowerCase())) {
+                continue;
+            }
+            boolean add = modification.getModificationType() == ModificationType.ADD;
+            if (!add && (modification.getModificationType() != ModificationType.DELETE
+                    || attribute.isEmpty())) {
+                return null;
+            }
+            for (AttributeValue value : attribute) {
+                String member = normalize(value.getValue()
+                        .toString());
+                if (member != null) {
+                    changes.put(member, add);
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static int countMemberAttributes(Entry entry) {
+        int count = 0;
+        for (String attributeName : MEMBER_ATTRIBUTES) {
+            if (entry.getAttribute(attributeName) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sets the members of an entry in the index if it is a group.
+     */
+    private void update(Entry entry) {
+        for (MembershipIndex target : getTargets()) {
+            update(entry, target);
+        }
+    }
+
+    private void update(Entry entry, MembershipIndex target) {
+        if (!isGroup(entry)) {
+            return;
+        }
+        target.setGroup(entry.getDN()
+                .toNormalizedString(), getMembers(entry));
+    }
+
+    /**
+     * @return the indexes a change has to be applied to. A change reaches the
+     * index being rebuilt first, so that it is not lost if that index replaces
+     * the current one in between.
+     */
+    private List<MembershipIndex> getTargets() {
+        List<MembershipIndex> targets = new ArrayList<MembershipIndex>(2);
+        MembershipIndex rebuilding = rebuildIndex;
+        if (rebuilding != null) {
+            targets.add(rebuilding);
+        }
+        targets.add(index);
+        return targets;
+    }
+
+    /**
+     * @param entry an entry
+     * @return true if the entry is a static group
+     */
+    static boolean isGroup(Entry entry) {
+        if (entry == null) {
+            return false;
+        }
+        for (String objectClass : entry.getObjectClasses()
+                .values()) {
+            if (GROUP_CLASSES.contains(objectClass.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the normalized DNs of the members of a group. Values that are not
+     * valid DNs are skipped.
+     *
+     * @param entry a static group
+     * @return normalized member DNs
+     */
+    static List<String> getMembers(Entry entry) {
+        List<String> members = new ArrayList<String>();
+        for (String attributeName : MEMBER_ATTRIBUTES) {
+            List<Attribute> attributes = entry.getAttribute(attributeName);
+            if (attributes == null) {
+                continue;
+            }
+            for (Attribute attribute : attributes) {
+                for (AttributeValue value : attribute) {
+                    String member = normalize(value.getValue()
+                            .toString());
+                    if (member != null) {
+                        members.add(member);
+                    }
+                }
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Normalizes a member value. Unique member values may end with an
+     * optional UID after a '#' that is not part of the DN.
+     *
+     * @param value a member or unique member value
+     * @return the normalized DN, or null if the value is not a DN
+     */
+    static String normalize(String value) {
+        String dn = value;
+        int uidStart = dn.lastIndexOf("#'");
+        if (uidStart > 0) {
+            dn = dn.substring(0, uidStart);
+        }
+        try {
+            return DN.decode(dn)
+                    .toNormalizedString();
+        } catch (DirectoryException de) {
+            LOGGER.debug("Ignoring member value that is not a DN: {}", value, de);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output stream that writes at most a given number of bytes per second by
+ * making the writer wait. Up to one second of unused rate is saved, so short
+ * pauses of the writer are made up for without exceeding the rate for long.
+ */
+class RateLimitedOutputStream extends FilterOutputStream {
+
+    private final long bytesPerSecond;
+
+    private final int chunkSize;
+
+    private double allowance;
+
+    private long lastRefill;
+
+    /**
+     * @param out            stream to write to
+     * @param bytesPerSecond highest average rate, must be positive
+     */
+    RateLimitedOutputStream(OutputStream out, long bytesPerSecond) {
+        super(out);
+        this.bytesPerSecond = bytesPerSecond;
+        // write in tenths of a second so the rate stays even
+        this.chunkSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytesPerSecond / 10));
+        this.lastRefill = nanoTime();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        acquire(1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int chunk = Math.min(length, chunkSize);
+            acquire(chunk);
+            out.write(buffer, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Waits until the given number of bytes may be written.
+     *
+     * @param bytes number of bytes to write
+     * @throws InterruptedIOException if the writer was interrupted
+     */
+    private void acquire(int bytes) throws InterruptedIOException {
+        refill();
+        while (allowance < bytes) {
+            try {
+                sleep((long) Math.ceil((bytes - allowance) * TimeUnit.SECONDS.toNanos(1)
+                        / bytesPerSecond));
+            } catch (InterruptedException ie) {
+                Thread.currentThread()
+                        .interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to write.");
+            }
+            refill();
+        }
+        allowance -= bytes;
+    }
+
+    private void refill() {
+        long now = nanoTime();
+        allowance = Math.min(bytesPerSecond,
+                allowance + (now - lastRefill) * bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(
+                        1));
+        lastRefill = now;
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    void sleep(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods to add the multi-master replication configuration to the
+ * server configuration file before it is written out.
+ */
+final class ReplicationConfig {
+
+    private static final String REPLICATION_PROVIDER_DN =
+            "cn=Multimaster Synchronization,cn=Synchronization Providers,cn=config";
+
+    private static final String USER_ROOT_DN = "ds-cfg-backend-id=userRoot,cn=Backends,cn=config";
+
+    /**
+     * Replication server ids are kept apart from directory server ids by
+     * adding this offset to the configured server id.
+     */
+    static final int REPLICATION_SERVER_ID_OFFSET = 16384;
+
+    private ReplicationConfig() {
+    }
+
+    /**
+     * Adds the multi-master replication configuration to the given
+     * configuration file. This node gets a replication server listening on
+     * the replication port and one replication domain per backend base DN.
+     * Both connect to every replication server in the peer list, so all nodes
+     * can share the same peer list.
+     *
+     * @param configStr       String containing the entire configuration file
+     * @param replicationPort port the replication server listens on, or 0 if
+     *                        replication is disabled
+     * @param serverId        id of this node in the replication topology
+     * @param peers           replication servers of all nodes as host:port,
+     *                        if empty only the local replication server is used
+     * @param backends        the additional backends
+     * @return The configuration file as a string with replication added to it.
+     */
+    static String addReplication(String configStr, int replicationPort, int serverId,
+            List<String> peers, List<BackendDefinition> backends) {
+        if (replicationPort == 0) {
+            return configStr;
+        }
+        List<String> replicationServers = new ArrayList<String>(peers);
+        if (replicationServers.isEmpty()) {
+            replicationServers.add("localhost:" + replicationPort);
+        }
+
+        StringBuilder newConfig = new StringBuilder(configStr.trim());
+        newConfig.append("\n\ndn: cn=replication server,").append(REPLICATION_PROVIDER_DN)
+                .append('\n');
+        newConfig.append("objectClass: top\n");
+        newConfig.append("objectClass: ds-cfg-replication-server\n");
+        newConfig.append("cn: replication server\n");
+        newConfig.append("ds-cfg-replication-port: ")
+                .append(replicationPort)
+                .append('\n');
+        newConfig.append("ds-cfg-replication-server-id: ")
+                .append(serverId + REPLICATION_SERVER_ID_OFFSET)
+                .append('\n');
+        newConfig.append("ds-cfg-replication-db-directory: changelogDb\n");
+        for (String replicationServer : replicationServers) {
+            newConfig.append("ds-cfg-replication-server: ")
+                    .append(replicationServer)
+                    .append('\n');
+        }
+
+        for (String baseDN : getReplicatedBaseDNs(configStr, backends)) {
+            newConfig.append("\ndn: cn=")
+                    .append(escapeRDNValue(baseDN))
+                    .append(",cn=domains,")
+                    .append(REPLICATION_PROVIDER_DN)
+                    .append('\n');
+            newConfig.append("objectClass: top\n");
+            newConfig.append("objectClass: ds-cfg-replication-domain\n");
+            newConfig.append("cn: ")
+                    .append(baseDN)
+                    .append('\n');
+            newConfig.append("ds-cfg-base-dn: ")
+                    .append(baseDN)
+                    .append('\n');
+            newConfig.append("ds-cfg-server-id: ")
+                    .append(serverId)
+                    .append('\n');
+            for (String replicationServer : replicationServers) {
+                newConfig.append("ds-cfg-replication-server: ")
+                        .append(replicationServer)
+                        .append('\n');
+            }
+        }
+        return newConfig.toString();
+    }
+
+    /**
+     * Retrieves the base DNs of the userRoot backend and of all additional
+     * backends from the given configuration file.
+     *
+     * @param configStr String containing the entire configuration file
+     * @param backends  the additional backends
+     * @return base DNs to replicate
+     */
+    static List<String> getReplicatedBaseDNs(String configStr, List<BackendDefinition> backends) {
+        List<String> baseDNs = new ArrayList<String>();
+        String userRootBaseDN = ConfigLDIF.getAttribute(configStr, USER_ROOT_DN,
+                "ds-cfg-base-dn");
+        if (userRootBaseDN != null) {
+            baseDNs.add(userRootBaseDN);
+        }
+        for (BackendDefinition definition : backends) {
+            baseDNs.add(definition.getBaseDN());
+        }
+        return baseDNs;
+    }
+
+    /**
+     * Escapes a value so it can be used as an RDN value in a DN.
+     *
+     * @param value the raw value
+     * @return the escaped value
+     */
+    private static String escapeRDNValue(String value) {
+        return value.replaceAll("([,+\"\\\\<>;=])", "\\\\$1");
+    }
+}
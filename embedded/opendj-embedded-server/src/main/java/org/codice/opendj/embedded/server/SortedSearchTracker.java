@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opends.server.api.Backend;
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult;
+import org.opends.server.api.plugin.PluginType;
+import org.opends.server.backends.jeb.BackendImpl;
+import org.opends.server.controls.ServerSideSortRequestControl;
+import org.opends.server.controls.VLVRequestControl;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.ResultCode;
+import org.opends.server.types.SearchScope;
+import org.opends.server.types.SortKey;
+import org.opends.server.types.operation.PostResponseSearchOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Internal plugin that counts the searches sent with a server-side sort or
+ * virtual list view control, grouped by the VLV index that would serve them:
+ * backend, base DN, scope, filter and sort order. Unlike the attribute index
+ * recommendations the filter values are kept, because a VLV index only
+ * serves searches with exactly its filter.
+ */
+class SortedSearchTracker extends InternalDirectoryServerPlugin {
+
+    /**
+     * Number of distinct searches kept; the least recently seen are dropped.
+     */
+    static final int MAX_SEARCHES = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SortedSearchTracker.class);
+
+    private final Map<String, SearchCount> searchCounts = new LinkedHashMap<String, SearchCount>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SearchCount> eldest) {
+            return size() > MAX_SEARCHES;
+        }
+    };
+
+    /**
+     * @param componentDN DN used to identify the plugin in logs
+     */
+    SortedSearchTracker(DN componentDN) {
+        super(componentDN, EnumSet.of(PluginType.POST_RESPONSE_SEARCH), false);
+    }
+
+    @Override
+    public PluginResult.PostResponse doPostResponse(PostResponseSearchOperation searchOperation) {
+        try {
+            ServerSideSortRequestControl sortControl = searchOperation.getRequestControl(
+                    ServerSideSortRequestControl.DECODER);
+            if (sortControl == null) {
+                if (searchOperation.getRequestControl(VLVRequestControl.DECODER) != null) {
+                    LOGGER.debug("Ignoring virtual list view search without a sort control.");
+                }
+                return PluginResult.PostResponse.continueOperationProcessing();
+            }
+            // only local database backends support VLV indexes
+            Backend backend = DirectoryServer.getBackend(searchOperation.getBaseDN());
+            if (!(backend instanceof BackendImpl)) {
+                return PluginResult.PostResponse.continueOperationProcessing();
+            }
+            StringBuilder sortOrder = new StringBuilder();
+            for (SortKey sortKey : sortControl.getSortOrder()
+                    .getSortKeys()) {
+                if (sortOrder.length() > 0) {
+                    sortOrder.append(' ');
+                }
+                sortOrder.append(sortKey.ascending() ? '+' : '-')
+                        .append(sortKey.getAttributeType()
+                                .getNameOrOID());
+            }
+            ResultCode resultCode = searchOperation.getResultCode();
+            record(backend.getBackendID(), searchOperation.getBaseDN()
+                            .toString(), toScope(searchOperation.getScope()),
+                    searchOperation.getFilter()
+                            .toString(), sortOrder.toString(),
+                    resultCode == ResultCode.ADMIN_LIMIT_EXCEEDED
+                            || resultCode == ResultCode.TIME_LIMIT_EXCEEDED);
+        } catch (DirectoryException de) {
+            LOGGER.debug("Could not read sort control of search.", de);
+        }
+        return PluginResult.PostResponse.continueOperationProcessing();
+    }
+
+    /**
+     * Counts one sorted search.
+     *
+     * @param backendId     backend holding the base DN
+     * @param baseDN        base DN of the search
+     * @param scope         VLV scope of the search, one of
+     *                      {@link VLVIndexDefinition#SCOPES}
+     * @param filter        filter of the search
+     * @param sortOrder     sort order in VLV index form, for example
+     *                      <code>+sn -givenName</code>
+     * @param limitExceeded true if the search exceeded a lookthrough or time
+     *                      limit
+     */
+    synchronized void record(String backendId, String baseDN, String scope, String filter,
+            String sortOrder, boolean limitExceeded) {
+        String key = backendId + "|" + baseDN + "|" + scope + "|" + sortOrder + "|" + filter;
+        SearchCount count = searchCounts.get(key);
+        if (count == null) {
+            try {
+                count = new SearchCount(new VLVIndexDefinition(backendId,
+                        "auto-" + String.format("%08x", key.toLowerCase()
+                                .hashCode()), baseDN, scope, sortOrder, filter));
+            } catch (LDAPException le) {
+                LOGGER.debug("Not tracking sorted search: {}", le.getMessage());
+                return;
+            }
+            searchCounts.put(key, count);
+        }
+        count.searches++;
+        count.limitExceeded += limitExceeded ? 1 : 0;
+    }
+
+    /**
+     * Ranks the VLV indexes that the tracked searches would have used, most
+     * frequently needed first.
+     *
+     * @return ranked VLV index recommendations
+     */
+    synchronized List<VLVIndexRecommendation> getRecommendations() {
+        List<VLVIndexRecommendation> recommendations = new ArrayList<VLVIndexRecommendation>();
+        for (SearchCount count : searchCounts.values()) {
+            recommendations.add(new VLVIndexRecommendation(count.definition, count.searches,
+                    count.limitExceeded));
+        }
+        Collections.sort(recommendations, new Comparator<VLVIndexRecommendation>() {
+            @Override
+            public int compare(VLVIndexRecommendation first, VLVIndexRecommendation second) {
+                return Long.compare(second.getSearchCount(), first.getSearchCount());
+            }
+        });
+        return recommendations;
+    }
+
+    /**
+     * Clears all collected counts.
+     */
+    synchronized void reset() {
+        searchCounts.clear();
+    }
+
+    /**
+     * @param scope a search scope
+     * @return the matching VLV index scope
+     */
+    static String toScope(SearchScope scope) {
+        switch (scope) {
+        case BASE_OBJECT:
+            return "base-object";
+        case SINGLE_LEVEL:
+            return "single-level";
+        case SUBORDINATE_SUBTREE:
+            return "subordinate-subtree";
+        default:
+            return "whole-subtree";
+        }
+    }
+
+    /**
+     * Number of times one search was seen, with the VLV index that serves it.
+     */
+    private static class SearchCount {
+
+        private final VLVIndexDefinition definition;
+
+        private long searches;
+
+        private long limitExceeded;
+
+        SearchCount(VLVIndexDefinition definition) {
+            this.definition = definition;
+        }
+    }
+}
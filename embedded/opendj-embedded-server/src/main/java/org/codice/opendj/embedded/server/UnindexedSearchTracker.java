@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.codice.opendj.embedded.server.admin.IndexRecommendation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows the server access log and counts, per filter shape, the searches
+ * that were unindexed or that exceeded an index entry or lookthrough limit.
+ * Filter shapes have their assertion values removed so that searches which
+ * only differ by value are counted together, for example
+ * <code>(&amp;(objectclass=?)(mail=*?*))</code>.
+ */
+class UnindexedSearchTracker {
+
+    private static final int MAX_PENDING_REQUESTS = 10000;
+
+    static final int MAX_SHAPES = 1000;
+
+    private static final String ADMIN_LIMIT_EXCEEDED = "11";
+
+    private static final Pattern SEARCH_REQUEST = Pattern.compile(
+            "\\sSEARCH REQ conn=(-?\\d+) op=(\\d+)\\s.*?\\sfilter=\"(.*)\"\\s+attrs=");
+
+    private static final Pattern SEARCH_RESULT = Pattern.compile(
+            "\\sSEARCH RES conn=(-?\\d+) op=(\\d+)\\s.*?\\sresult=(\\d+)");
+
+    private static final Pattern UNINDEXED = Pattern.compile("unindexed",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern FILTER_COMPONENT = Pattern.compile(
+            "\\(([^()=~<>!&|]+)(~=|>=|<=|=)([^()]*)\\)");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnindexedSearchTracker.class);
+
+    private final File accessLog;
+
+    private long offset = 0;
+
+    private final Map<String, String> pendingFilters = new LinkedHashMap<String, String>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_PENDING_REQUESTS;
+        }
+    };
+
+    private final Map<String, long[]> shapeCounts = new LinkedHashMap<String, long[]>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_SHAPES;
+        }
+    };
+
+    /**
+     * @param accessLog the access log file written by the server
+     */
+    UnindexedSearchTracker(File accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * Reads the access log lines written since the last scan. Restarts from
+     * the beginning of the file when it has been rotated.
+     */
+    synchronized void scan() {
+        if (!accessLog.isFile()) {
+            return;
+        }
+        RandomAccessFile file = null;
+        InputStream logStream = null;
+        try {
+            file = new RandomAccessFile(accessLog, "r");
+            if (file.length() < offset) {
+                LOGGER.debug("Access log {} was rotated, reading from the start.", accessLog);
+                offset = 0;
+            }
+            file.seek(offset);
+            logStream = new BufferedInputStream(Channels.newInputStream(file.getChannel()));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int read;
+            while ((read = logStream.read()) != -1) {
+                if (read == '\n') {
+                    offset += line.size() + 1;
+                    processLine(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                    line.reset();
+                } else {
+                    line.write(read);
+                }
+            }
+            // a partial last line is read again on the next scan
+        } catch (IOException ioe) {
+            LOGGER.warn("Could not read access log {}", accessLog, ioe);
+        } finally {
+            IOUtils.closeQuietly(logStream);
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Matches a search request with its result and counts it if it was
+     * unindexed or exceeded a limit.
+     *
+     * @param line one line of the access log
+     */
+    void processLine(String line) {
+        Matcher request = SEARCH_REQUEST.matcher(line);
+        if (request.find()) {
+            pendingFilters.put(request.group(1) + " " + request.group(2), request.group(3));
+            return;
+        }
+        Matcher result = SEARCH_RESULT.matcher(line);
+        if (result.find()) {
+            String filter = pendingFilters.remove(result.group(1) + " " + result.group(2));
+            if (filter == null) {
+                return;
+            }
+            boolean unindexed = UNINDEXED.matcher(line)
+                    .find();
+            boolean limitExceeded = ADMIN_LIMIT_EXCEEDED.equals(result.group(3));
+            if (unindexed || limitExceeded) {
+                String shape = toShape(filter);
+                long[] counts = shapeCounts.get(shape);
+                if (counts == null) {
+                    counts = new long[2];
+                    shapeCounts.put(shape, counts);
+                }
+                counts[0] += unindexed ? 1 : 0;
+                counts[1] += limitExceeded ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Removes the assertion values from a search filter. Presence components
+     * keep their <code>*</code>, substring components become
+     * <code>*?*</code> and all other values become <code>?</code>.
+     *
+     * @param filter string representation of a search filter
+     * @return the filter shape
+     */
+    static String toShape(String filter) {
+        Matcher component = FILTER_COMPONENT.matcher(filter);
+        StringBuffer shape = new StringBuffer();
+        while (component.find()) {
+            String value = component.group(3);
+            String shapeValue;
+            if ("*".equals(value)) {
+                shapeValue = "*";
+            } else if (value.contains("*") && "=".equals(component.group(2))) {
+                shapeValue = "*?*";
+            } else {
+                shapeValue = "?";
+            }
+            component.appendReplacement(shape, Matcher.quoteReplacement(
+                    "(" + component.group(1)
+                            .trim()
+                            .toLowerCase() + component.group(2) + shapeValue + ")"));
+        }
+        component.appendTail(shape);
+        return shape.toString();
+    }
+
+    /**
+     * @return per filter shape, the number of unindexed searches and the number
+     * of searches that exceeded an index entry or lookthrough limit
+     */
+    synchronized Map<String, long[]> getShapeCounts() {
+        Map<String, long[]> copy = new HashMap<String, long[]>();
+        for (Map.Entry<String, long[]> entry : shapeCounts.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue()
+                    .clone());
+        }
+        return copy;
+    }
+
+    /**
+     * Ranks the indexes that the tracked searches would have used, most
+     * frequently needed first.
+     *
+     * @return ranked index recommendations
+     */
+    synchronized List<IndexRecommendation> getRecommendations() {
+        Map<String, long[]> totals = new HashMap<String, long[]>();
+        Map<String, String> examples = new HashMap<String, String>();
+        for (Map.Entry<String, long[]> entry : shapeCounts.entrySet()) {
+            long count = entry.getValue()[0] + entry.getValue()[1];
+            Matcher component = FILTER_COMPONENT.matcher(entry.getKey());
+            while (component.find()) {
+                String attribute = component.group(1);
+                String indexType = toIndexType(component.group(2), component.group(3));
+                if (attribute.contains(":") || ("presence".equals(indexType)
+                        && "objectclass".equals(attribute))) {
+                    // extensible matches and (objectclass=*) cannot use an attribute index
+                    continue;
+                }
+                String key = attribute + " " + indexType;
+                long[] total = totals.get(key);
+                if (total == null) {
+                    total = new long[1];
+                    totals.put(key, total);
+                    examples.put(key, entry.getKey());
+                }
+                total[0] += count;
+            }
+        }
+
+        List<IndexRecommendation> recommendations = new ArrayList<IndexRecommendation>();
+        for (Map.Entry<String, long[]> total : totals.entrySet()) {
+            String[] key = total.getKey()
+                    .split(" ");
+            recommendations.add(new IndexRecommendation(key[0], key[1], total.getValue()[0],
+                    examples.get(total.getKey())));
+        }
+        Collections.sort(recommendations, new Comparator<IndexRecommendation>() {
+            @Override
+            public int compare(IndexRecommendation first, IndexRecommendation second) {
+                return Long.compare(second.getSearchCount(), first.getSearchCount());
+            }
+        });
+        return recommendations;
+    }
+
+    /**
+     * Clears all collected counts.
+     */
+    synchronized void reset() {
+        shapeCounts.clear();
+    }
+
+    private static String toIndexType(String operator, String shapeValue) {
+        if ("~=".equals(operator)) {
+            return "approximate";
+        } else if (">=".equals(operator) || "<=".equals(operator)) {
+            return "ordering";
+        } else if ("*".equals(shapeValue)) {
+            return "presence";
+        } else if ("*?*".equals(shapeValue)) {
+            return "substring";
+        }
+        return "equality";
+    }
+}
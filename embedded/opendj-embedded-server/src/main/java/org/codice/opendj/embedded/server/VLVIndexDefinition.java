@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Describes a VLV index of a local database backend. A VLV index keeps the
+ * entries matching one search, identified by base DN, scope and filter, in
+ * one sort order so that sorted and virtual list view searches do not have to
+ * sort the candidates for every request. Definitions are stored one per line
+ * in the form <code>backendId|name|baseDN|scope|sortOrder|filter</code>; the
+ * filter comes last because it may contain the separator.
+ */
+public class VLVIndexDefinition {
+
+    /**
+     * Search scopes supported by VLV indexes.
+     */
+    public static final List<String> SCOPES = Arrays.asList("base-object", "single-level",
+            "subordinate-subtree", "whole-subtree");
+
+    private static final String SEPARATOR = "|";
+
+    private static final Pattern NAME = Pattern.compile("[\\w.-]+");
+
+    private static final Pattern SORT_KEY = Pattern.compile("[+-]?[\\w.;-]+");
+
+    private String backendId;
+
+    private String name;
+
+    private String baseDN;
+
+    private String scope;
+
+    private String sortOrder;
+
+    private String filter;
+
+    /**
+     * Creates a new VLV index definition.
+     *
+     * @param backendId id of the backend the index belongs to
+     * @param name      name of the index, letters, digits, '.', '-' and '_'
+     * @param baseDN    base DN of the indexed search
+     * @param scope     one of {@link #SCOPES}
+     * @param sortOrder space separated attribute names, each optionally
+     *                  prefixed with '+' for ascending or '-' for descending
+     * @param filter    filter of the indexed search
+     * @throws LDAPException if a value is missing or invalid
+     */
+    public VLVIndexDefinition(String backendId, String name, String baseDN, String scope,
+            String sortOrder, String filter) throws LDAPException {
+        if (StringUtils.isBlank(backendId) || StringUtils.isBlank(name) || StringUtils.isBlank(
+                baseDN) || StringUtils.isBlank(sortOrder) || StringUtils.isBlank(filter)) {
+            throw new LDAPException(
+                    "VLV index definitions need a backend id, name, base DN, sort order and filter.");
+        }
+        if (!NAME.matcher(name.trim())
+                .matches()) {
+            throw new LDAPException("Invalid VLV index name " + name);
+        }
+        String trimmedScope = StringUtils.trimToEmpty(scope)
+                .toLowerCase();
+        if (!SCOPES.contains(trimmedScope)) {
+            throw new LDAPException(
+                    "Unsupported scope " + scope + " for VLV index " + name + ", expected one of "
+                            + SCOPES);
+        }
+        for (String sortKey : StringUtils.split(sortOrder)) {
+            if (!SORT_KEY.matcher(sortKey)
+                    .matches()) {
+                throw new LDAPException(
+                        "Invalid sort key " + sortKey + " for VLV index " + name);
+            }
+        }
+        this.backendId = backendId.trim();
+        this.name = name.trim();
+        this.baseDN = baseDN.trim();
+        this.scope = trimmedScope;
+        this.sortOrder = StringUtils.join(StringUtils.split(sortOrder), ' ');
+        this.filter = filter.trim();
+    }
+
+    /**
+     * Parses a VLV index definition from its stored form.
+     *
+     * @param definition definition in the form
+     *                   <code>backendId|name|baseDN|scope|sortOrder|filter</code>
+     * @return the parsed definition
+     * @throws LDAPException if the definition is malformed
+     */
+    static VLVIndexDefinition parse(String definition) throws LDAPException {
+        String[] parts = StringUtils.splitPreserveAllTokens(definition, SEPARATOR, 6);
+        if (parts.length != 6) {
+            throw new LDAPException("Invalid VLV index definition '" + definition
+                    + "', expected backendId" + SEPARATOR + "name" + SEPARATOR + "baseDN"
+                    + SEPARATOR + "scope" + SEPARATOR + "sortOrder" + SEPARATOR + "filter");
+        }
+        return new VLVIndexDefinition(parts[0], parts[1], parts[2], parts[3], parts[4],
+                parts[5]);
+    }
+
+    public String getBackendId() {
+        return backendId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBaseDN() {
+        return baseDN;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public String getSortOrder() {
+        return sortOrder;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the name the rebuild task uses for this index
+     */
+    String getRebuildName() {
+        return "vlv." + name;
+    }
+
+    /**
+     * @return the DN of the configuration entry of this index
+     */
+    String getConfigDN() {
+        return "ds-cfg-name=" + name + ",cn=VLV Index,ds-cfg-backend-id=" + backendId
+                + ",cn=Backends,cn=config";
+    }
+
+    /**
+     * @return the configuration entry of this index as LDIF
+     */
+    String toLDIF() {
+        return "dn: " + getConfigDN() + "\n" + "objectClass: top\n"
+                + "objectClass: ds-cfg-local-db-vlv-index\n" + "ds-cfg-name: " + name + "\n"
+                + "ds-cfg-base-dn: " + baseDN + "\n" + "ds-cfg-scope: " + scope + "\n"
+                + "ds-cfg-filter: " + filter + "\n" + "ds-cfg-sort-order: " + sortOrder + "\n";
+    }
+
+    /**
+     * Adds this index to the given configuration file unless an index with the
+     * same name already exists.
+     *
+     * @param configStr String containing the entire configuration file
+     * @return The configuration file as a string with the index added to it.
+     */
+    String applyTo(String configStr) {
+        if (Pattern.compile("(?mi)^dn: " + Pattern.quote(getConfigDN()) + "\\s*$")
+                .matcher(configStr)
+                .find()) {
+            return configStr;
+        }
+        return configStr.trim() + "\n\n" + toLDIF();
+    }
+
+    /**
+     * @param other another definition
+     * @return true if both index the same search in the same order, whatever
+     * their names
+     */
+    boolean isSameIndex(VLVIndexDefinition other) {
+        return backendId.equalsIgnoreCase(other.backendId) && baseDN.equalsIgnoreCase(
+                other.baseDN) && scope.equals(other.scope) && sortOrder.equalsIgnoreCase(
+                other.sortOrder) && filter.equalsIgnoreCase(other.filter);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VLVIndexDefinition)) {
+            return false;
+        }
+        return toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return backendId + SEPARATOR + name + SEPARATOR + baseDN + SEPARATOR + scope + SEPARATOR
+                + sortOrder + SEPARATOR + filter;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+/**
+ * A suggested VLV index, ranked by the number of sorted or virtual list view
+ * searches that would have used it.
+ */
+public class VLVIndexRecommendation {
+
+    private VLVIndexDefinition definition;
+
+    private long searchCount;
+
+    private long limitExceededCount;
+
+    VLVIndexRecommendation(VLVIndexDefinition definition, long searchCount,
+            long limitExceededCount) {
+        this.definition = definition;
+        this.searchCount = searchCount;
+        this.limitExceededCount = limitExceededCount;
+    }
+
+    public VLVIndexDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * @return number of tracked searches that would have used this index
+     */
+    public long getSearchCount() {
+        return searchCount;
+    }
+
+    /**
+     * @return number of those searches that exceeded a lookthrough, size or
+     * time limit
+     */
+    public long getLimitExceededCount() {
+        return limitExceededCount;
+    }
+
+    @Override
+    public String toString() {
+        return definition + " (" + searchCount + " searches, " + limitExceededCount
+                + " exceeded a limit)";
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.Map;
+
+/**
+ * Admission control statistics of the embedded directory server. Registered
+ * as an OSGi service while the server is running.
+ */
+public interface DirectoryAdmission {
+
+    /**
+     * Retrieves the admission control counters (admitted requests, requests
+     * rejected by the rate limit and the subtree search limit, running
+     * subtree searches) together with the work queue monitor statistics.
+     *
+     * @return map of statistic name to value, empty if the server is not
+     * running
+     * @throws DirectoryServiceException if the work queue statistics could
+     *                                   not be read
+     */
+    Map<String, String> getAdmissionStatistics() throws DirectoryServiceException;
+}
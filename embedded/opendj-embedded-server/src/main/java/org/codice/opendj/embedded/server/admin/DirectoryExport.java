@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.io.OutputStream;
+
+/**
+ * Online LDIF export of the embedded directory server. Registered as an OSGi
+ * service while the server is running.
+ */
+public interface DirectoryExport {
+
+    /**
+     * Writes the entries of a backend, or of a subtree of it, to a stream as
+     * LDIF while the server stays online. A slow stream slows the export down
+     * instead of buffering entries.
+     *
+     * @param baseDN     base DN of the subtree to export, or null to export
+     *                   the whole userRoot backend
+     * @param ldifStream stream to write to, it is not closed
+     * @param compress   true to gzip compress the LDIF
+     * @throws DirectoryServiceException if no backend holds the base DN or
+     *                                   the export failed
+     */
+    void exportLDIF(String baseDN, OutputStream ldifStream, boolean compress)
+            throws DirectoryServiceException;
+
+    /**
+     * Exports the entries of a backend, or of a subtree of it, like
+     * {@link #exportLDIF(String, OutputStream, boolean)} and returns them one
+     * at a time. The cursor must be closed; until then the backend cannot be
+     * imported into or restored.
+     *
+     * @param baseDN base DN of the subtree to export, or null to export the
+     *               whole userRoot backend
+     * @return cursor over the exported entries
+     * @throws DirectoryServiceException if no backend holds the base DN
+     */
+    LDIFCursor openLDIFCursor(String baseDN) throws DirectoryServiceException;
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.List;
+
+/**
+ * LDIF import history of the embedded directory server. Registered as an OSGi
+ * service while the server is running.
+ */
+public interface DirectoryImports {
+
+    /**
+     * @return the LDIF files imported since the server was installed, oldest
+     * first. Only the most recent imports are kept.
+     */
+    List<LDIFImportRecord> getLDIFImportHistory();
+}
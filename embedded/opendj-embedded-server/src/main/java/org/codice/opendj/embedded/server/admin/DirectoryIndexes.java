@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.List;
+
+/**
+ * Index administration of the embedded directory server. Registered as an
+ * OSGi service while the server is running.
+ */
+public interface DirectoryIndexes {
+
+    /**
+     * Builds a report of the attribute indexes that would have served the
+     * unindexed and limit-exceeded searches seen since the server started.
+     *
+     * @return index recommendations, most frequently needed first
+     */
+    List<IndexRecommendation> getIndexRecommendations();
+
+    /**
+     * Adds an attribute index to a running backend and builds it in the
+     * background. The index is kept when the server configuration is
+     * regenerated.
+     *
+     * @param definition index in the form
+     *                   <code>backendId|attribute|indexType[,indexType]</code>,
+     *                   for example <code>userRoot|mail|equality,substring</code>
+     * @throws DirectoryServiceException if the definition is malformed, the
+     *                                   server is not running or the index
+     *                                   could not be added
+     */
+    void createIndex(String definition) throws DirectoryServiceException;
+
+    /**
+     * Adds a VLV index to a running backend and builds it in the background.
+     * Sorted searches keep sorting in memory until it is built. The index is
+     * kept when the server configuration is regenerated.
+     *
+     * @param definition VLV index in the form of the VLV index settings,
+     *                   <code>backendId|name|baseDN|scope|sortOrder|filter</code>
+     * @throws DirectoryServiceException if the definition is malformed, the
+     *                                   server is not running or the index
+     *                                   could not be added
+     */
+    void createVLVIndex(String definition) throws DirectoryServiceException;
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.Set;
+
+/**
+ * Static group membership lookups of the embedded directory server, answered
+ * from an in-memory index. Registered as an OSGi service while the server is
+ * running.
+ */
+public interface DirectoryMembership {
+
+    /**
+     * Checks whether an entry is a member of a static group, directly or
+     * through groups nested in it, without reading the group.
+     *
+     * @param memberDN DN of a possible member
+     * @param groupDN  DN of a groupOfNames, groupOfUniqueNames or
+     *                 groupOfEntries group
+     * @return true if the entry is a member of the group
+     * @throws DirectoryServiceException if the membership index is disabled
+     *                                   or a DN is invalid
+     */
+    boolean isMemberOf(String memberDN, String groupDN) throws DirectoryServiceException;
+
+    /**
+     * Retrieves the static groups an entry is a member of, directly or
+     * through nested groups.
+     *
+     * @param memberDN DN of a possible member
+     * @return normalized DNs of the groups
+     * @throws DirectoryServiceException if the membership index is disabled
+     *                                   or the DN is invalid
+     */
+    Set<String> getGroupMembership(String memberDN) throws DirectoryServiceException;
+
+    /**
+     * Reads all static groups into the membership index again, for example
+     * after a replica initialization. Lookups are answered from the previous
+     * index until the new one is complete.
+     *
+     * @throws DirectoryServiceException if the index is disabled or the
+     *                                   groups could not be read
+     */
+    void rebuildMembershipIndex() throws DirectoryServiceException;
+}
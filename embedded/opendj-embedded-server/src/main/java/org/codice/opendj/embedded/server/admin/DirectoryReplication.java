@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.Map;
+
+/**
+ * Replication administration of the embedded directory server. Registered as
+ * an OSGi service while the server is running.
+ */
+public interface DirectoryReplication {
+
+    /**
+     * Replaces the data of every replicated base DN with a copy from another
+     * node. The copy is made by a background task; the base DNs are not
+     * available on this node until it completes.
+     *
+     * @param sourceServerId replication server id of the node to copy from
+     * @throws DirectoryServiceException if replication is disabled or the
+     *                                   task could not be scheduled
+     */
+    void initializeReplicationFrom(int sourceServerId) throws DirectoryServiceException;
+
+    /**
+     * Retrieves the replication monitor entries of this node, for example the
+     * connected replication server, missing changes and approximate delay of
+     * each replicated base DN.
+     *
+     * @return map of monitor entry DN to its attributes
+     * @throws DirectoryServiceException if the monitor entries could not be
+     *                                   read
+     */
+    Map<String, Map<String, String>> getReplicationStatus() throws DirectoryServiceException;
+}
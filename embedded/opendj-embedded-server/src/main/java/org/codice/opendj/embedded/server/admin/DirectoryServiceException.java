@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+/**
+ * Thrown by the administration services of the embedded directory server when
+ * a request could not be carried out, for example because the server is not
+ * running.
+ */
+public class DirectoryServiceException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public DirectoryServiceException() {
+        super();
+    }
+
+    public DirectoryServiceException(String message) {
+        super(message);
+    }
+
+    public DirectoryServiceException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+
+    public DirectoryServiceException(Throwable throwable) {
+        super(throwable);
+    }
+}
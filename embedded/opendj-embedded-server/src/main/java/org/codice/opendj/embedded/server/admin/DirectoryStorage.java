@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.Map;
+
+/**
+ * Storage statistics of the local database backends of the embedded directory
+ * server. Registered as an OSGi service while the server is running.
+ */
+public interface DirectoryStorage {
+
+    /**
+     * Retrieves the storage statistics of a local database backend: the number
+     * of entries it holds and the statistics of its JE environment, such as
+     * the cache and log sizes and cache misses.
+     *
+     * @param backendId id of a local database backend
+     * @return map of statistic name to value, empty if the server is not
+     * running
+     * @throws DirectoryServiceException if the backend does not exist or its
+     *                                   statistics could not be read
+     */
+    Map<String, String> getStorageStatistics(String backendId)
+            throws DirectoryServiceException;
+
+    /**
+     * Retrieves the durability mode of the local database backends, the
+     * latency of the writes acknowledged since the server started, the group
+     * commit syncs and the log sync statistics of the userRoot JE
+     * environment.
+     *
+     * @return map of statistic name to value, only the mode if the server is
+     * not running
+     * @throws DirectoryServiceException if the environment statistics could
+     *                                   not be read
+     */
+    Map<String, String> getDurabilityStatistics() throws DirectoryServiceException;
+}
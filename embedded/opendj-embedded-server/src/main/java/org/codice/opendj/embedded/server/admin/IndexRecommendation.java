@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+/**
+ * A suggested attribute index, ranked by the number of unindexed or
+ * limit-exceeded searches whose filters would have used it.
+ */
+public class IndexRecommendation {
+
+    private String attribute;
+
+    private String indexType;
+
+    private long searchCount;
+
+    private String exampleFilter;
+
+    public IndexRecommendation(String attribute, String indexType, long searchCount,
+            String exampleFilter) {
+        this.attribute = attribute;
+        this.indexType = indexType;
+        this.searchCount = searchCount;
+        this.exampleFilter = exampleFilter;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public String getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * @return number of tracked searches that would have used this index
+     */
+    public long getSearchCount() {
+        return searchCount;
+    }
+
+    /**
+     * @return the shape of one of the filters that would have used this index
+     */
+    public String getExampleFilter() {
+        return exampleFilter;
+    }
+
+    @Override
+    public String toString() {
+        return attribute + " " + indexType + " (" + searchCount + " searches, e.g. "
+                + exampleFilter + ")";
+    }
+}
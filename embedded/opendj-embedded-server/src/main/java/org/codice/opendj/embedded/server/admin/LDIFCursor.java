@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.io.Closeable;
+
+/**
+ * Reads the entries of an LDIF export one at a time. The export only runs
+ * ahead of the reader by a small buffer and is stopped when the cursor is
+ * closed.
+ */
+public interface LDIFCursor extends Closeable {
+
+    /**
+     * Reads the next entry, waiting for the export if necessary.
+     *
+     * @return the next entry as LDIF, or null if all entries were read
+     * @throws DirectoryServiceException if the export failed or the cursor
+     *                                   is closed
+     */
+    String next() throws DirectoryServiceException;
+
+    /**
+     * Stops the export if it is still running.
+     */
+    @Override
+    void close();
+}
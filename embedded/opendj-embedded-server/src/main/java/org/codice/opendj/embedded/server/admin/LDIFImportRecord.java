@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import java.util.Date;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Metadata of one LDIF import. Records are stored one per line in the form
+ * <code>time|digest|size|lastModified|imported|rejected|duration|successful|source</code>
+ * so that an unchanged LDIF file can be recognized and skipped later on.
+ */
+public class LDIFImportRecord {
+
+    private static final String SEPARATOR = "|";
+
+    private static final int FIELD_COUNT = 9;
+
+    private long importTime;
+
+    private String digest;
+
+    private long size;
+
+    private long lastModified;
+
+    private long entriesImported;
+
+    private long entriesRejected;
+
+    private long durationMillis;
+
+    private boolean successful;
+
+    private String source;
+
+    public LDIFImportRecord(long importTime, String digest, long size, long lastModified,
+            long entriesImported, long entriesRejected, long durationMillis, boolean successful,
+            String source) {
+        this.importTime = importTime;
+        this.digest = digest;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.entriesImported = entriesImported;
+        this.entriesRejected = entriesRejected;
+        this.durationMillis = durationMillis;
+        this.successful = successful;
+        this.source = source;
+    }
+
+    /**
+     * Parses an import record from its stored form.
+     *
+     * @param record record as written by {@link #toString()}
+     * @return the parsed record
+     * @throws DirectoryServiceException if the record is malformed
+     */
+    public static LDIFImportRecord parse(String record) throws DirectoryServiceException {
+        String[] parts = StringUtils.splitPreserveAllTokens(record, SEPARATOR, FIELD_COUNT);
+        if (parts.length != FIELD_COUNT) {
+            throw new DirectoryServiceException("Invalid LDIF import record '" + record + "'");
+        }
+        try {
+            return new LDIFImportRecord(Long.parseLong(parts[0]), parts[1],
+                    Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]),
+                    Long.parseLong(parts[5]), Long.parseLong(parts[6]),
+                    Boolean.parseBoolean(parts[7]), parts[8]);
+        } catch (NumberFormatException nfe) {
+            throw new DirectoryServiceException("Invalid LDIF import record '" + record + "'",
+                    nfe);
+        }
+    }
+
+    /**
+     * @return true if the given file attributes are those of the source of
+     * this record, so that the file can be assumed to have the same digest
+     * without reading it
+     */
+    public boolean isSameFile(String otherSource, long otherSize, long otherLastModified) {
+        return source.equals(otherSource) && size == otherSize && otherLastModified > 0
+                && lastModified == otherLastModified;
+    }
+
+    /**
+     * @return time the import was started
+     */
+    public Date getImportTime() {
+        return new Date(importTime);
+    }
+
+    /**
+     * @return hex encoded SHA-256 digest of the imported file
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getEntriesImported() {
+        return entriesImported;
+    }
+
+    public long getEntriesRejected() {
+        return entriesRejected;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return false if the import failed, in which case the backend may not
+     * contain the entries of the file
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtils.join(new Object[] {importTime, digest, size, lastModified,
+                entriesImported, entriesRejected, durationMillis, successful, source}, SEPARATOR);
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.health;
+
+import java.util.List;
+
+/**
+ * Health of the embedded directory server, based on synthetic requests that
+ * are sent to it regularly. Registered as an OSGi service while the server is
+ * running; the service properties contain the current state under
+ * {@link #STATE_PROPERTY} so that consumers can filter on it.
+ */
+public interface DirectoryHealth {
+
+    /**
+     * Service property holding the name of the current {@link HealthState}.
+     */
+    String STATE_PROPERTY = "health.state";
+
+    /**
+     * @return the current state, derived from the recent probe results and the
+     * configured thresholds
+     */
+    HealthState getState();
+
+    /**
+     * @return the recent results of each probe
+     */
+    List<ProbeStatus> getProbeStatuses();
+}
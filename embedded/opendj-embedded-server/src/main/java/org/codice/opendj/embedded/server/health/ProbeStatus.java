@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.health;
+
+/**
+ * Rolling results of one health probe, for example a bind and search through
+ * the LDAP listener.
+ */
+public class ProbeStatus {
+
+    private String name;
+
+    private int sampleCount;
+
+    private double successRate;
+
+    private long averageLatencyMillis;
+
+    private long maxLatencyMillis;
+
+    private String lastError;
+
+    public ProbeStatus(String name, int sampleCount, double successRate,
+            long averageLatencyMillis, long maxLatencyMillis, String lastError) {
+        this.name = name;
+        this.sampleCount = sampleCount;
+        this.successRate = successRate;
+        this.averageLatencyMillis = averageLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.lastError = lastError;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of probe runs the other values are computed from
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return percentage of successful probe runs, from 0 to 100
+     */
+    public double getSuccessRate() {
+        return successRate;
+    }
+
+    /**
+     * @return average latency of the successful probe runs
+     */
+    public long getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    /**
+     * @return highest latency of the successful probe runs
+     */
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * @return message of the most recent failure, or null if there was none
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + successRate + "% of " + sampleCount + " succeeded, average "
+                + averageLatencyMillis + " ms, max " + maxLatencyMillis + " ms" + (
+                lastError == null ? "" : ", last error: " + lastError);
+    }
+}
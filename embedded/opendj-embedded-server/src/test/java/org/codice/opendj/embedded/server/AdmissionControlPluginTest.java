@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opends.server.api.ClientConnection;
+import org.opends.server.types.DN;
+
+public class AdmissionControlPluginTest {
+
+    @Test
+    public void TestRateLimit() {
+        AdmissionControlPlugin plugin = new AdmissionControlPlugin(DN.nullDN(), 10, 2, 0);
+        long now = 0;
+        assertTrue(plugin.tryAcquire("ip:10.0.0.1", now));
+        assertTrue(plugin.tryAcquire("ip:10.0.0.1", now));
+        assertFalse(plugin.tryAcquire("ip:10.0.0.1", now));
+        // other clients have their own bucket
+        assertTrue(plugin.tryAcquire("ip:10.0.0.2", now));
+
+        // one token is added every 100 ms at 10 requests per second
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertTrue(plugin.tryAcquire("ip:10.0.0.1", now));
+        assertFalse(plugin.tryAcquire("ip:10.0.0.1", now));
+
+        // tokens do not accumulate above the burst size
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertTrue(plugin.tryAcquire("ip:10.0.0.1", now));
+        assertTrue(plugin.tryAcquire("ip:10.0.0.1", now));
+        assertFalse(plugin.tryAcquire("ip:10.0.0.1", now));
+    }
+
+    @Test
+    public void TestNoRateLimit() {
+        AdmissionControlPlugin plugin = new AdmissionControlPlugin(DN.nullDN(), 0, 1, 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(plugin.tryAcquire("ip:10.0.0.1", 0));
+        }
+    }
+
+    @Test
+    public void TestScanLimit() {
+        AdmissionControlPlugin plugin = new AdmissionControlPlugin(DN.nullDN(), 0, 1, 2) {
+            @Override
+            boolean isInProgress(ClientConnection connection, int messageID) {
+                return true;
+            }
+        };
+        assertTrue(plugin.tryStartScan(1, 1, null));
+        assertTrue(plugin.tryStartScan(1, 2, null));
+        assertFalse(plugin.tryStartScan(2, 1, null));
+        assertEquals(2L, (long) plugin.getStatistics()
+                .get("activeScans"));
+
+        plugin.endScan(1, 1);
+        assertTrue(plugin.tryStartScan(2, 1, null));
+        // searches that did not get a slot do not free one
+        plugin.endScan(3, 1);
+        assertFalse(plugin.tryStartScan(3, 2, null));
+    }
+
+    @Test
+    public void TestAbandonedScan() {
+        final Set<Integer> inProgress = new HashSet<Integer>();
+        AdmissionControlPlugin plugin = new AdmissionControlPlugin(DN.nullDN(), 0, 1, 1) {
+            @Override
+            boolean isInProgress(ClientConnection connection, int messageID) {
+                return inProgress.contains(messageID);
+            }
+        };
+        inProgress.add(1);
+        assertTrue(plugin.tryStartScan(1, 1, null));
+        inProgress.add(2);
+        assertFalse(plugin.tryStartScan(1, 2, null));
+
+        // abandoned searches never get a response, their slot is reclaimed
+        inProgress.remove(1);
+        assertTrue(plugin.tryStartScan(1, 2, null));
+        assertEquals(1L, (long) plugin.getStatistics()
+                .get("activeScans"));
+
+        // a late response for the abandoned search does not free the new slot
+        plugin.endScan(1, 1);
+        assertFalse(plugin.tryStartScan(1, 3, null));
+    }
+}
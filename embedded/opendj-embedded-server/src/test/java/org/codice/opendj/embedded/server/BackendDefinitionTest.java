@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BackendDefinitionTest {
+
+    private static final String USER_ROOT_CONFIG =
+            "dn: ds-cfg-backend-id=userRoot,cn=Backends,cn=config\n"
+                    + "ds-cfg-db-directory: db\n" + "ds-cfg-base-dn: dc=example,dc=com\n"
+                    + "ds-cfg-backend-id: userRoot\n" + "ds-cfg-db-cache-percent: 10\n\n"
+                    + "dn: ds-cfg-attribute=uid,cn=Index,ds-cfg-backend-id=userRoot,cn=Backends,cn=config\n"
+                    + "ds-cfg-attribute: uid\n";
+
+    @Test
+    public void TestParseMinimal() throws LDAPException {
+        BackendDefinition definition = BackendDefinition.parse("tenantA|dc=tenanta,dc=com");
+        assertEquals("tenantA", definition.getBackendId());
+        assertEquals("dc=tenanta,dc=com", definition.getBaseDN());
+        assertNull(definition.getCachePercent());
+        assertNull(definition.getDbDirectory());
+    }
+
+    @Test
+    public void TestParseFull() throws LDAPException {
+        BackendDefinition definition = BackendDefinition.parse(
+                " tenantA | dc=tenanta,dc=com | 5 | /data2/ldap ");
+        assertEquals("tenantA", definition.getBackendId());
+        assertEquals("5", definition.getCachePercent());
+        assertEquals("/data2/ldap", definition.getDbDirectory());
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseMissingBaseDN() throws LDAPException {
+        BackendDefinition.parse("tenantA");
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseReservedId() throws LDAPException {
+        BackendDefinition.parse("userRoot|dc=example,dc=com");
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseInvalidCachePercent() throws LDAPException {
+        BackendDefinition.parse("tenantA|dc=tenanta,dc=com|95");
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseUserRootOverlap() throws LDAPException {
+        BackendDefinition.parse("tenantA|ou=tenantA, DC=example,dc=com");
+    }
+
+    @Test
+    public void TestParseOverlap() throws LDAPException {
+        List<BackendDefinition> backends = new ArrayList<BackendDefinition>();
+        backends.add(BackendDefinition.parse("tenantA|dc=tenanta,dc=com", backends));
+        backends.add(BackendDefinition.parse("tenantB|dc=tenantb,dc=com", backends));
+        for (String definition : Arrays.asList("tenantC|dc=TenantA, dc=com",
+                "tenantC|ou=people,dc=tenantb,dc=com", "tenantC|dc=com",
+                "tenantA|dc=tenantc,dc=com")) {
+            try {
+                BackendDefinition.parse(definition, backends);
+                fail("Expected " + definition + " to be rejected");
+            } catch (LDAPException le) {
+                // expected
+            }
+        }
+        assertFalse(BackendDefinition.overlaps("dc=tenanta,dc=com", "dc=atenanta,dc=com"));
+    }
+
+    @Test
+    public void TestAllocateCachePercent() throws LDAPException {
+        assertEquals(Arrays.asList(10),
+                BackendDefinition.allocateCachePercent(10,
+                        Collections.<BackendDefinition>emptyList()));
+        assertEquals(Arrays.asList(3, 3, 5, 3), BackendDefinition.allocateCachePercent(10,
+                Arrays.asList(BackendDefinition.parse("a|dc=a"),
+                        BackendDefinition.parse("b|dc=b|5"), BackendDefinition.parse("c|dc=c"))));
+
+        List<Integer> capped = BackendDefinition.allocateCachePercent(10,
+                Arrays.asList(BackendDefinition.parse("a|dc=a|40"),
+                        BackendDefinition.parse("b|dc=b|40")));
+        int total = 0;
+        for (int percent : capped) {
+            assertTrue(percent >= 1);
+            total += percent;
+        }
+        assertTrue(total <= BackendDefinition.MAX_TOTAL_CACHE_PERCENT);
+        assertEquals(capped.get(1), capped.get(2));
+    }
+
+    @Test
+    public void TestCreateConfig() throws LDAPException {
+        String config = BackendDefinition.parse("tenantA|dc=tenanta,dc=com|5|/data2/ldap")
+                .createConfig(USER_ROOT_CONFIG, 5);
+        assertTrue(config.contains("dn: ds-cfg-backend-id=tenantA,cn=Backends,cn=config\n"));
+        assertTrue(config.contains(
+                "dn: ds-cfg-attribute=uid,cn=Index,ds-cfg-backend-id=tenantA,cn=Backends,cn=config\n"));
+        assertTrue(config.contains("ds-cfg-backend-id: tenantA\n"));
+        assertTrue(config.contains("ds-cfg-base-dn: dc=tenanta,dc=com\n"));
+        assertTrue(config.contains("ds-cfg-db-cache-percent: 5\n"));
+        assertTrue(config.contains("ds-cfg-db-directory: /data2/ldap\n"));
+        assertTrue(!config.contains("userRoot"));
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.opends.server.types.DN;
+
+public class CommitLatencyTrackerTest {
+
+    @Test
+    public void TestStatistics() {
+        CommitLatencyTracker tracker = new CommitLatencyTracker(DN.nullDN());
+        for (int i = 0; i < 98; i++) {
+            tracker.record(3000);
+        }
+        tracker.record(20000);
+        tracker.record(100000);
+
+        Map<String, Long> statistics = tracker.getStatistics();
+        assertEquals(100L, (long) statistics.get("commitCount"));
+        assertEquals(4140L, (long) statistics.get("commitLatencyAverageMicros"));
+        assertEquals(100000L, (long) statistics.get("commitLatencyMaxMicros"));
+        // 3000 us falls in the bucket below 4096 us
+        assertEquals(4096L, (long) statistics.get("commitLatencyP50Micros"));
+        assertEquals(32768L, (long) statistics.get("commitLatencyP99Micros"));
+    }
+
+    @Test
+    public void TestEmpty() {
+        CommitLatencyTracker tracker = new CommitLatencyTracker(DN.nullDN());
+        assertEquals(0L, (long) tracker.getStatistics()
+                .get("commitLatencyP99Micros"));
+        assertEquals(0L, (long) tracker.getStatistics()
+                .get("commitLatencyAverageMicros"));
+    }
+
+    @Test
+    public void TestOverflowBucket() {
+        CommitLatencyTracker tracker = new CommitLatencyTracker(DN.nullDN());
+        tracker.record(Long.MAX_VALUE / 2);
+        assertEquals(Long.MAX_VALUE / 2, tracker.getPercentile(50));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConfigLDIFTest {
+
+    private static final String CONFIG = "dn: cn=First,cn=config\nobjectClass: top\n"
+            + "ds-cfg-enabled: true\nds-cfg-value: one\n two\nds-cfg-value: three\ncn: First\n\n"
+            + "dn: cn=Second,cn=config\nobjectClass: top\ncn: Second\n";
+
+    @Test
+    public void TestReplaceAttribute() {
+        assertEquals("dn: cn=First,cn=config\nobjectClass: top\nds-cfg-enabled: true\n"
+                        + "ds-cfg-value: four\ncn: First\n\n"
+                        + "dn: cn=Second,cn=config\nobjectClass: top\ncn: Second\n",
+                ConfigLDIF.setAttribute(CONFIG, "cn=First,cn=config", "ds-cfg-value", "four"));
+    }
+
+    @Test
+    public void TestAddAttribute() {
+        String config = ConfigLDIF.setEnabled(CONFIG, "cn=Second,cn=config", false);
+        assertTrue(config.endsWith("cn: Second\nds-cfg-enabled: false\n"));
+        assertTrue(config.startsWith("dn: cn=First,cn=config\nobjectClass: top\n"
+                + "ds-cfg-enabled: true\n"));
+    }
+
+    @Test
+    public void TestAddValue() {
+        String config = ConfigLDIF.addValue(CONFIG, "cn=First,cn=config", "ds-cfg-value", "four");
+        assertTrue(config.startsWith("dn: cn=First,cn=config\nobjectClass: top\n"
+                + "ds-cfg-enabled: true\nds-cfg-value: one\n two\nds-cfg-value: three\n"
+                + "cn: First\nds-cfg-value: four\n\ndn: cn=Second,cn=config\n"));
+        // values that are present already are not added again
+        assertEquals(config,
+                ConfigLDIF.addValue(config, "cn=First,cn=config", "ds-cfg-value", "three"));
+    }
+
+    @Test
+    public void TestGetAttribute() {
+        assertEquals("true",
+                ConfigLDIF.getAttribute(CONFIG, "cn=First,cn=config", "ds-cfg-enabled"));
+        assertEquals("Second", ConfigLDIF.getAttribute(CONFIG, "cn=Second,cn=config", "cn"));
+        assertNull(ConfigLDIF.getAttribute(CONFIG, "cn=Second,cn=config", "ds-cfg-enabled"));
+        assertNull(ConfigLDIF.getAttribute(CONFIG, "cn=Third,cn=config", "cn"));
+    }
+
+    @Test
+    public void TestMissingEntry() {
+        assertEquals(CONFIG,
+                ConfigLDIF.setEnabled(CONFIG, "cn=Third,cn=config", false));
+        assertFalse(ConfigLDIF.hasEntry(CONFIG, "cn=Third,cn=config"));
+        assertTrue(ConfigLDIF.hasEntry(CONFIG, "cn=second,cn=config"));
+    }
+}
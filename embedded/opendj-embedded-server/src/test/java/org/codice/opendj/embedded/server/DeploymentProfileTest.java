@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class DeploymentProfileTest {
+
+    private static final String CONFIG_LOC = "/config/config.ldif";
+
+    private static final String SCHEMA_LOC = "/config/schema/";
+
+    @Test
+    public void TestStandardUnchanged() throws Exception {
+        String config = readConfig();
+        assertEquals(config, DeploymentProfile.STANDARD.applyTo(config, false));
+        assertTrue(DeploymentProfile.STANDARD.getExcludedSchemaFiles()
+                .isEmpty());
+    }
+
+    @Test
+    public void TestSmall() throws Exception {
+        String config = DeploymentProfile.fromName("Small")
+                .applyTo(readConfig(), false);
+        assertTrue(hasLines(config, "dn: ds-cfg-backend-id=backup,cn=Backends,cn=config",
+                "ds-cfg-enabled: false"));
+        assertTrue(hasLines(config, "dn: cn=Profiler,cn=Plugins,cn=config",
+                "ds-cfg-enabled: false"));
+        assertTrue(hasLines(config, "dn: cn=Change Number Control,cn=Plugins,cn=config",
+                "ds-cfg-enabled: false"));
+        assertTrue(hasLines(config, "dn: ds-cfg-backend-id=userRoot,cn=Backends,cn=config",
+                "ds-cfg-db-cache-percent: 5"));
+        assertTrue(hasLines(config, "dn: cn=Work Queue,cn=config",
+                "ds-cfg-num-worker-threads: 4"));
+        // server settings are left for the settings to fill in
+        assertTrue(hasLines(config,
+                "dn: cn=LDAP Connection Handler,cn=Connection Handlers,cn=config",
+                "ds-cfg-num-request-handlers: request.handlers"));
+        assertTrue(hasLines(config, "dn: ds-cfg-backend-id=tasks,cn=Backends,cn=config",
+                "ds-cfg-enabled: true"));
+
+        String replicated = DeploymentProfile.SMALL.applyTo(readConfig(), true);
+        assertTrue(hasLines(replicated, "dn: cn=Change Number Control,cn=Plugins,cn=config",
+                "ds-cfg-enabled: true"));
+        assertFalse(DeploymentProfile.SMALL.getExcludedSchemaFiles()
+                .contains("00-core.ldif"));
+    }
+
+    @Test
+    public void TestSmallChangesBundledEntries() throws Exception {
+        String config = readConfig();
+        String small = DeploymentProfile.SMALL.applyTo(config, false);
+        for (String dn : Arrays.asList("ds-cfg-backend-id=backup,cn=Backends,cn=config",
+                "cn=JMX Connection Handler,cn=Connection Handlers,cn=config",
+                "cn=LDIF Connection Handler,cn=Connection Handlers,cn=config",
+                "cn=JMX Alert Handler,cn=Alert Handlers,cn=config",
+                "cn=Profiler,cn=Plugins,cn=config",
+                "cn=Fractional Replication LDIF Import,cn=Plugins,cn=config")) {
+            assertTrue(dn, ConfigLDIF.hasEntry(config, dn));
+            assertTrue(dn, hasLines(small, "dn: " + dn, "ds-cfg-enabled: false"));
+        }
+        assertTrue(hasLines(small, "dn: ds-cfg-backend-id=userRoot,cn=Backends,cn=config",
+                "ds-cfg-db-evictor-max-threads: 2"));
+        assertTrue(hasLines(small, "dn: ds-cfg-backend-id=userRoot,cn=Backends,cn=config",
+                "ds-cfg-db-num-cleaner-threads: 1"));
+        for (String fileName : DeploymentProfile.SMALL.getExcludedSchemaFiles()) {
+            assertNotNull(fileName,
+                    DeploymentProfileTest.class.getResource(SCHEMA_LOC + fileName));
+            assertTrue(DeploymentProfile.isOptionalSchemaFile(fileName));
+        }
+        assertFalse(DeploymentProfile.isOptionalSchemaFile("00-core.ldif"));
+    }
+
+    @Test
+    public void TestSettingDefaults() {
+        assertEquals("1", DeploymentProfile.SMALL.getSettingDefault("request.handlers"));
+        assertNull(DeploymentProfile.SMALL.getSettingDefault("buffer.size"));
+        assertNull(DeploymentProfile.STANDARD.getSettingDefault("request.handlers"));
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestUnknownProfile() throws Exception {
+        DeploymentProfile.fromName("tiny");
+    }
+
+    private boolean hasLines(String config, String dnLine, String attributeLine) {
+        return Pattern.compile("(?m)^" + Pattern.quote(dnLine) + "\\n(?:.+\\n)*?" + Pattern.quote(
+                attributeLine) + "$")
+                .matcher(config)
+                .find();
+    }
+
+    private String readConfig() {
+        InputStream configStream = DeploymentProfileTest.class.getResourceAsStream(CONFIG_LOC);
+        Scanner scanner = new Scanner(configStream, "UTF-8").useDelimiter("\\A");
+        return scanner.next();
+    }
+}
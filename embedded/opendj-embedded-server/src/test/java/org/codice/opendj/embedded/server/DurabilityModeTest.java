@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DurabilityModeTest {
+
+    private static final String CONFIG =
+            "dn: ds-cfg-backend-id=userRoot,cn=Backends,cn=config\n" + "ds-cfg-enabled: true\n"
+                    + "ds-cfg-db-txn-no-sync: false\n" + "ds-cfg-db-txn-write-no-sync: true\n\n"
+                    + "dn: cn=Work Queue,cn=config\n" + "cn: Work Queue\n";
+
+    @Test
+    public void TestFromName() throws LDAPException {
+        assertEquals(DurabilityMode.GROUP_COMMIT, DurabilityMode.fromName(" Group-Commit "));
+        assertEquals(DurabilityMode.WRITE_NO_SYNC, DurabilityMode.fromName("write_no_sync"));
+        assertEquals(DurabilityMode.SYNC, DurabilityMode.fromName("SYNC"));
+        assertEquals("group-commit", DurabilityMode.GROUP_COMMIT.toString());
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestFromUnknownName() throws LDAPException {
+        DurabilityMode.fromName("eventual");
+    }
+
+    @Test
+    public void TestWriteNoSync() {
+        assertEquals(CONFIG, DurabilityMode.WRITE_NO_SYNC.applyTo(CONFIG));
+    }
+
+    @Test
+    public void TestGroupCommit() {
+        // the commits are synced by the group commit plugin, not by JE
+        String config = DurabilityMode.GROUP_COMMIT.applyTo(CONFIG);
+        assertEquals(CONFIG, config);
+        // the bundled JE release rejects unknown JE properties when the backend opens
+        assertFalse(config.contains("ds-cfg-je-property"));
+    }
+
+    @Test
+    public void TestSync() {
+        String config = DurabilityMode.SYNC.applyTo(CONFIG);
+        assertTrue(config.contains("ds-cfg-db-txn-no-sync: false\n"
+                + "ds-cfg-db-txn-write-no-sync: false\n\n" + "dn: cn=Work Queue,cn=config\n"));
+        assertEquals(config, DurabilityMode.SYNC.applyTo(config));
+    }
+}
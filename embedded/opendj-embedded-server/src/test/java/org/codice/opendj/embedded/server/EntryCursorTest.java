@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class EntryCursorTest {
+
+    @Test
+    public void TestExportFailure() throws LDAPException {
+        EntryCursor cursor = new EntryCursor(new EntryCursor.Export() {
+            @Override
+            public void writeTo(OutputStream ldifStream) throws LDAPException {
+                throw new LDAPException("backend offline");
+            }
+        }, "failing export");
+        try {
+            cursor.next();
+            fail("Export failure was not reported.");
+        } catch (LDAPException le) {
+            assertEquals("backend offline", le.getCause()
+                    .getMessage());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void TestCloseStopsExport() throws LDAPException {
+        final AtomicLong written = new AtomicLong();
+        EntryCursor cursor = new EntryCursor(new EntryCursor.Export() {
+            @Override
+            public void writeTo(OutputStream ldifStream) throws LDAPException {
+                byte[] buffer = new byte[4096];
+                try {
+                    while (true) {
+                        ldifStream.write(buffer);
+                        written.addAndGet(buffer.length);
+                    }
+                } catch (IOException ioe) {
+                    throw new LDAPException("pipe closed", ioe);
+                }
+            }
+        }, "endless export");
+        // nothing is read, so the export stops when the pipe is full
+        while (written.get() < EntryCursor.PIPE_SIZE) {
+            Thread.yield();
+        }
+        cursor.close();
+        // at most the write that was waiting for the reader completes
+        assertTrue(written.get() <= EntryCursor.PIPE_SIZE + 4096);
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestClosed() throws LDAPException {
+        EntryCursor cursor = new EntryCursor(new EntryCursor.Export() {
+            @Override
+            public void writeTo(OutputStream ldifStream) {
+            }
+        }, "empty export");
+        cursor.close();
+        cursor.next();
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class GroupCommitterTest {
+
+    @Test
+    public void TestGroupSize() throws Exception {
+        CountingSyncer syncer = new CountingSyncer();
+        // the window is long enough that only the group size triggers a sync
+        GroupCommitter committer = new GroupCommitter(60000, 4, syncer);
+        committer.start();
+        try {
+            awaitAll(committer, 8);
+        } finally {
+            committer.stop();
+        }
+        assertEquals(2, syncer.syncs.get());
+        assertEquals(2L, (long) committer.getStatistics()
+                .get("groupCommitSyncs"));
+        assertEquals(8L, (long) committer.getStatistics()
+                .get("groupCommitWrites"));
+        assertEquals(4L, (long) committer.getStatistics()
+                .get("groupCommitLargestGroup"));
+    }
+
+    @Test
+    public void TestWindow() throws Exception {
+        CountingSyncer syncer = new CountingSyncer();
+        GroupCommitter committer = new GroupCommitter(20, 100, syncer);
+        committer.start();
+        try {
+            long start = System.nanoTime();
+            committer.awaitDurable();
+            // a single write is synced once the window has passed
+            assertTrue(System.nanoTime() - start >= 15000000L);
+            assertEquals(1, syncer.syncs.get());
+        } finally {
+            committer.stop();
+        }
+    }
+
+    @Test
+    public void TestSharedSync() throws Exception {
+        CountingSyncer syncer = new CountingSyncer();
+        GroupCommitter committer = new GroupCommitter(200, 100, syncer);
+        committer.start();
+        try {
+            awaitAll(committer, 10);
+        } finally {
+            committer.stop();
+        }
+        // the writes arrive well within the window and share its sync
+        assertTrue(syncer.syncs.get() < 10);
+        assertEquals(10L, (long) committer.getStatistics()
+                .get("groupCommitWrites"));
+    }
+
+    @Test
+    public void TestSyncFailure() throws Exception {
+        GroupCommitter committer = new GroupCommitter(0, 1, new GroupCommitter.Syncer() {
+            @Override
+            public void sync() throws IOException {
+                throw new IOException("disk full");
+            }
+        });
+        committer.start();
+        try {
+            committer.awaitDurable();
+            fail("Expected the sync failure.");
+        } catch (IOException ioe) {
+            assertEquals("disk full", ioe.getCause()
+                    .getMessage());
+        } finally {
+            committer.stop();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void TestStopped() throws Exception {
+        GroupCommitter committer = new GroupCommitter(0, 1, new CountingSyncer());
+        committer.start();
+        committer.stop();
+        committer.awaitDurable();
+    }
+
+    private void awaitAll(final GroupCommitter committer, int writes) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writes);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < writes; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        committer.awaitDurable();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class CountingSyncer implements GroupCommitter.Syncer {
+
+        private final AtomicInteger syncs = new AtomicInteger();
+
+        @Override
+        public void sync() {
+            syncs.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.Context;
+
+import org.codice.opendj.embedded.server.health.DirectoryHealth;
+import org.codice.opendj.embedded.server.health.HealthState;
+import org.codice.opendj.embedded.server.health.ProbeStatus;
+import org.junit.Test;
+
+public class HealthProberTest {
+
+    private static final HealthProber.Probe NO_OP = new HealthProber.Probe() {
+        @Override
+        public void probe() throws LDAPException {
+        }
+    };
+
+    @Test
+    public void TestStatistics() {
+        HealthProber prober = createProber();
+        prober.record("ldap", TimeUnit.MILLISECONDS.toNanos(10), null);
+        prober.record("ldap", TimeUnit.MILLISECONDS.toNanos(30), null);
+        prober.record("ldap", TimeUnit.MILLISECONDS.toNanos(5000), "timed out");
+        prober.record("ldap", TimeUnit.MILLISECONDS.toNanos(20), null);
+
+        ProbeStatus status = prober.getProbeStatuses()
+                .get(0);
+        assertEquals(4, status.getSampleCount());
+        assertEquals(75, Math.round(status.getSuccessRate()));
+        assertEquals(20, status.getAverageLatencyMillis());
+        assertEquals(30, status.getMaxLatencyMillis());
+        assertEquals("timed out", status.getLastError());
+        assertNull(prober.getProbeStatuses()
+                .get(1)
+                .getLastError());
+    }
+
+    @Test
+    public void TestProbeHost() throws Exception {
+        assertEquals("ldap.example.com", HealthProber.getProbeHost(" ldap.example.com "));
+        assertEquals(InetAddress.getLocalHost()
+                .getCanonicalHostName(), HealthProber.getProbeHost(""));
+    }
+
+    @Test
+    public void TestEnvironment() {
+        Hashtable<String, String> env = HealthProber.createEnvironment("ldap://localhost:1389",
+                " cn=probe,dc=example,dc=com ", "secret", 1000);
+        assertEquals("simple", env.get(Context.SECURITY_AUTHENTICATION));
+        assertEquals("cn=probe,dc=example,dc=com", env.get(Context.SECURITY_PRINCIPAL));
+        assertEquals("secret", env.get(Context.SECURITY_CREDENTIALS));
+        assertEquals("1000", env.get("com.sun.jndi.ldap.read.timeout"));
+
+        env = HealthProber.createEnvironment("ldap://localhost:1389", "", "secret", 1000);
+        assertEquals("none", env.get(Context.SECURITY_AUTHENTICATION));
+        assertNull(env.get(Context.SECURITY_CREDENTIALS));
+    }
+
+    @Test
+    public void TestWindow() {
+        HealthProber prober = createProber();
+        prober.record("ldap", 0, "refused");
+        for (int i = 0; i < HealthProber.WINDOW_SIZE; i++) {
+            prober.record("ldap", TimeUnit.MILLISECONDS.toNanos(1), null);
+        }
+        ProbeStatus status = prober.getProbeStatuses()
+                .get(0);
+        assertEquals(HealthProber.WINDOW_SIZE, status.getSampleCount());
+        assertEquals(100, Math.round(status.getSuccessRate()));
+    }
+
+    @Test
+    public void TestState() {
+        HealthProber prober = createProber();
+        prober.updateState();
+        assertEquals(HealthState.HEALTHY, prober.getState());
+
+        prober.record("internal", TimeUnit.MILLISECONDS.toNanos(800), null);
+        prober.updateState();
+        assertEquals(HealthState.DEGRADED, prober.getState());
+        assertEquals("DEGRADED", prober.getServiceProperties()
+                .get(DirectoryHealth.STATE_PROPERTY));
+
+        for (int i = 0; i < HealthProber.WINDOW_SIZE; i++) {
+            prober.record("internal", TimeUnit.MILLISECONDS.toNanos(1), null);
+        }
+        prober.updateState();
+        assertEquals(HealthState.HEALTHY, prober.getState());
+
+        prober.record("ldap", 0, "refused");
+        prober.updateState();
+        assertEquals(HealthState.DEGRADED, prober.getState());
+    }
+
+    private HealthProber createProber() {
+        Map<String, HealthProber.Probe> probes = new LinkedHashMap<String, HealthProber.Probe>();
+        probes.put("ldap", NO_OP);
+        probes.put("internal", NO_OP);
+        return new HealthProber(probes, 500, 90);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class InstallManifestTest {
+
+    private static final String PATH = "config/schema/00-core.ldif";
+
+    @Test
+    public void TestParse() {
+        InstallManifest manifest = InstallManifest.parse(Arrays.asList("abc|" + PATH,
+                "not a manifest line", "|config/buildinfo", " def|config/admin-backend.ldif "));
+        assertEquals("abc", manifest.get(PATH));
+        assertEquals("def", manifest.get("config/admin-backend.ldif"));
+        assertNull(manifest.get("config/buildinfo"));
+        assertEquals(Arrays.asList("def|config/admin-backend.ldif", "abc|" + PATH),
+                manifest.toLines());
+    }
+
+    @Test
+    public void TestDecideMissing() {
+        assertEquals(InstallManifest.Action.INSTALL,
+                new InstallManifest().decide(PATH, "new", null));
+    }
+
+    @Test
+    public void TestDecideUnchanged() {
+        InstallManifest manifest = new InstallManifest();
+        manifest.put(PATH, "old");
+        assertEquals(InstallManifest.Action.UNCHANGED, manifest.decide(PATH, "old", "old"));
+        // modified locally, but the bundle still has what was installed
+        assertEquals(InstallManifest.Action.UNCHANGED, manifest.decide(PATH, "old", "local"));
+        // already up to date
+        assertEquals(InstallManifest.Action.UNCHANGED, manifest.decide(PATH, "new", "new"));
+    }
+
+    @Test
+    public void TestDecideReplace() {
+        InstallManifest manifest = new InstallManifest();
+        manifest.put(PATH, "old");
+        assertEquals(InstallManifest.Action.REPLACE, manifest.decide(PATH, "new", "old"));
+    }
+
+    @Test
+    public void TestDecideKeepModified() {
+        InstallManifest manifest = new InstallManifest();
+        manifest.put(PATH, "old");
+        assertEquals(InstallManifest.Action.KEEP_MODIFIED,
+                manifest.decide(PATH, "new", "local"));
+        // installed before there was a manifest
+        assertEquals(InstallManifest.Action.KEEP_MODIFIED,
+                new InstallManifest().decide(PATH, "new", "old"));
+    }
+
+    @Test
+    public void TestPreviousReleaseDigests() throws IOException, URISyntaxException {
+        InstallManifest previousRelease = InstallManifest.parse(Files.readAllLines(
+                Paths.get(InstallManifestTest.class.getResource(
+                        "/config/embedded-previous-release-digests")
+                        .toURI()), StandardCharsets.UTF_8));
+        assertNotNull(previousRelease.get(PATH));
+        assertNotNull(previousRelease.get("config/config.ldif.template"));
+        String installed = previousRelease.get(PATH);
+        // installed by the previous release without a manifest and not modified since
+        assertEquals(InstallManifest.Action.REPLACE,
+                previousRelease.decide(PATH, "new", installed));
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class JELogSyncerTest {
+
+    @Test
+    public void TestSync() throws IOException {
+        File directory = new File("target/je-log-syncer");
+        Files.createDirectories(directory.toPath());
+        write(new File(directory, "00000000.jdb"), "first");
+        write(new File(directory, "je.lck"), "");
+        Files.deleteIfExists(new File(directory, "00000001.jdb").toPath());
+        JELogSyncer syncer = new JELogSyncer(Collections.singletonList(directory));
+        syncer.sync();
+        // files created since the last sync and files removed by the cleaner
+        write(new File(directory, "00000001.jdb"), "second");
+        Files.delete(new File(directory, "00000000.jdb").toPath());
+        syncer.sync();
+    }
+
+    @Test
+    public void TestMissingDirectory() {
+        JELogSyncer syncer = new JELogSyncer(
+                Collections.singletonList(new File("target/no-je-environment")));
+        try {
+            syncer.sync();
+            fail("Expected the missing directory to fail the sync.");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+
+    private void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -25,6 +25,7 @@
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.camel.test.AvailablePortFinder;
 import org.apache.commons.io.IOUtils;
@@ -139,6 +140,41 @@ public void TestStartServer() {
 
     }
 
+    @Test
+    public void TestGroupCommitBackend() {
+        logger.info("Testing opening the backend in group commit mode.");
+        BundleContext mockContext = createMockContext(new File(TMP_FOLDER_NAME));
+        LDAPManager manager = new LDAPManager(mockContext);
+        HashMap config = new HashMap();
+        config.put("db.durability", "group-commit");
+        manager.setAdminPort(adminPort);
+        manager.setLDAPPort(ldapPort);
+        manager.setLDAPSPort(ldapsPort);
+        manager.setDataPath(
+                new File(TMP_FOLDER_NAME).getAbsolutePath() + File.separator + "ldap-group-commit");
+        try {
+            manager.startServer();
+            manager.updateCallback(config);
+            Assert.assertEquals(DurabilityMode.GROUP_COMMIT, manager.getDurability());
+            // reading the JE environment statistics fails unless userRoot opened
+            Map<String, String> statistics = manager.getDurabilityStatistics();
+            Assert.assertEquals("group-commit", statistics.get("durability"));
+            Assert.assertEquals("5", statistics.get("groupCommitWindowMillis"));
+            // only reported while the group commit plugin runs
+            Assert.assertNotNull(statistics.get("groupCommitSyncs"));
+        } catch (LDAPException le) {
+            le.printStackTrace();
+            fail(le.getMessage());
+        } finally {
+            try {
+                manager.stopServer();
+            } catch (LDAPException le) {
+                le.printStackTrace();
+                fail(le.getMessage());
+            }
+        }
+    }
+
     @Test
     public void TestStopStopped() {
         logger.info("Testing case to stop an already stopped server.");
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class LDIFImportProgressTest {
+
+    private static final String LDIF = "version: 1\n\ndn: dc=example,dc=com\nobjectClass: top\n"
+            + "description: dn: not an entry\n\nDN: ou=people,dc=example,dc=com\n"
+            + "objectClass: top\n\ndn:: b3U9Z3JvdXBzLGRjPWV4YW1wbGUsZGM9Y29t\n";
+
+    @Test
+    public void TestProgress() throws Exception {
+        byte[] bytes = LDIF.getBytes(StandardCharsets.UTF_8);
+        LDIFImportProgress progress = new LDIFImportProgress("test.ldif", "userRoot",
+                bytes.length * 2);
+        InputStream stream = progress.trackEntries(progress.trackBytes(
+                new ByteArrayInputStream(bytes)));
+        byte[] buffer = new byte[7];
+        while (stream.read(buffer) != -1) {
+            // read the whole stream in small chunks
+        }
+
+        assertEquals(3, progress.getEntriesRead());
+        assertEquals(50, Math.round(progress.getPercentComplete()));
+    }
+
+    @Test
+    public void TestUnknownSize() throws Exception {
+        LDIFImportProgress progress = new LDIFImportProgress("test.ldif", "userRoot", -1);
+        assertEquals(-1, Math.round(progress.getPercentComplete()));
+        assertEquals(-1, progress.getEstimatedSecondsRemaining());
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.Modification;
+import org.opends.server.types.ModificationType;
+
+public class MembershipIndexPluginTest {
+
+    private static final String ALICE = "uid=alice,ou=people,dc=example,dc=com";
+
+    private static final String BOB = "uid=bob,ou=people,dc=example,dc=com";
+
+    @Test
+    public void TestMemberChanges() {
+        Map<String, Boolean> changes = MembershipIndexPlugin.getMemberChanges(Arrays.asList(
+                new Modification(ModificationType.ADD, Attributes.create("member", ALICE)),
+                new Modification(ModificationType.ADD, Attributes.create("uniqueMember", BOB)),
+                new Modification(ModificationType.DELETE, Attributes.create("member", ALICE)),
+                new Modification(ModificationType.REPLACE,
+                        Attributes.create("description", "admins"))));
+        assertEquals(2, changes.size());
+        // the last change of a value wins
+        assertEquals(Boolean.FALSE, changes.get(MembershipIndexPlugin.normalize(ALICE)));
+        assertEquals(Boolean.TRUE, changes.get(MembershipIndexPlugin.normalize(BOB)));
+    }
+
+    @Test
+    public void TestMemberChangesWithoutMembers() {
+        assertTrue(MembershipIndexPlugin.getMemberChanges(Arrays.asList(
+                new Modification(ModificationType.REPLACE,
+                        Attributes.create("description", "admins"))))
+                .isEmpty());
+    }
+
+    @Test
+    public void TestMemberReplace() {
+        assertNull(MembershipIndexPlugin.getMemberChanges(Arrays.asList(
+                new Modification(ModificationType.REPLACE, Attributes.create("member", ALICE)))));
+        // deleting the attribute as a whole
+        assertNull(MembershipIndexPlugin.getMemberChanges(Arrays.asList(
+                new Modification(ModificationType.DELETE, Attributes.empty("member")))));
+    }
+}
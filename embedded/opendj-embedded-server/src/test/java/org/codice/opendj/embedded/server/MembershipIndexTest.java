@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class MembershipIndexTest {
+
+    private static final String ADMINS = "cn=admins,ou=groups,dc=example,dc=com";
+
+    private static final String USERS = "cn=users,ou=groups,dc=example,dc=com";
+
+    private static final String ALICE = "uid=alice,ou=people,dc=example,dc=com";
+
+    private static final String BOB = "uid=bob,ou=people,dc=example,dc=com";
+
+    @Test
+    public void TestDirectMembership() {
+        MembershipIndex index = new MembershipIndex();
+        index.setGroup(ADMINS, Arrays.asList(ALICE, ALICE));
+        assertTrue(index.isMember(ALICE, ADMINS, false));
+        assertFalse(index.isMember(BOB, ADMINS, false));
+        assertFalse(index.isMember(ALICE, USERS, true));
+        assertEquals(Collections.singleton(ADMINS), index.getGroups(ALICE, false));
+
+        // setting a group replaces its members
+        index.setGroup(ADMINS, Arrays.asList(BOB));
+        assertFalse(index.isMember(ALICE, ADMINS, false));
+        assertTrue(index.isMember(BOB, ADMINS, false));
+        assertTrue(index.getGroups(ALICE, true)
+                .isEmpty());
+    }
+
+    @Test
+    public void TestUpdateMembers() {
+        MembershipIndex index = new MembershipIndex();
+        index.setGroup(ADMINS, Arrays.asList(ALICE));
+        index.updateMembers(ADMINS, Arrays.asList(BOB), Collections.<String>emptyList());
+        assertTrue(index.isMember(ALICE, ADMINS, false));
+        assertTrue(index.isMember(BOB, ADMINS, false));
+
+        index.updateMembers(ADMINS, Collections.<String>emptyList(), Arrays.asList(ALICE, USERS));
+        assertFalse(index.isMember(ALICE, ADMINS, false));
+        assertTrue(index.getGroups(ALICE, true)
+                .isEmpty());
+        assertEquals(Collections.singleton(ADMINS), index.getGroups(BOB, false));
+
+        // removing the last member removes the group
+        index.updateMembers(ADMINS, Collections.<String>emptyList(), Arrays.asList(BOB));
+        assertEquals(0, index.getGroupCount());
+
+        // a group that was not indexed yet
+        index.updateMembers(USERS, Arrays.asList(ALICE), Collections.<String>emptyList());
+        assertTrue(index.isMember(ALICE, USERS, false));
+        assertEquals(1, index.getGroupCount());
+    }
+
+    @Test
+    public void TestReplaceWith() {
+        MembershipIndex index = new MembershipIndex();
+        index.setGroup(ADMINS, Arrays.asList(ALICE));
+
+        MembershipIndex newIndex = new MembershipIndex();
+        newIndex.setGroup(USERS, Arrays.asList(BOB));
+        // lookups are answered from the current groups until the swap
+        assertTrue(index.isMember(ALICE, ADMINS, false));
+        assertFalse(index.isMember(BOB, USERS, false));
+
+        index.replaceWith(newIndex);
+        assertFalse(index.isMember(ALICE, ADMINS, false));
+        assertTrue(index.isMember(BOB, USERS, false));
+        assertEquals(1, index.getGroupCount());
+        assertEquals(0, newIndex.getGroupCount());
+
+        // the replaced index no longer shares its groups
+        newIndex.setGroup(ADMINS, Arrays.asList(ALICE));
+        assertFalse(index.isMember(ALICE, ADMINS, false));
+    }
+
+    @Test
+    public void TestNestedMembership() {
+        MembershipIndex index = new MembershipIndex();
+        index.setGroup(ADMINS, Arrays.asList(BOB));
+        index.setGroup(USERS, Arrays.asList(ALICE, ADMINS));
+        assertTrue(index.isMember(BOB, USERS, true));
+        assertFalse(index.isMember(BOB, USERS, false));
+        assertEquals(new HashSet<String>(Arrays.asList(ADMINS, USERS)),
+                index.getGroups(BOB, true));
+
+        index.removeGroup(USERS);
+        assertFalse(index.isMember(BOB, USERS, true));
+        assertTrue(index.isMember(BOB, ADMINS, true));
+        assertEquals(1, index.getGroupCount());
+    }
+
+    @Test
+    public void TestGroupCycle() {
+        MembershipIndex index = new MembershipIndex();
+        index.setGroup(ADMINS, Arrays.asList(USERS, ALICE));
+        index.setGroup(USERS, Arrays.asList(ADMINS));
+        assertTrue(index.isMember(ALICE, USERS, true));
+        assertEquals(new HashSet<String>(Arrays.asList(ADMINS, USERS)),
+                index.getGroups(ALICE, true));
+    }
+
+    @Test
+    public void TestRemoveGroupsUnder() {
+        MembershipIndex index = new MembershipIndex();
+        index.setGroup(ADMINS, Arrays.asList(ALICE));
+        index.setGroup(USERS, Arrays.asList(BOB));
+        index.setGroup("cn=other,dc=example,dc=org", Arrays.asList(ALICE));
+        assertEquals(2, index.removeGroupsUnder("ou=groups,dc=example,dc=com"));
+        assertFalse(index.isMember(ALICE, ADMINS, true));
+        assertFalse(index.isMember(BOB, USERS, true));
+        assertTrue(index.isMember(ALICE, "cn=other,dc=example,dc=org", true));
+
+        index.clear();
+        assertEquals(0, index.getGroupCount());
+        assertTrue(index.getGroups(ALICE, true)
+                .isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimitedOutputStreamTest {
+
+    @Test
+    public void TestRate() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        FakeClockStream stream = new FakeClockStream(target, 1000);
+        stream.write(new byte[3000]);
+        stream.write(7);
+        assertEquals(3001, target.size());
+        long millis = TimeUnit.NANOSECONDS.toMillis(stream.now);
+        assertTrue("took " + millis + " ms", millis >= 3000 && millis <= 3010);
+    }
+
+    @Test
+    public void TestSavedAllowance() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        FakeClockStream stream = new FakeClockStream(target, 1000);
+        // idle for ten seconds, only one second is saved
+        stream.now = TimeUnit.SECONDS.toNanos(10);
+        stream.write(new byte[1000]);
+        assertEquals(TimeUnit.SECONDS.toNanos(10), stream.now);
+        stream.write(new byte[500]);
+        long millis = TimeUnit.NANOSECONDS.toMillis(stream.now);
+        assertTrue("took " + millis + " ms", millis >= 10500 && millis <= 10510);
+    }
+
+    private static class FakeClockStream extends RateLimitedOutputStream {
+
+        private long now;
+
+        FakeClockStream(OutputStream out, long bytesPerSecond) {
+            super(out, bytesPerSecond);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+
+        @Override
+        void sleep(long nanos) {
+            now += nanos;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ReplicationConfigTest {
+
+    private static final String CONFIG =
+            "dn: ds-cfg-backend-id=userRoot,cn=Backends,cn=config\n"
+                    + "ds-cfg-base-dn: dc=example,dc=com\n" + "ds-cfg-backend-id: userRoot\n";
+
+    @Test
+    public void TestDisabled() {
+        assertEquals(CONFIG, ReplicationConfig.addReplication(CONFIG, 0, 1,
+                Arrays.asList("host1:8989"), Collections.<BackendDefinition>emptyList()));
+    }
+
+    @Test
+    public void TestReplicatedBaseDNs() throws LDAPException {
+        List<String> baseDNs = ReplicationConfig.getReplicatedBaseDNs(CONFIG,
+                Arrays.asList(BackendDefinition.parse("tenantA|dc=tenanta,dc=com")));
+        assertEquals(Arrays.asList("dc=example,dc=com", "dc=tenanta,dc=com"), baseDNs);
+    }
+
+    @Test
+    public void TestAddReplication() throws LDAPException {
+        String config = ReplicationConfig.addReplication(CONFIG, 8989, 2,
+                Arrays.asList("host1:8989", "host2:8989"),
+                Arrays.asList(BackendDefinition.parse("tenantA|dc=tenanta,dc=com")));
+        assertTrue(config.startsWith(CONFIG));
+        assertTrue(config.contains("dn: cn=replication server,cn=Multimaster Synchronization,"
+                + "cn=Synchronization Providers,cn=config\n" + "objectClass: top\n"
+                + "objectClass: ds-cfg-replication-server\n" + "cn: replication server\n"
+                + "ds-cfg-replication-port: 8989\n" + "ds-cfg-replication-server-id: "
+                + (2 + ReplicationConfig.REPLICATION_SERVER_ID_OFFSET) + "\n"
+                + "ds-cfg-replication-db-directory: changelogDb\n"
+                + "ds-cfg-replication-server: host1:8989\n"
+                + "ds-cfg-replication-server: host2:8989\n"));
+        assertTrue(config.contains("dn: cn=dc\\=example\\,dc\\=com,cn=domains,"
+                + "cn=Multimaster Synchronization,cn=Synchronization Providers,cn=config\n"
+                + "objectClass: top\n" + "objectClass: ds-cfg-replication-domain\n"
+                + "cn: dc=example,dc=com\n" + "ds-cfg-base-dn: dc=example,dc=com\n"
+                + "ds-cfg-server-id: 2\n" + "ds-cfg-replication-server: host1:8989\n"
+                + "ds-cfg-replication-server: host2:8989\n"));
+        assertTrue(config.contains("dn: cn=dc\\=tenanta\\,dc\\=com,cn=domains,"));
+        assertTrue(config.contains("ds-cfg-base-dn: dc=tenanta,dc=com\n"));
+    }
+
+    @Test
+    public void TestLocalPeer() {
+        String config = ReplicationConfig.addReplication(CONFIG, 8989, 1,
+                Collections.<String>emptyList(), Collections.<BackendDefinition>emptyList());
+        assertTrue(config.contains("ds-cfg-replication-server: localhost:8989\n"));
+    }
+}
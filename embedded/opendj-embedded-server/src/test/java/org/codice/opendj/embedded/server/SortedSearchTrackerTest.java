@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.opends.server.types.DN;
+import org.opends.server.types.SearchScope;
+
+public class SortedSearchTrackerTest {
+
+    @Test
+    public void TestRecommendations() {
+        SortedSearchTracker tracker = new SortedSearchTracker(DN.nullDN());
+        for (int i = 0; i < 3; i++) {
+            tracker.record("userRoot", "ou=people,dc=example,dc=com", "single-level",
+                    "(objectClass=person)", "+sn +givenName", i == 0);
+        }
+        tracker.record("userRoot", "ou=people,dc=example,dc=com", "single-level",
+                "(objectClass=person)", "-sn", false);
+        // a scope VLV indexes do not support is not tracked
+        tracker.record("userRoot", "dc=example,dc=com", "children", "(objectClass=person)",
+                "+cn", false);
+
+        List<VLVIndexRecommendation> recommendations = tracker.getRecommendations();
+        assertEquals(2, recommendations.size());
+        VLVIndexRecommendation first = recommendations.get(0);
+        assertEquals(3, first.getSearchCount());
+        assertEquals(1, first.getLimitExceededCount());
+        assertEquals("+sn +givenName", first.getDefinition()
+                .getSortOrder());
+        assertEquals("(objectClass=person)", first.getDefinition()
+                .getFilter());
+        assertTrue(first.getDefinition()
+                .getName()
+                .startsWith("auto-"));
+        assertEquals(1, recommendations.get(1)
+                .getSearchCount());
+
+        tracker.reset();
+        assertTrue(tracker.getRecommendations()
+                .isEmpty());
+    }
+
+    @Test
+    public void TestToScope() {
+        assertEquals("base-object", SortedSearchTracker.toScope(SearchScope.BASE_OBJECT));
+        assertEquals("single-level", SortedSearchTracker.toScope(SearchScope.SINGLE_LEVEL));
+        assertEquals("whole-subtree", SortedSearchTracker.toScope(SearchScope.WHOLE_SUBTREE));
+    }
+}
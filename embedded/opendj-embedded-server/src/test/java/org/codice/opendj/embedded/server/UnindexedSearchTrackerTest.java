@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.codice.opendj.embedded.server.admin.IndexRecommendation;
+import org.junit.Test;
+
+public class UnindexedSearchTrackerTest {
+
+    private static final String REQUEST =
+            "[18/Oct/2016:10:00:00 +0000] SEARCH REQ conn=4 op=%d msgID=%d base=\"dc=example,dc=com\" scope=wholeSubtree filter=\"%s\" attrs=\"ALL\"";
+
+    private static final String RESULT =
+            "[18/Oct/2016:10:00:00 +0000] SEARCH RES conn=4 op=%d msgID=%d result=%d%s nentries=0 etime=12";
+
+    @Test
+    public void TestToShape() {
+        assertEquals("(&(objectclass=?)(mail=*?*))",
+                UnindexedSearchTracker.toShape("(&(objectClass=person)(mail=*smith*))"));
+        assertEquals("(|(description=*)(createtimestamp>=?))", UnindexedSearchTracker.toShape(
+                "(|(description=*)(createTimestamp>=20160101000000Z))"));
+    }
+
+    @Test
+    public void TestShapeEviction() {
+        UnindexedSearchTracker tracker = new UnindexedSearchTracker(new File("target/no-log"));
+        tracker.processLine(String.format(REQUEST, 1, 2, "(description=foo)"));
+        tracker.processLine(String.format(RESULT, 1, 2, 0, " unindexed"));
+        for (int i = 0; i < UnindexedSearchTracker.MAX_SHAPES; i++) {
+            tracker.processLine(String.format(REQUEST, i + 2, i + 3, "(attr" + i + "=foo)"));
+            tracker.processLine(String.format(RESULT, i + 2, i + 3, 0, " unindexed"));
+            if (i == UnindexedSearchTracker.MAX_SHAPES / 2) {
+                // a repeated shape is kept as recently used
+                tracker.processLine(String.format(REQUEST, 1, 2, "(description=bar)"));
+                tracker.processLine(String.format(RESULT, 1, 2, 0, " unindexed"));
+            }
+        }
+
+        Map<String, long[]> shapes = tracker.getShapeCounts();
+        assertEquals(UnindexedSearchTracker.MAX_SHAPES, shapes.size());
+        assertEquals(2, shapes.get("(description=?)")[0]);
+        assertFalse(shapes.containsKey("(attr0=?)"));
+    }
+
+    @Test
+    public void TestRecommendations() {
+        UnindexedSearchTracker tracker = new UnindexedSearchTracker(new File("target/no-log"));
+        tracker.processLine(String.format(REQUEST, 1, 2, "(description=foo)"));
+        tracker.processLine(String.format(RESULT, 1, 2, 50,
+                " message=\"You do not have sufficient privileges to perform an unindexed search\""));
+        tracker.processLine(String.format(REQUEST, 2, 3, "(description=bar)"));
+        tracker.processLine(String.format(RESULT, 2, 3, 0, " unindexed"));
+        tracker.processLine(String.format(REQUEST, 3, 4, "(&(objectClass=*)(member=cn=x))"));
+        tracker.processLine(String.format(RESULT, 3, 4, 11, ""));
+        tracker.processLine(String.format(REQUEST, 4, 5, "(uid=indexed)"));
+        tracker.processLine(String.format(RESULT, 4, 5, 0, ""));
+
+        Map<String, long[]> shapes = tracker.getShapeCounts();
+        assertEquals(2, shapes.size());
+        assertEquals(2, shapes.get("(description=?)")[0]);
+        assertEquals(1, shapes.get("(&(objectclass=*)(member=?))")[1]);
+
+        List<IndexRecommendation> recommendations = tracker.getRecommendations();
+        assertEquals(2, recommendations.size());
+        assertEquals("description", recommendations.get(0)
+                .getAttribute());
+        assertEquals("equality", recommendations.get(0)
+                .getIndexType());
+        assertEquals(2, recommendations.get(0)
+                .getSearchCount());
+        assertEquals("member", recommendations.get(1)
+                .getAttribute());
+        assertTrue(recommendations.get(1)
+                .getExampleFilter()
+                .contains("member=?"));
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VLVIndexDefinitionTest {
+
+    private static final String DEFINITION =
+            "userRoot|users-by-name|ou=people,dc=example,dc=com|single-level|+sn  +givenName"
+                    + "|(|(objectClass=person)(objectClass=inetOrgPerson))";
+
+    @Test
+    public void TestParse() throws LDAPException {
+        VLVIndexDefinition definition = VLVIndexDefinition.parse(DEFINITION);
+        assertEquals("userRoot", definition.getBackendId());
+        assertEquals("users-by-name", definition.getName());
+        assertEquals("ou=people,dc=example,dc=com", definition.getBaseDN());
+        assertEquals("single-level", definition.getScope());
+        assertEquals("+sn +givenName", definition.getSortOrder());
+        assertEquals("(|(objectClass=person)(objectClass=inetOrgPerson))",
+                definition.getFilter());
+        assertEquals("vlv.users-by-name", definition.getRebuildName());
+        assertEquals(definition, VLVIndexDefinition.parse(definition.toString()));
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseMissingFilter() throws LDAPException {
+        VLVIndexDefinition.parse("userRoot|users|dc=example,dc=com|whole-subtree|+sn");
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseInvalidScope() throws LDAPException {
+        VLVIndexDefinition.parse("userRoot|users|dc=example,dc=com|children|+sn|(uid=*)");
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseInvalidName() throws LDAPException {
+        VLVIndexDefinition.parse("userRoot|all users|dc=example,dc=com|whole-subtree|+sn|(uid=*)");
+    }
+
+    @Test(expected = LDAPException.class)
+    public void TestParseInvalidSortOrder() throws LDAPException {
+        VLVIndexDefinition.parse("userRoot|users|dc=example,dc=com|whole-subtree|+sn,cn|(uid=*)");
+    }
+
+    @Test
+    public void TestApplyTo() throws LDAPException {
+        VLVIndexDefinition definition = VLVIndexDefinition.parse(DEFINITION);
+        String config = "dn: cn=VLV Index,ds-cfg-backend-id=userRoot,cn=Backends,cn=config\n"
+                + "cn: VLV Index\n";
+        String applied = definition.applyTo(config);
+        assertTrue(applied.contains("\n\ndn: ds-cfg-name=users-by-name,cn=VLV Index,"
+                + "ds-cfg-backend-id=userRoot,cn=Backends,cn=config\n"));
+        assertTrue(applied.contains("ds-cfg-sort-order: +sn +givenName\n"));
+        assertTrue(applied.contains("ds-cfg-scope: single-level\n"));
+        // an existing index is left alone
+        assertEquals(applied, definition.applyTo(applied));
+    }
+
+    @Test
+    public void TestIsSameIndex() throws LDAPException {
+        VLVIndexDefinition definition = VLVIndexDefinition.parse(DEFINITION);
+        assertTrue(definition.isSameIndex(VLVIndexDefinition.parse(
+                DEFINITION.replace("users-by-name", "other-name"))));
+        assertFalse(definition.isSameIndex(VLVIndexDefinition.parse(
+                DEFINITION.replace("+givenName", "-givenName"))));
+    }
+}
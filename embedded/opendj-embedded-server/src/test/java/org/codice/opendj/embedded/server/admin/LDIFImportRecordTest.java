@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.server.admin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LDIFImportRecordTest {
+
+    @Test
+    public void TestParse() throws Exception {
+        LDIFImportRecord record = new LDIFImportRecord(1000L, "abc123", 2048, 5000L, 10, 1, 300,
+                true, "file:/opt/ldap/base|1.ldif");
+        LDIFImportRecord parsed = LDIFImportRecord.parse(record.toString());
+        assertEquals(record.toString(), parsed.toString());
+        assertEquals("file:/opt/ldap/base|1.ldif", parsed.getSource());
+        assertEquals(10, parsed.getEntriesImported());
+        assertTrue(parsed.isSuccessful());
+    }
+
+    @Test(expected = DirectoryServiceException.class)
+    public void TestParseInvalid() throws Exception {
+        LDIFImportRecord.parse("1000|abc123|2048");
+    }
+
+    @Test
+    public void TestSameFile() {
+        LDIFImportRecord record = new LDIFImportRecord(1000L, "abc123", 2048, 5000L, 10, 1, 300,
+                true, "file:/opt/ldap/base.ldif");
+        assertTrue(record.isSameFile("file:/opt/ldap/base.ldif", 2048, 5000L));
+        assertFalse(record.isSameFile("file:/opt/ldap/base.ldif", 2048, 6000L));
+        assertFalse(record.isSameFile("file:/opt/ldap/other.ldif", 2048, 5000L));
+        assertFalse(new LDIFImportRecord(1000L, "abc123", 2048, 0, 10, 1, 300, true,
+                "bundle://1.0:1/default-users.ldif").isSameFile(
+                "bundle://1.0:1/default-users.ldif", 2048, 0));
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.codice.opendj.embedded.server.LDAPManager;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Stands in for the bundle context of the embedded server bundle outside of
+ * an OSGi container. Bundle entries are read from the class path, where the
+ * server jar provides them; other jars and directories on the class path
+ * that contain the same folders act like fragments. Data files are kept in a
+ * given directory and services are not registered.
+ */
+final class ClasspathBundleContext implements InvocationHandler {
+
+    private final File dataDirectory;
+
+    private final ClassLoader classLoader = LDAPManager.class.getClassLoader();
+
+    private final Bundle bundle;
+
+    private ClasspathBundleContext(File dataDirectory) {
+        this.dataDirectory = dataDirectory;
+        this.bundle = (Bundle) Proxy.newProxyInstance(classLoader, new Class<?>[] {Bundle.class},
+                this);
+    }
+
+    /**
+     * @param dataDirectory directory holding the files returned by
+     *                      {@link BundleContext#getDataFile(String)}
+     * @return a bundle context backed by the class path
+     */
+    static BundleContext create(File dataDirectory) {
+        ClasspathBundleContext handler = new ClasspathBundleContext(dataDirectory);
+        return (BundleContext) Proxy.newProxyInstance(handler.classLoader,
+                new Class<?>[] {BundleContext.class}, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+        String name = method.getName();
+        if ("getBundle".equals(name) && method.getParameterTypes().length == 0) {
+            return bundle;
+        } else if ("getDataFile".equals(name)) {
+            return new File(dataDirectory, (String) args[0]);
+        } else if ("findEntries".equals(name)) {
+            return findEntries((String) args[0], (String) args[1], (Boolean) args[2]);
+        } else if ("getResource".equals(name)) {
+            return classLoader.getResource(StringUtils.removeStart((String) args[0], "/"));
+        } else if ("getResources".equals(name)) {
+            return classLoader.getResources(StringUtils.removeStart((String) args[0], "/"));
+        } else if ("registerService".equals(name)) {
+            // nothing looks up services outside of a container
+            return null;
+        } else if ("toString".equals(name)) {
+            return "ClasspathBundleContext[" + dataDirectory + "]";
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else if ("equals".equals(name)) {
+            return proxy == args[0];
+        }
+        throw new UnsupportedOperationException(
+                name + " is not supported outside of an OSGi container.");
+    }
+
+    /**
+     * Finds the class path entries below a folder the way
+     * {@link Bundle#findEntries(String, String, boolean)} finds them in a
+     * bundle and its fragments.
+     *
+     * @param path    folder to search
+     * @param pattern file name pattern, may contain * wildcards
+     * @param recurse true to search sub folders too
+     * @return the matching entries sorted by path, or null if there are none
+     * @throws IOException if the class path could not be read
+     */
+    Enumeration<URL> findEntries(String path, String pattern, boolean recurse)
+            throws IOException {
+        String folder = StringUtils.strip(path, "/");
+        Map<String, URL> roots = new LinkedHashMap<String, URL>();
+        for (URL root : Collections.list(classLoader.getResources(folder))) {
+            roots.put(root.toString(), root);
+        }
+        if (folder.isEmpty()) {
+            // the root of a jar is not returned as a resource
+            URL serverLocation = LDAPManager.class.getProtectionDomain()
+                    .getCodeSource()
+                    .getLocation();
+            if (serverLocation.getPath()
+                    .endsWith(".jar")) {
+                serverLocation = new URL("jar:" + serverLocation + "!/");
+            }
+            roots.put(serverLocation.toString(), serverLocation);
+        }
+
+        List<URL> entries = new ArrayList<URL>();
+        for (URL root : roots.values()) {
+            URLConnection connection = root.openConnection();
+            if (connection instanceof JarURLConnection) {
+                addJarEntries((JarURLConnection) connection, pattern, recurse, entries);
+            } else if ("file".equals(root.getProtocol())) {
+                addFileEntries(FileUtils.toFile(root), pattern, recurse, entries);
+            }
+        }
+        Collections.sort(entries, new Comparator<URL>() {
+            @Override
+            public int compare(URL first, URL second) {
+                return first.getPath()
+                        .compareTo(second.getPath());
+            }
+        });
+        return entries.isEmpty() ? null : Collections.enumeration(entries);
+    }
+
+    private void addJarEntries(JarURLConnection connection, String pattern, boolean recurse,
+            List<URL> entries) throws IOException {
+        JarFile jarFile = connection.getJarFile();
+        String prefix = StringUtils.defaultString(connection.getEntryName());
+        if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        for (JarEntry jarEntry : Collections.list(jarFile.entries())) {
+            String entryName = jarEntry.getName();
+            if (jarEntry.isDirectory() || !entryName.startsWith(prefix)) {
+                continue;
+            }
+            String relativeName = entryName.substring(prefix.length());
+            if ((recurse || !relativeName.contains("/")) && FilenameUtils.wildcardMatch(
+                    FilenameUtils.getName(relativeName), pattern)) {
+                entries.add(new URL("jar:" + connection.getJarFileURL() + "!/" + entryName));
+            }
+        }
+    }
+
+    private void addFileEntries(File directory, String pattern, boolean recurse,
+            List<URL> entries) throws MalformedURLException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory() && recurse) {
+                addFileEntries(file, pattern, true, entries);
+            } else if (file.isFile() && FilenameUtils.wildcardMatch(file.getName(), pattern)) {
+                entries.add(file.toURI()
+                        .toURL());
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.codice.opendj.embedded.server.LDAPException;
+import org.codice.opendj.embedded.server.LDAPManager;
+import org.junit.rules.ExternalResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JUnit rule that runs tests against the embedded LDAP server. The server is
+ * started the first time a test needs it and is shared by all tests of the
+ * JVM until the JVM exits. After the LDIF file of the rule is imported the
+ * userRoot database is saved, and before every test it is restored from that
+ * snapshot, so each test starts with the seeded entries no matter what
+ * earlier tests changed. The snapshot shares the JE log files with the
+ * database where the file system allows it, so restoring it takes
+ * milliseconds instead of another import.
+ * <p/>
+ * <pre>
+ * &#64;Rule
+ * public EmbeddedLDAPServer server = new EmbeddedLDAPServer(
+ *         MyTest.class.getResource("/users.ldif"));
+ * </pre>
+ * <p/>
+ * Rules with different LDIF files keep their own snapshot. Without an LDIF
+ * file the default entries of the server are used. If the javax.net.ssl key
+ * and trust store properties are not set before the server starts, a self
+ * signed test certificate is used for LDAPS.
+ */
+public class EmbeddedLDAPServer extends ExternalResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedLDAPServer.class);
+
+    private static final String BACKEND_ID = "userRoot";
+
+    private static final String DEFAULT_ENTRIES = "";
+
+    private static final String STORE_PASSWORD = "changeit";
+
+    private static LDAPManager manager;
+
+    private static File workDirectory;
+
+    /**
+     * Snapshot directory of each seed LDIF file, keyed by its location.
+     */
+    private static final Map<String, File> SNAPSHOTS = new HashMap<String, File>();
+
+    private final URL ldifFile;
+
+    /**
+     * Creates a rule whose tests start with the default entries of the
+     * server.
+     */
+    public EmbeddedLDAPServer() {
+        this(null);
+    }
+
+    /**
+     * @param ldifFile LDIF file with the entries each test starts with, it
+     *                 replaces the default entries of the server
+     */
+    public EmbeddedLDAPServer(URL ldifFile) {
+        this.ldifFile = ldifFile;
+    }
+
+    @Override
+    protected void before() throws LDAPException {
+        synchronized (EmbeddedLDAPServer.class) {
+            startServer();
+            String seed = ldifFile == null ? DEFAULT_ENTRIES : ldifFile.toString();
+            File snapshot = SNAPSHOTS.get(seed);
+            if (snapshot == null) {
+                LOGGER.info("Seeding embedded LDAP server from {}.", ldifFile);
+                manager.importLDIF(ldifFile);
+                takeSnapshot(seed);
+            } else {
+                manager.restoreBackend(BACKEND_ID, snapshot);
+            }
+        }
+    }
+
+    /**
+     * Restores the seeded entries during a test.
+     *
+     * @throws LDAPException if the snapshot could not be restored
+     */
+    public void rollback() throws LDAPException {
+        synchronized (EmbeddedLDAPServer.class) {
+            manager.restoreBackend(BACKEND_ID, SNAPSHOTS.get(
+                    ldifFile == null ? DEFAULT_ENTRIES : ldifFile.toString()));
+        }
+    }
+
+    /**
+     * @return the shared server, for example to read its statistics
+     */
+    public LDAPManager getManager() {
+        return manager;
+    }
+
+    public int getLDAPPort() {
+        return manager.getLDAPPort();
+    }
+
+    public int getLDAPSPort() {
+        return manager.getLDAPSPort();
+    }
+
+    public int getAdminPort() {
+        return manager.getAdminPort();
+    }
+
+    /**
+     * @return URL of the plain LDAP listener, for example
+     * <code>ldap://localhost:1389</code>
+     */
+    public String getLDAPUrl() {
+        return "ldap://localhost:" + getLDAPPort();
+    }
+
+    private static void startServer() throws LDAPException {
+        if (manager != null) {
+            return;
+        }
+        try {
+            workDirectory = Files.createTempDirectory("embedded-ldap")
+                    .toFile();
+            configureStores(workDirectory);
+        } catch (IOException ioe) {
+            throw new LDAPException("Could not create a directory for the LDAP server.", ioe);
+        }
+        final LDAPManager newManager = new LDAPManager(ClasspathBundleContext.create(
+                new File(workDirectory, "bundle")));
+        newManager.setDataPath(new File(workDirectory, "ldap").getAbsolutePath());
+        newManager.setLDAPPort(findFreePort());
+        newManager.setLDAPSPort(findFreePort());
+        newManager.setAdminPort(findFreePort());
+        long startTime = System.currentTimeMillis();
+        newManager.startServer();
+        LOGGER.info("Embedded LDAP server started on port {} in {} ms.",
+                newManager.getLDAPPort(), System.currentTimeMillis() - startTime);
+        manager = newManager;
+        takeSnapshot(DEFAULT_ENTRIES);
+
+        final File directory = workDirectory;
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread("embedded-ldap-shutdown") {
+                    @Override
+                    public void run() {
+                        try {
+                            newManager.stopServer();
+                        } catch (LDAPException le) {
+                            LOGGER.warn("Could not stop embedded LDAP server.", le);
+                        }
+                        FileUtils.deleteQuietly(directory);
+                    }
+                });
+    }
+
+    private static void takeSnapshot(String seed) throws LDAPException {
+        File snapshot = new File(workDirectory, "snapshots/" + SNAPSHOTS.size());
+        manager.snapshotBackend(BACKEND_ID, snapshot);
+        SNAPSHOTS.put(seed, snapshot);
+    }
+
+    /**
+     * Points the LDAPS listener at the bundled test certificate unless a key
+     * store is already configured. Must run before the server classes are
+     * loaded, since they read the store properties once.
+     *
+     * @param directory directory to copy the stores to
+     * @throws IOException if the stores could not be copied
+     */
+    private static void configureStores(File directory) throws IOException {
+        if (System.getProperty("javax.net.ssl.keyStore") != null) {
+            return;
+        }
+        System.setProperty("javax.net.ssl.keyStore",
+                copyStore("serverKeystore.jks", directory).getAbsolutePath());
+        System.setProperty("javax.net.ssl.keyStorePassword", STORE_PASSWORD);
+        System.setProperty("javax.net.ssl.keyStoreType", "JKS");
+        System.setProperty("javax.net.ssl.trustStore",
+                copyStore("serverTruststore.jks", directory).getAbsolutePath());
+        System.setProperty("javax.net.ssl.trustStorePassword", STORE_PASSWORD);
+        System.setProperty("javax.net.ssl.trustStoreType", "JKS");
+    }
+
+    private static File copyStore(String name, File directory) throws IOException {
+        File store = new File(directory, name);
+        InputStream storeStream = EmbeddedLDAPServer.class.getResourceAsStream(
+                "/embedded-ldap/" + name);
+        try {
+            FileUtils.copyInputStreamToFile(storeStream, store);
+        } finally {
+            IOUtils.closeQuietly(storeStream);
+        }
+        return store;
+    }
+
+    private static int findFreePort() throws LDAPException {
+        ServerSocket socket = null;
+        try {
+            socket = new ServerSocket(0);
+            return socket.getLocalPort();
+        } catch (IOException ioe) {
+            throw new LDAPException("Could not find a free port for the LDAP server.", ioe);
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ioe) {
+                    LOGGER.debug("Could not close port finder socket.", ioe);
+                }
+            }
+        }
+    }
+}
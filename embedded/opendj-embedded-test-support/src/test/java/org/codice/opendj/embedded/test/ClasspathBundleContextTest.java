@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+public class ClasspathBundleContextTest {
+
+    private final BundleContext context = ClasspathBundleContext.create(new File("target"));
+
+    @Test
+    public void TestFindSchemaFiles() {
+        List<String> names = getNames(context.getBundle()
+                .findEntries("/config/schema/", "*.ldif", false));
+        assertTrue(names.contains("00-core.ldif"));
+        assertEquals(Collections.singletonList("00-core.ldif"), getNames(context.getBundle()
+                .findEntries("/config/schema", "00-core.ldif", true)));
+    }
+
+    @Test
+    public void TestFindRootEntries() {
+        assertTrue(getNames(context.getBundle()
+                .findEntries("/", "default-*.ldif", false)).contains("default-users.ldif"));
+    }
+
+    @Test
+    public void TestMissingEntries() {
+        Bundle bundle = context.getBundle();
+        assertNull(bundle.findEntries("/config/schema/", "*.missing", false));
+        assertNull(bundle.getResource("/config/missing.ldif"));
+        assertNotNull(bundle.getResource("/config/config.ldif"));
+    }
+
+    @Test
+    public void TestGetDataFile() {
+        assertEquals(new File("target", "pin"), context.getDataFile("pin"));
+    }
+
+    private List<String> getNames(Enumeration<URL> entries) {
+        List<String> names = new ArrayList<String>();
+        if (entries != null) {
+            for (URL entry : Collections.list(entries)) {
+                String path = entry.getPath();
+                names.add(path.substring(path.lastIndexOf('/') + 1));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ **/
+package org.codice.opendj.embedded.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.opends.server.core.DeleteOperation;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.types.DN;
+import org.opends.server.types.ResultCode;
+
+public class EmbeddedLDAPServerTest {
+
+    private static final String USER_DN = "uid=testuser1,ou=users,dc=example,dc=com";
+
+    @Rule
+    public EmbeddedLDAPServer server = new EmbeddedLDAPServer();
+
+    @Test
+    public void TestRollback() throws Exception {
+        DN userDN = DN.decode(USER_DN);
+        assertTrue(DirectoryServer.entryExists(userDN));
+        DeleteOperation delete = InternalClientConnection.getRootConnection()
+                .processDelete(userDN);
+        assertEquals(ResultCode.SUCCESS, delete.getResultCode());
+        assertFalse(DirectoryServer.entryExists(userDN));
+
+        server.rollback();
+        assertTrue(DirectoryServer.entryExists(userDN));
+    }
+
+    @Test
+    public void TestSharedServer() {
+        assertTrue(server.getLDAPPort() > 0);
+        assertEquals(server.getLDAPPort(), new EmbeddedLDAPServer().getLDAPPort());
+    }
+}